@@ -0,0 +1,74 @@
+package com.dmdev.benchmark;
+
+import com.dmdev.statement.NPlusOneDetector;
+import com.dmdev.util.DataGenerator;
+import com.dmdev.util.HibernateUtil;
+import com.dmdev.util.IdGeneration;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import lombok.Getter;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+
+/**
+ * Встроенный PostgreSQL, поднимаемый один раз на форк бенчмарка и заполняемый {paymentCount} выплатами.
+ * Масштаб задаётся через JMH: -p paymentCount=1000000
+ */
+@State(Scope.Benchmark)
+public class EmbeddedDatabase {
+
+    @Param({"10000", "1000000"})
+    public int paymentCount;
+
+    private EmbeddedPostgres postgres;
+
+    @Getter
+    private SessionFactory sessionFactory;
+
+    @Setup(Level.Trial)
+    public void start() throws IOException {
+        postgres = EmbeddedPostgres.builder().start();
+        sessionFactory = buildConfiguration().buildSessionFactory();
+        new DataGenerator(sessionFactory, settings()).generate();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws IOException {
+        sessionFactory.close();
+        postgres.close();
+    }
+
+    protected DataGenerator.Settings settings() {
+        int userCount = Math.max(1, paymentCount / 20);
+        return DataGenerator.Settings.builder()
+                .companyCount(Math.max(10, userCount / 500))
+                .userCount(userCount)
+                .paymentCount(paymentCount)
+                .chatCount(50)
+                .build();
+    }
+
+    protected Configuration buildConfiguration() {
+        return buildConfiguration(postgres, IdGeneration.fromSystemProperties());
+    }
+
+    static Configuration buildConfiguration(EmbeddedPostgres postgres, IdGeneration idGeneration) {
+        Configuration configuration = HibernateUtil.buildConfiguration(idGeneration);
+        configuration.configure();
+        configuration.setProperty("hibernate.connection.url", postgres.getJdbcUrl("postgres", "postgres"));
+        configuration.setProperty("hibernate.connection.username", "postgres");
+        configuration.setProperty("hibernate.connection.password", "");
+        configuration.setProperty("hibernate.hbm2ddl.auto", "create");
+        configuration.setProperty("hibernate.show_sql", "false");
+        configuration.setProperty("hibernate.format_sql", "false");
+        configuration.setProperty(NPlusOneDetector.MODE_PROPERTY, NPlusOneDetector.Mode.OFF.name());
+        return configuration;
+    }
+}
@@ -0,0 +1,101 @@
+package com.dmdev.benchmark;
+
+import com.dmdev.entity.Payment;
+import com.dmdev.entity.User;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.dmdev.benchmark.UserDaoBenchmark.inTransaction;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Что даёт enhancement сущностей при сборке. Сравнивается запуск на классах после enhancement'а и без него.
+ * Flush сессии с {@link #MANAGED_ENTITIES} управляемыми выплатами: без enhancement'а при каждом flush
+ * сравниваются снимки всех сущностей, с ним проверяются только флаги изменений.
+ * Список пользователей, где нужны только имена: после enhancement'а ленивый User.info не читается.
+ * Запускать с -p paymentCount=10000, тогда выплат в базе ровно столько, сколько держит сессия.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EntityEnhancementBenchmark {
+
+    static final int MANAGED_ENTITIES = 10_000;
+    private static final String USER_INFO = "{\"bio\": \"" + "x".repeat(2_000) + "\", \"tags\": [\"a\", \"b\", \"c\"]}";
+
+    @Setup(Level.Trial)
+    public void fillUserInfo(EmbeddedDatabase database) {
+        inTransaction(database, session -> session
+                .createNativeQuery("update users set info = cast(:info as jsonb)")
+                .setParameter("info", USER_INFO)
+                .executeUpdate());
+    }
+
+    @Benchmark
+    public void flushClean(ManagedPayments payments) {
+        payments.session.flush();
+    }
+
+    @Benchmark
+    public void flushOneDirty(ManagedPayments payments) {
+        Payment payment = payments.next();
+        payment.setAmount(payment.getAmount() + 1);
+        payments.session.flush();
+    }
+
+    @Benchmark
+    public List<String> listUserNames(EmbeddedDatabase database) {
+        return inTransaction(database, session -> session
+                .createQuery("select u from User u", User.class)
+                .setCacheMode(CacheMode.IGNORE)
+                .list()
+                .stream()
+                .map(User::fullName)
+                .collect(toList()));
+    }
+
+    /**
+     * Сессия с загруженными выплатами на итерацию; изменения откатываются в конце итерации
+     */
+    @State(Scope.Thread)
+    public static class ManagedPayments {
+
+        private Session session;
+        private List<Payment> payments;
+        private int next;
+
+        @Setup(Level.Iteration)
+        public void load(EmbeddedDatabase database) {
+            session = database.getSessionFactory().openSession();
+            session.setCacheMode(CacheMode.IGNORE);
+            session.beginTransaction();
+            payments = session.createQuery("select p from Payment p order by p.id", Payment.class)
+                    .setMaxResults(MANAGED_ENTITIES)
+                    .list();
+        }
+
+        @TearDown(Level.Iteration)
+        public void rollback() {
+            session.getTransaction().rollback();
+            session.close();
+        }
+
+        Payment next() {
+            Payment payment = payments.get(next);
+            next = (next + 1) % payments.size();
+            return payment;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.dmdev.benchmark;
+
+import com.dmdev.dao.KeysetToken;
+import com.dmdev.dao.UserDao;
+import com.dmdev.dto.Slice;
+import com.dmdev.entity.Payment;
+import com.dmdev.entity.User;
+import com.dmdev.util.DataGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.dmdev.benchmark.UserDaoBenchmark.inTransaction;
+
+/**
+ * Стоимость глубокой страницы сотрудников, упорядоченных по дате рождения: OFFSET против keyset-пагинации,
+ * и keyset-страницы выплат сотрудникам компании на той же глубине.
+ * Глубина задаётся через JMH: -p depth=40000
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PaginationBenchmark {
+
+    private static final int PAGE_SIZE = 20;
+    private static final String COMPANY_NAME = DataGenerator.companyName(0);
+    private static final UserDao userDao = UserDao.getInstance();
+
+    @Param({"0", "400"})
+    public int depth;
+
+    private String token;
+    private String companyPaymentsToken;
+
+    @Setup(Level.Trial)
+    public void findToken(EmbeddedDatabase database) {
+        token = depth == 0 ? null : inTransaction(database, session -> {
+            User last = session.createQuery("select u from User u order by u.personalInfo.birthDate, u.id", User.class)
+                    .setFirstResult(depth - 1)
+                    .setMaxResults(1)
+                    .getSingleResult();
+            return KeysetToken.encode(last.getPersonalInfo().getBirthDate(), last.getId());
+        });
+        companyPaymentsToken = depth == 0 ? null : inTransaction(database, session -> {
+            Payment last = session.createQuery("select p from Payment p join fetch p.receiver u "
+                                               + "where u.company.name = :name "
+                                               + "order by u.personalInfo.firstname nulls last, u.id, p.amount, p.id", Payment.class)
+                    .setParameter("name", COMPANY_NAME)
+                    .setFirstResult(depth - 1)
+                    .setMaxResults(1)
+                    .getSingleResult();
+            return KeysetToken.encode(last.getReceiver().getPersonalInfo().getFirstname(), last.getReceiver().getId(),
+                    last.getAmount(), last.getId());
+        });
+    }
+
+    @Benchmark
+    public List<User> offset(EmbeddedDatabase database) {
+        return inTransaction(database, session -> session
+                .createQuery("select u from User u order by u.personalInfo.birthDate, u.id", User.class)
+                .setFirstResult(depth)
+                .setMaxResults(PAGE_SIZE)
+                .list());
+    }
+
+    @Benchmark
+    public Slice<User> keyset(EmbeddedDatabase database) {
+        return inTransaction(database, session -> userDao.findUsersOrderedByBirthday(session, token, PAGE_SIZE));
+    }
+
+    @Benchmark
+    public Slice<Payment> companyPaymentsKeyset(EmbeddedDatabase database) {
+        return inTransaction(database, session -> userDao.findPaymentsByCompanyName(session, COMPANY_NAME, companyPaymentsToken, PAGE_SIZE));
+    }
+}
@@ -0,0 +1,94 @@
+package com.dmdev.benchmark;
+
+import com.dmdev.entity.Payment;
+import com.dmdev.entity.User;
+import com.dmdev.util.DataGenerator;
+import com.dmdev.util.IdGeneration;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Массовая запись выплат: IDENTITY (каждый insert - отдельный запрос) против pooled-lo последовательностей с JDBC batching.
+ * Результат - число вставленных выплат в секунду.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(PaymentIngestionBenchmark.PAYMENTS_PER_INVOCATION)
+public class PaymentIngestionBenchmark {
+
+    static final int PAYMENTS_PER_INVOCATION = 5_000;
+    private static final int CHUNK_SIZE = 1_000;
+    private static final int USER_COUNT = 1_000;
+
+    @State(Scope.Benchmark)
+    public static class Database {
+
+        @Param({"IDENTITY", "POOLED_LO"})
+        public IdGeneration idGeneration;
+
+        private EmbeddedPostgres postgres;
+        private SessionFactory sessionFactory;
+        private Long[] userIds;
+
+        @Setup(Level.Trial)
+        public void start() throws IOException {
+            postgres = EmbeddedPostgres.builder().start();
+            sessionFactory = EmbeddedDatabase.buildConfiguration(postgres, idGeneration).buildSessionFactory();
+            new DataGenerator(sessionFactory, DataGenerator.Settings.builder()
+                    .userCount(USER_COUNT)
+                    .paymentCount(0)
+                    .chatCount(0)
+                    .build())
+                    .generate();
+            try (Session session = sessionFactory.openSession()) {
+                userIds = session.createQuery("select u.id from User u order by u.id", Long.class)
+                        .list()
+                        .toArray(Long[]::new);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void stop() throws IOException {
+            sessionFactory.close();
+            postgres.close();
+        }
+    }
+
+    @Benchmark
+    public void ingestPayments(Database database) {
+        SplittableRandom random = new SplittableRandom(42L);
+        try (Session session = database.sessionFactory.openSession()) {
+            session.setCacheMode(CacheMode.IGNORE);
+            session.beginTransaction();
+            for (int i = 0; i < PAYMENTS_PER_INVOCATION; i++) {
+                Payment payment = Payment.builder()
+                        .receiver(session.load(User.class, database.userIds[random.nextInt(database.userIds.length)]))
+                        .amount(random.nextInt(100, 1_000))
+                        .build();
+                session.save(payment);
+                if (i % CHUNK_SIZE == CHUNK_SIZE - 1) {
+                    session.flush();
+                    session.clear();
+                }
+            }
+            session.getTransaction().commit();
+        }
+    }
+}
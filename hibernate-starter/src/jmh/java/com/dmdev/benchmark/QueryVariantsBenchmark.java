@@ -0,0 +1,127 @@
+package com.dmdev.benchmark;
+
+import com.dmdev.dao.UserDao;
+import com.dmdev.dto.CompanyDto;
+import com.dmdev.dto.UserAveragePaymentDto;
+import com.dmdev.entity.Company;
+import com.dmdev.entity.Payment;
+import com.dmdev.entity.User;
+import com.dmdev.util.DataGenerator;
+import com.querydsl.core.Tuple;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Join;
+import javax.persistence.criteria.Root;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.dmdev.benchmark.UserDaoBenchmark.inTransaction;
+
+/**
+ * Сравнение QueryDSL-реализаций {@link UserDao} с эквивалентными HQL и Criteria API запросами
+ * и с нативным запросом на оконных функциях.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class QueryVariantsBenchmark {
+
+    private static final String COMPANY_NAME = DataGenerator.companyName(0);
+
+    @Benchmark
+    public List<Payment> paymentsByCompanyNameQueryDsl(EmbeddedDatabase database) {
+        return inTransaction(database, session -> UserDao.getInstance().findAllPaymentsByCompanyName(session, COMPANY_NAME));
+    }
+
+    @Benchmark
+    public List<Payment> paymentsByCompanyNameHql(EmbeddedDatabase database) {
+        return inTransaction(database, session -> session.createQuery("select p from Payment p " +
+                        "join fetch p.receiver u " +
+                        "join u.company c " +
+                        "where c.name = :companyName " +
+                        "order by u.personalInfo.firstname, p.amount", Payment.class)
+                .setParameter("companyName", COMPANY_NAME)
+                .list());
+    }
+
+    @Benchmark
+    public List<Payment> paymentsByCompanyNameCriteria(EmbeddedDatabase database) {
+        return inTransaction(database, session -> {
+            CriteriaBuilder cb = session.getCriteriaBuilder();
+            CriteriaQuery<Payment> criteria = cb.createQuery(Payment.class);
+            Root<Payment> payment = criteria.from(Payment.class);
+            payment.fetch("receiver");
+            Join<Payment, User> user = payment.join("receiver");
+            Join<User, Company> company = user.join("company");
+
+            criteria.select(payment)
+                    .where(cb.equal(company.get("name"), COMPANY_NAME))
+                    .orderBy(
+                            cb.asc(user.get("personalInfo").get("firstname")),
+                            cb.asc(payment.get("amount"))
+                    );
+
+            return session.createQuery(criteria)
+                    .list();
+        });
+    }
+
+    @Benchmark
+    public List<Tuple> companyAveragesQueryDsl(EmbeddedDatabase database) {
+        return inTransaction(database, session -> UserDao.getInstance().findCompanyNamesWithAvgUserPaymentsOrderedByCompanyName(session));
+    }
+
+    @Benchmark
+    public List<Object[]> companyAveragesHql(EmbeddedDatabase database) {
+        return inTransaction(database, session -> session.createQuery("select c.name, avg(p.amount) from Company c " +
+                        "join c.users u " +
+                        "join u.payments p " +
+                        "group by c.name " +
+                        "order by c.name", Object[].class)
+                .list());
+    }
+
+    @Benchmark
+    public List<CompanyDto> companyAveragesCriteria(EmbeddedDatabase database) {
+        return inTransaction(database, session -> {
+            CriteriaBuilder cb = session.getCriteriaBuilder();
+            CriteriaQuery<CompanyDto> criteria = cb.createQuery(CompanyDto.class);
+            Root<Company> company = criteria.from(Company.class);
+            Join<Company, User> user = company.join("users");
+            Join<User, Payment> payment = user.join("payments");
+
+            criteria.select(cb.construct(CompanyDto.class,
+                            company.get("name"),
+                            cb.avg(payment.get("amount"))))
+                    .groupBy(company.get("name"))
+                    .orderBy(cb.asc(company.get("name")));
+
+            return session.createQuery(criteria)
+                    .list();
+        });
+    }
+
+    @Benchmark
+    public List<Tuple> isItPossibleQueryDsl(EmbeddedDatabase database) {
+        return inTransaction(database, session -> UserDao.getInstance().isItPossible(session));
+    }
+
+    @Benchmark
+    public List<UserAveragePaymentDto> isItPossibleWindowFunctions(EmbeddedDatabase database) {
+        return inTransaction(database, session -> UserDao.getInstance().findUsersWithAboveAveragePayment(session));
+    }
+
+    @Benchmark
+    public List<Object[]> isItPossibleHql(EmbeddedDatabase database) {
+        return inTransaction(database, session -> session.createQuery("select u, avg(p.amount) from User u " +
+                        "join u.payments p " +
+                        "group by u " +
+                        "having avg(p.amount) > (select avg(p.amount) from Payment p) " +
+                        "order by u.personalInfo.firstname", Object[].class)
+                .list());
+    }
+}
@@ -0,0 +1,94 @@
+package com.dmdev.benchmark;
+
+import com.dmdev.interceptor.ReadOnly;
+import com.dmdev.interceptor.TransactionAttribute;
+import com.dmdev.interceptor.TransactionAttributeRegistry;
+import com.dmdev.interceptor.TransactionalProxyFactory;
+import org.hibernate.SessionFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import javax.transaction.Transactional;
+import java.lang.reflect.Method;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Накладные расходы {@link com.dmdev.interceptor.TransactionInterceptor} на вызов метода внутри уже открытой транзакции:
+ * прямой вызов против прокси с REQUIRED (присоединение к транзакции) и SUPPORTS,
+ * а также чтение аннотаций рефлексией на каждый вызов против {@link TransactionAttributeRegistry}.
+ * Запросов к базе нет, масштаб данных не важен: -p paymentCount=10000
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TransactionInterceptorBenchmark {
+
+    private SessionFactory sessionFactory;
+    private Service direct;
+    private Service proxied;
+    private Method requiredMethod;
+    private TransactionAttributeRegistry registry;
+    private long value;
+
+    @Setup(Level.Trial)
+    public void setUp(EmbeddedDatabase database) throws NoSuchMethodException {
+        sessionFactory = database.getSessionFactory();
+        direct = new Service();
+        proxied = new TransactionalProxyFactory(sessionFactory).create(Service.class);
+        requiredMethod = Service.class.getMethod("required", long.class);
+        registry = new TransactionAttributeRegistry();
+        sessionFactory.getCurrentSession().beginTransaction();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        sessionFactory.getCurrentSession().getTransaction().rollback();
+    }
+
+    @Benchmark
+    public long direct() {
+        return direct.required(value++);
+    }
+
+    @Benchmark
+    public long proxiedRequired() {
+        return proxied.required(value++);
+    }
+
+    @Benchmark
+    public long proxiedSupports() {
+        return proxied.supports(value++);
+    }
+
+    @Benchmark
+    public boolean annotationsPerCall() {
+        return requiredMethod.isAnnotationPresent(Transactional.class)
+               && !requiredMethod.isAnnotationPresent(ReadOnly.class);
+    }
+
+    @Benchmark
+    public Optional<TransactionAttribute> registryLookup() {
+        return registry.get(requiredMethod);
+    }
+
+    public static class Service {
+
+        @Transactional
+        public long required(long value) {
+            return value + 1;
+        }
+
+        @Transactional(Transactional.TxType.SUPPORTS)
+        public long supports(long value) {
+            return value + 1;
+        }
+    }
+}
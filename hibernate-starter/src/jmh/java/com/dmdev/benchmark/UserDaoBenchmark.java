@@ -0,0 +1,81 @@
+package com.dmdev.benchmark;
+
+import com.dmdev.dao.UserDao;
+import com.dmdev.dto.PaymentFilter;
+import com.dmdev.entity.Payment;
+import com.dmdev.entity.User;
+import com.dmdev.util.DataGenerator;
+import com.querydsl.core.Tuple;
+import org.hibernate.Session;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Пропускная способность и распределение времени для каждого запроса {@link UserDao}.
+ * Аллокации снимаются профайлером gc (включён в build.gradle).
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class UserDaoBenchmark {
+
+    private static final UserDao userDao = UserDao.getInstance();
+
+    @Benchmark
+    public List<User> findAll(EmbeddedDatabase database) {
+        return inTransaction(database, userDao::findAll);
+    }
+
+    @Benchmark
+    public List<User> findAllByFirstName(EmbeddedDatabase database) {
+        return inTransaction(database, session -> userDao.findAllByFirstName(session, "Bill"));
+    }
+
+    @Benchmark
+    public List<User> findLimitedUsersOrderedByBirthday(EmbeddedDatabase database) {
+        return inTransaction(database, session -> userDao.findLimitedUsersOrderedByBirthday(session, 20));
+    }
+
+    @Benchmark
+    public List<User> findAllByCompanyName(EmbeddedDatabase database) {
+        return inTransaction(database, session -> userDao.findAllByCompanyName(session, DataGenerator.companyName(1)));
+    }
+
+    @Benchmark
+    public List<Payment> findAllPaymentsByCompanyName(EmbeddedDatabase database) {
+        return inTransaction(database, session -> userDao.findAllPaymentsByCompanyName(session, DataGenerator.companyName(0)));
+    }
+
+    @Benchmark
+    public Double findAveragePaymentAmountByFirstAndLastNames(EmbeddedDatabase database) {
+        PaymentFilter filter = PaymentFilter.builder()
+                .firstName("Bill")
+                .lastName("Gates")
+                .build();
+        return inTransaction(database, session -> userDao.findAveragePaymentAmountByFirstAndLastNames(session, filter));
+    }
+
+    @Benchmark
+    public List<Tuple> findCompanyNamesWithAvgUserPaymentsOrderedByCompanyName(EmbeddedDatabase database) {
+        return inTransaction(database, userDao::findCompanyNamesWithAvgUserPaymentsOrderedByCompanyName);
+    }
+
+    @Benchmark
+    public List<Tuple> isItPossible(EmbeddedDatabase database) {
+        return inTransaction(database, userDao::isItPossible);
+    }
+
+    static <T> T inTransaction(EmbeddedDatabase database, Function<Session, T> query) {
+        try (Session session = database.getSessionFactory().openSession()) {
+            session.beginTransaction();
+            T result = query.apply(session);
+            session.getTransaction().commit();
+            return result;
+        }
+    }
+}
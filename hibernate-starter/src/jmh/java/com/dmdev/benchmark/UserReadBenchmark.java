@@ -0,0 +1,79 @@
+package com.dmdev.benchmark;
+
+import com.dmdev.dao.UserRepository;
+import com.dmdev.dto.UserReadDto;
+import com.dmdev.mapper.CompanyReadMapper;
+import com.dmdev.mapper.UserReadMapper;
+import com.dmdev.service.UserService;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static com.dmdev.benchmark.UserDaoBenchmark.inTransaction;
+
+/**
+ * Чтение {@link UserReadDto} по id: через управляемую сущность и маппер против проекции в {@link com.dmdev.dao.UserDao}.
+ * Разница в аллокациях видна в профайлере gc (gc.alloc.rate.norm).
+ * Сущность User кэшируется во втором уровне, поэтому путь через сущность замеряется и в обход кэша.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class UserReadBenchmark {
+
+    private static final UserReadMapper userReadMapper = new UserReadMapper(new CompanyReadMapper());
+
+    private Long[] ids;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void loadIds(EmbeddedDatabase database) {
+        List<Long> userIds = inTransaction(database, session -> session
+                .createQuery("select u.id from User u order by u.id", Long.class)
+                .setMaxResults(1_000)
+                .list());
+        ids = userIds.toArray(Long[]::new);
+    }
+
+    @Benchmark
+    public Optional<UserReadDto> entity(EmbeddedDatabase database) {
+        Long id = nextId();
+        return inTransaction(database, session -> userService(session).findById(id));
+    }
+
+    @Benchmark
+    public Optional<UserReadDto> entityBypassingCache(EmbeddedDatabase database) {
+        Long id = nextId();
+        return inTransaction(database, session -> {
+            session.setCacheMode(CacheMode.IGNORE);
+            return userService(session).findById(id);
+        });
+    }
+
+    @Benchmark
+    public Optional<UserReadDto> projection(EmbeddedDatabase database) {
+        Long id = nextId();
+        return inTransaction(database, session -> userService(session).findReadDtoById(id));
+    }
+
+    private static UserService userService(Session session) {
+        return new UserService(new UserRepository(session), userReadMapper, null, null);
+    }
+
+    private Long nextId() {
+        Long id = ids[next];
+        next = (next + 1) % ids.length;
+        return id;
+    }
+}
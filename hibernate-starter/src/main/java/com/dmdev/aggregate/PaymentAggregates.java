@@ -0,0 +1,471 @@
+package com.dmdev.aggregate;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+import org.hibernate.internal.util.config.ConfigurationHelper;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Суммы и количества выплат по сотрудникам и компаниям в памяти, подключаются при dmdev.payment_aggregates.enabled=true.
+ * Загружаются одним потоковым проходом в фоне после старта фабрики сессий (до этого отчёты читают базу),
+ * дальше поддерживаются событиями после коммита
+ * (см. {@link com.dmdev.listener.PaymentAggregatesListener}), поэтому отчёты по средним выплатам не ходят в базу.
+ * Записи в обход Hibernate (нативный SQL, другие процессы) события не порождают: такое расхождение находит
+ * и исправляет сверка с базой раз в {reconcilePeriodMillis}.
+ */
+@Slf4j
+public class PaymentAggregates implements AutoCloseable {
+
+    public static final String ENABLED_PROPERTY = "dmdev.payment_aggregates.enabled";
+    /**
+     * Свойство сессии: отчёты {@link com.dmdev.dao.UserDao} по средним выплатам читают агрегаты вместо базы.
+     * Порядок строк тогда задаёт {@link String#compareTo}, а не collation базы.
+     */
+    public static final String READ_PROPERTY = "dmdev.payment_aggregates.read";
+    public static final String RECONCILE_PERIOD_PROPERTY = "dmdev.payment_aggregates.reconcile_period_ms";
+    public static final int DEFAULT_RECONCILE_PERIOD_MILLIS = 5 * 60 * 1_000;
+
+    private static final Map<SessionFactory, PaymentAggregates> AGGREGATES = new ConcurrentHashMap<>();
+    private static final int FETCH_SIZE = 1_000;
+    private static final String SCAN_QUERY = "select u.id, c.id, c.name, coalesce(sum(p.amount), 0), count(p.id) " +
+                                             "from User u " +
+                                             "left join u.company c " +
+                                             "left join u.payments p " +
+                                             "group by u.id, c.id, c.name";
+    private static final String RESOLVE_QUERY = "select u.id, c.id, c.name from User u " +
+                                                "left join u.company c " +
+                                                "where u.id in :userIds";
+
+    private final SessionFactory sessionFactory;
+    private final ScheduledExecutorService scheduler;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, UserTotals> users = new HashMap<>();
+    private final Map<Integer, CompanyTotals> companies = new HashMap<>();
+    /**
+     * Сотрудники, чья компания неизвестна (новые или сменившие компанию): в суммах компаний они не учтены
+     */
+    private final Set<Long> unresolvedUsers = new HashSet<>();
+    /**
+     * Сотрудники, изменённые событиями во время сверки: их значения из прохода по базе могут быть устаревшими
+     */
+    private final Set<Long> touchedUsers = new HashSet<>();
+    private long amountSum;
+    private long paymentCount;
+    private final CountDownLatch loaded = new CountDownLatch(1);
+
+    PaymentAggregates(SessionFactory sessionFactory, long reconcilePeriodMillis) {
+        this.sessionFactory = sessionFactory;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "payment-aggregates");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (reconcilePeriodMillis > 0) {
+            scheduler.scheduleWithFixedDelay(this::reconcileQuietly, reconcilePeriodMillis, reconcilePeriodMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Агрегаты фабрики сессий, собранной через {@link com.dmdev.util.HibernateUtil}
+     */
+    public static PaymentAggregates of(SessionFactory sessionFactory) {
+        return find(sessionFactory)
+                .orElseThrow(() -> new IllegalStateException("Payment aggregates are not registered for " + sessionFactory));
+    }
+
+    /**
+     * Агрегаты фабрики сессий или пусто, если они не включены
+     */
+    public static Optional<PaymentAggregates> find(SessionFactory sessionFactory) {
+        return Optional.ofNullable(AGGREGATES.get(sessionFactory));
+    }
+
+    /**
+     * Загруженные агрегаты, если сессия просит читать их ({@link #READ_PROPERTY}), иначе пусто
+     */
+    public static Optional<PaymentAggregates> forReading(Session session) {
+        if (!ConfigurationHelper.getBoolean(READ_PROPERTY, session.getProperties(), false)) {
+            return Optional.empty();
+        }
+        return find(session.getSessionFactory())
+                .filter(PaymentAggregates::isLoaded);
+    }
+
+    static void register(SessionFactory sessionFactory, PaymentAggregates aggregates) {
+        AGGREGATES.put(sessionFactory, aggregates);
+    }
+
+    static void unregister(SessionFactory sessionFactory) {
+        PaymentAggregates aggregates = AGGREGATES.remove(sessionFactory);
+        if (aggregates != null) {
+            aggregates.close();
+        }
+    }
+
+    public void addPayment(Long userId, long amount) {
+        apply(userId, amount, 1);
+    }
+
+    public void removePayment(Long userId, long amount) {
+        apply(userId, -amount, -1);
+    }
+
+    /**
+     * Сотрудник сменил компанию: его выплаты переедут в новую компанию при следующем чтении
+     */
+    public void changeCompany(Long userId) {
+        lock.writeLock().lock();
+        try {
+            touchedUsers.add(userId);
+            UserTotals user = users.get(userId);
+            if (user == null || !unresolvedUsers.add(userId)) {
+                return;
+            }
+            if (user.companyId != null) {
+                companies.get(user.companyId).add(-user.amountSum, -user.paymentCount);
+                user.companyId = null;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void renameCompany(Integer companyId, String name) {
+        lock.writeLock().lock();
+        try {
+            CompanyTotals company = companies.get(companyId);
+            if (company != null) {
+                company.name = name;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Возвращает суммы выплат по компаниям, у сотрудников которых есть выплаты
+     *
+     * @param session сессия для поиска компаний новых сотрудников
+     */
+    public List<CompanyPayments> companyPayments(Session session) {
+        resolveUsers(session);
+
+        lock.readLock().lock();
+        try {
+            List<CompanyPayments> result = new ArrayList<>(companies.size());
+            companies.forEach((companyId, company) -> {
+                if (company.paymentCount > 0) {
+                    result.add(new CompanyPayments(companyId, company.name, company.amountSum, company.paymentCount));
+                }
+            });
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Возвращает средний размер выплат сотрудников, у которых он больше среднего по всем выплатам
+     */
+    public Map<Long, Double> usersAboveAverage() {
+        lock.readLock().lock();
+        try {
+            Map<Long, Double> result = new HashMap<>();
+            users.forEach((userId, user) -> {
+                // user.amountSum / user.paymentCount > amountSum / paymentCount без погрешности деления
+                if (user.paymentCount > 0 && user.amountSum * paymentCount > amountSum * user.paymentCount) {
+                    result.put(userId, (double) user.amountSum / user.paymentCount);
+                }
+            });
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Агрегаты хотя бы раз загружены из базы. До этого отчёты должны читать базу.
+     */
+    public boolean isLoaded() {
+        return loaded.getCount() == 0;
+    }
+
+    /**
+     * Ждёт первой загрузки агрегатов из базы
+     *
+     * @return false, если агрегаты не загрузились за {timeout}
+     */
+    public boolean awaitLoaded(long timeout, TimeUnit unit) throws InterruptedException {
+        return loaded.await(timeout, unit);
+    }
+
+    /**
+     * Сверяет агрегаты с базой и исправляет расхождения
+     *
+     * @return число сотрудников, у которых агрегаты разошлись с базой
+     */
+    public int reconcile() {
+        int drifted = load();
+        if (drifted > 0) {
+            log.warn("Payment aggregates drifted for {} users and were reloaded", drifted);
+        }
+        return drifted;
+    }
+
+    /**
+     * Начальная загрузка в потоке сверки: один потоковый проход по сотрудникам с суммами их выплат.
+     * Старт фабрики сессий её не ждёт, пока агрегаты не загружены, {@link #isLoaded()} возвращает false.
+     */
+    void bootstrap() {
+        if (!scheduler.isShutdown()) {
+            scheduler.execute(this::bootstrapQuietly);
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Пересчитывает всё в фоне, когда по событию нельзя понять, что изменилось
+     */
+    public void reconcileLater() {
+        if (!scheduler.isShutdown()) {
+            scheduler.execute(this::reconcileQuietly);
+        }
+    }
+
+    private void apply(Long userId, long amount, long count) {
+        lock.writeLock().lock();
+        try {
+            touchedUsers.add(userId);
+            amountSum += amount;
+            paymentCount += count;
+            UserTotals user = users.get(userId);
+            if (user == null) {
+                user = new UserTotals(null);
+                users.put(userId, user);
+                unresolvedUsers.add(userId);
+            }
+            user.add(amount, count);
+            if (user.companyId != null && !unresolvedUsers.contains(userId)) {
+                companies.get(user.companyId).add(amount, count);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void resolveUsers(Session session) {
+        List<Long> userIds;
+        lock.readLock().lock();
+        try {
+            if (unresolvedUsers.isEmpty()) {
+                return;
+            }
+            userIds = new ArrayList<>(unresolvedUsers);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<Object[]> rows = session.createQuery(RESOLVE_QUERY, Object[].class)
+                .setParameterList("userIds", userIds)
+                .list();
+        lock.writeLock().lock();
+        try {
+            for (Object[] row : rows) {
+                Long userId = (Long) row[0];
+                UserTotals user = users.get(userId);
+                if (user != null && unresolvedUsers.contains(userId)) {
+                    assignCompany(user, (Integer) row[1], (String) row[2]);
+                }
+            }
+            // сотрудники, которых уже нет в базе, остаются без компании
+            userIds.forEach(unresolvedUsers::remove);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void assignCompany(UserTotals user, Integer companyId, String companyName) {
+        user.companyId = companyId;
+        if (companyId != null) {
+            companies.computeIfAbsent(companyId, id -> new CompanyTotals(companyName))
+                    .add(user.amountSum, user.paymentCount);
+        }
+    }
+
+    /**
+     * Заменяет агрегаты результатом прохода по базе, кроме сотрудников, изменённых событиями за время прохода
+     *
+     * @return число сотрудников, чьи агрегаты отличались от базы
+     */
+    private int load() {
+        lock.writeLock().lock();
+        try {
+            touchedUsers.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        Map<Long, ScannedUser> scanned = scan();
+
+        lock.writeLock().lock();
+        try {
+            int drifted = 0;
+            Map<Long, UserTotals> reloaded = new HashMap<>();
+            for (Map.Entry<Long, ScannedUser> entry : scanned.entrySet()) {
+                Long userId = entry.getKey();
+                ScannedUser row = entry.getValue();
+                UserTotals current = users.get(userId);
+                if (touchedUsers.contains(userId) && current != null) {
+                    reloaded.put(userId, current);
+                    continue;
+                }
+                if (current == null
+                    ? row.paymentCount() != 0
+                    : current.amountSum != row.amountSum() || current.paymentCount != row.paymentCount()
+                      || !unresolvedUsers.contains(userId) && !Objects.equals(current.companyId, row.companyId())) {
+                    drifted++;
+                }
+                UserTotals user = new UserTotals(row.companyId());
+                user.add(row.amountSum(), row.paymentCount());
+                reloaded.put(userId, user);
+                unresolvedUsers.remove(userId);
+            }
+            for (Map.Entry<Long, UserTotals> entry : users.entrySet()) {
+                if (!scanned.containsKey(entry.getKey())) {
+                    if (touchedUsers.contains(entry.getKey())) {
+                        reloaded.put(entry.getKey(), entry.getValue());
+                    } else if (entry.getValue().paymentCount != 0) {
+                        drifted++;
+                    }
+                }
+            }
+            unresolvedUsers.retainAll(reloaded.keySet());
+
+            Map<Integer, String> companyNames = new HashMap<>();
+            companies.forEach((companyId, company) -> companyNames.put(companyId, company.name));
+            scanned.values().forEach(row -> companyNames.put(row.companyId(), row.companyName()));
+
+            users.clear();
+            users.putAll(reloaded);
+            companies.clear();
+            amountSum = 0;
+            paymentCount = 0;
+            users.forEach((userId, user) -> {
+                amountSum += user.amountSum;
+                paymentCount += user.paymentCount;
+                if (user.companyId != null && !unresolvedUsers.contains(userId)) {
+                    companies.computeIfAbsent(user.companyId, id -> new CompanyTotals(companyNames.get(id)))
+                            .add(user.amountSum, user.paymentCount);
+                }
+            });
+            loaded.countDown();
+            return drifted;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private Map<Long, ScannedUser> scan() {
+        Map<Long, ScannedUser> scanned = new HashMap<>();
+        try (StatelessSession session = sessionFactory.openStatelessSession()) {
+            Transaction transaction = session.beginTransaction();
+            try (Stream<Object[]> rows = session.createQuery(SCAN_QUERY, Object[].class)
+                    .setFetchSize(FETCH_SIZE)
+                    .stream()) {
+                rows.forEach(row -> scanned.put((Long) row[0], new ScannedUser(
+                        (Integer) row[1],
+                        (String) row[2],
+                        ((Number) row[3]).longValue(),
+                        ((Number) row[4]).longValue())));
+                transaction.commit();
+            } catch (RuntimeException e) {
+                transaction.rollback();
+                throw e;
+            }
+        }
+        return scanned;
+    }
+
+    private void bootstrapQuietly() {
+        long start = System.currentTimeMillis();
+        try {
+            load();
+            log.info("Payment aggregates of {} users loaded in {} ms", users.size(), System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.warn("Payment aggregates are not loaded, reports will query the database until the next reconciliation", e);
+        }
+    }
+
+    private void reconcileQuietly() {
+        try {
+            reconcile();
+        } catch (Exception e) {
+            log.warn("Payment aggregates reconciliation failed", e);
+        }
+    }
+
+    /**
+     * Сумма и число выплат сотрудникам компании
+     */
+    public record CompanyPayments(Integer companyId,
+                                  String companyName,
+                                  long amountSum,
+                                  long paymentCount) {
+    }
+
+    private record ScannedUser(Integer companyId,
+                               String companyName,
+                               long amountSum,
+                               long paymentCount) {
+    }
+
+    private static class Totals {
+        long amountSum;
+        long paymentCount;
+
+        void add(long amount, long count) {
+            amountSum += amount;
+            paymentCount += count;
+        }
+    }
+
+    private static class UserTotals extends Totals {
+        Integer companyId;
+
+        UserTotals(Integer companyId) {
+            this.companyId = companyId;
+        }
+    }
+
+    private static class CompanyTotals extends Totals {
+        String name;
+
+        CompanyTotals(String name) {
+            this.name = name;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.dmdev.aggregate;
+
+import com.dmdev.listener.PaymentAggregatesListener;
+import org.hibernate.SessionFactory;
+import org.hibernate.SessionFactoryObserver;
+import org.hibernate.boot.Metadata;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.internal.util.config.ConfigurationHelper;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+
+import java.util.Map;
+
+/**
+ * Если dmdev.payment_aggregates.enabled=true, создаёт {@link PaymentAggregates} для каждой фабрики сессий,
+ * подключает к ней {@link PaymentAggregatesListener} и запускает загрузку агрегатов в фоне, как только фабрика готова
+ */
+public class PaymentAggregatesIntegrator implements Integrator {
+
+    @Override
+    public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+        Map<?, ?> settings = serviceRegistry.getService(ConfigurationService.class).getSettings();
+        if (!ConfigurationHelper.getBoolean(PaymentAggregates.ENABLED_PROPERTY, settings, false)) {
+            return;
+        }
+
+        long reconcilePeriodMillis = ConfigurationHelper.getLong(
+                PaymentAggregates.RECONCILE_PERIOD_PROPERTY,
+                settings,
+                PaymentAggregates.DEFAULT_RECONCILE_PERIOD_MILLIS);
+        PaymentAggregates aggregates = new PaymentAggregates(sessionFactory, reconcilePeriodMillis);
+        PaymentAggregates.register(sessionFactory, aggregates);
+
+        PaymentAggregatesListener listener = new PaymentAggregatesListener(aggregates);
+        EventListenerRegistry listenerRegistry = serviceRegistry.getService(EventListenerRegistry.class);
+        listenerRegistry.appendListeners(EventType.POST_COMMIT_INSERT, listener);
+        listenerRegistry.appendListeners(EventType.POST_COMMIT_UPDATE, listener);
+        listenerRegistry.appendListeners(EventType.POST_COMMIT_DELETE, listener);
+
+        sessionFactory.addObserver(new SessionFactoryObserver() {
+            @Override
+            public void sessionFactoryCreated(SessionFactory factory) {
+                aggregates.bootstrap();
+            }
+
+            @Override
+            public void sessionFactoryClosing(SessionFactory factory) {
+                PaymentAggregates.unregister(factory);
+            }
+        });
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+    }
+}
@@ -0,0 +1,72 @@
+package com.dmdev.audit;
+
+import com.dmdev.listener.AuditTableListener;
+import org.hibernate.SessionFactory;
+import org.hibernate.SessionFactoryObserver;
+import org.hibernate.boot.Metadata;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.internal.util.config.ConfigurationHelper;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+
+import java.util.Map;
+
+/**
+ * Подключает {@link AuditTableListener} с {@link AuditWriter}, если dmdev.audit.enabled=true.
+ * Настройки писателя: dmdev.audit.queue_capacity, dmdev.audit.batch_size,
+ * dmdev.audit.backpressure (BLOCK, DROP, SPILL), dmdev.audit.spill_dir.
+ * Снимки длиннее dmdev.audit.compression_threshold байт сжимаются.
+ */
+public class AuditIntegrator implements Integrator {
+
+    public static final String ENABLED = "dmdev.audit.enabled";
+    public static final String QUEUE_CAPACITY = "dmdev.audit.queue_capacity";
+    public static final String BATCH_SIZE = "dmdev.audit.batch_size";
+    public static final String BACKPRESSURE = "dmdev.audit.backpressure";
+    public static final String SPILL_DIR = "dmdev.audit.spill_dir";
+    public static final String COMPRESSION_THRESHOLD = "dmdev.audit.compression_threshold";
+
+    @Override
+    public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+        Map<?, ?> properties = serviceRegistry.getService(ConfigurationService.class).getSettings();
+        if (!ConfigurationHelper.getBoolean(ENABLED, properties, false)) {
+            return;
+        }
+
+        AuditWriter.Settings defaults = AuditWriter.Settings.builder().build();
+        AuditWriter auditWriter = new AuditWriter(sessionFactory, AuditWriter.Settings.builder()
+                .queueCapacity(ConfigurationHelper.getInt(QUEUE_CAPACITY, properties, defaults.getQueueCapacity()))
+                .batchSize(ConfigurationHelper.getInt(BATCH_SIZE, properties, defaults.getBatchSize()))
+                .backpressure(BackpressurePolicy.valueOf(
+                        ConfigurationHelper.getString(BACKPRESSURE, properties, defaults.getBackpressure().name()).toUpperCase()))
+                .spillDirectory(ConfigurationHelper.getString(SPILL_DIR, properties, defaults.getSpillDirectory()))
+                .build());
+        AuditWriter.register(sessionFactory, auditWriter);
+
+        AuditSnapshotEncoder snapshotEncoder = new AuditSnapshotEncoder(ConfigurationHelper.getInt(
+                COMPRESSION_THRESHOLD, properties, AuditSnapshotEncoder.DEFAULT_COMPRESSION_THRESHOLD));
+        AuditTableListener listener = new AuditTableListener(auditWriter, snapshotEncoder);
+        EventListenerRegistry listenerRegistry = serviceRegistry.getService(EventListenerRegistry.class);
+        listenerRegistry.appendListeners(EventType.POST_COMMIT_INSERT, listener);
+        listenerRegistry.appendListeners(EventType.POST_COMMIT_UPDATE, listener);
+        listenerRegistry.appendListeners(EventType.POST_COMMIT_DELETE, listener);
+
+        sessionFactory.addObserver(new SessionFactoryObserver() {
+            @Override
+            public void sessionFactoryCreated(SessionFactory factory) {
+            }
+
+            @Override
+            public void sessionFactoryClosing(SessionFactory factory) {
+                AuditWriter.unregister(factory);
+            }
+        });
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+    }
+}
@@ -0,0 +1,182 @@
+package com.dmdev.audit;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.hibernate.EntityMode;
+import org.hibernate.bytecode.enhance.spi.LazyPropertyInitializer;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.proxy.HibernateProxy;
+import org.hibernate.type.ComponentType;
+import org.hibernate.type.EntityType;
+import org.hibernate.type.Type;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Кодирует состояние сущности для {@link com.dmdev.entity.Audit#getEntityContent()} в JSON по массивам state/oldState события:
+ * для вставки и удаления - непустые свойства, для обновления - только изменившиеся свойства в виде [старое, новое].
+ * Связи записываются идентификатором, коллекции и незагруженные ленивые атрибуты пропускаются.
+ * JSON длиннее {compressionThreshold} байт сжимается gzip и хранится как {"gzip": "base64"}.
+ */
+public class AuditSnapshotEncoder {
+
+    public static final int DEFAULT_COMPRESSION_THRESHOLD = 4 * 1024;
+    private static final String GZIP = "gzip";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final JsonNodeFactory nodes = objectMapper.getNodeFactory();
+    private final Map<String, EntityMetadata> metadata = new ConcurrentHashMap<>();
+    private final int compressionThreshold;
+
+    public AuditSnapshotEncoder() {
+        this(DEFAULT_COMPRESSION_THRESHOLD);
+    }
+
+    public AuditSnapshotEncoder(int compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    public String encodeState(EntityPersister persister, Object[] state) {
+        EntityMetadata entityMetadata = metadataOf(persister);
+        ObjectNode snapshot = nodes.objectNode();
+        for (int i = 0; i < entityMetadata.types().length; i++) {
+            if (entityMetadata.audited()[i] && state[i] != null && state[i] != LazyPropertyInitializer.UNFETCHED_PROPERTY) {
+                snapshot.set(entityMetadata.names()[i], toJson(entityMetadata.types()[i], state[i], persister.getFactory()));
+            }
+        }
+        return write(snapshot);
+    }
+
+    /**
+     * @return null, если ни одно отслеживаемое свойство не изменилось
+     */
+    public String encodeChanges(EntityPersister persister, Object[] oldState, Object[] state) {
+        if (oldState == null) {
+            return encodeState(persister, state);
+        }
+        EntityMetadata entityMetadata = metadataOf(persister);
+        ObjectNode changes = nodes.objectNode();
+        for (int i = 0; i < entityMetadata.types().length; i++) {
+            Type type = entityMetadata.types()[i];
+            if (entityMetadata.audited()[i]
+                && oldState[i] != LazyPropertyInitializer.UNFETCHED_PROPERTY
+                && state[i] != LazyPropertyInitializer.UNFETCHED_PROPERTY
+                && !type.isEqual(oldState[i], state[i])) {
+                ArrayNode change = changes.putArray(entityMetadata.names()[i]);
+                change.add(toJson(type, oldState[i], persister.getFactory()));
+                change.add(toJson(type, state[i], persister.getFactory()));
+            }
+        }
+        return changes.isEmpty() ? null : write(changes);
+    }
+
+    /**
+     * Возвращает JSON снимка, распаковывая сжатый
+     */
+    public String decode(String content) {
+        try {
+            JsonNode node = objectMapper.readTree(content);
+            if (node.size() != 1 || !node.has(GZIP)) {
+                return content;
+            }
+            byte[] compressed = Base64.getDecoder().decode(node.get(GZIP).asText());
+            try (GZIPInputStream input = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+                return new String(input.readAllBytes(), StandardCharsets.UTF_8);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private EntityMetadata metadataOf(EntityPersister persister) {
+        return metadata.computeIfAbsent(persister.getEntityName(), entityName -> {
+            Type[] types = persister.getPropertyTypes();
+            boolean[] audited = new boolean[types.length];
+            for (int i = 0; i < types.length; i++) {
+                audited[i] = !types[i].isCollectionType();
+            }
+            return new EntityMetadata(persister.getPropertyNames(), types, audited);
+        });
+    }
+
+    private JsonNode toJson(Type type, Object value, SessionFactoryImplementor sessionFactory) {
+        if (value == null) {
+            return nodes.nullNode();
+        }
+        if (type instanceof EntityType entityType) {
+            return toJson(identifierOf(entityType, value, sessionFactory));
+        }
+        if (type instanceof ComponentType componentType) {
+            ObjectNode component = nodes.objectNode();
+            Object[] values = componentType.getPropertyValues(value, EntityMode.POJO);
+            for (int i = 0; i < values.length; i++) {
+                component.set(componentType.getPropertyNames()[i],
+                        toJson(componentType.getSubtypes()[i], values[i], sessionFactory));
+            }
+            return component;
+        }
+        return toJson(value);
+    }
+
+    private JsonNode toJson(Object value) {
+        if (value == null) {
+            return nodes.nullNode();
+        }
+        if (value instanceof Number || value instanceof Boolean) {
+            return objectMapper.valueToTree(value);
+        }
+        if (value instanceof Enum<?> enumValue) {
+            return nodes.textNode(enumValue.name());
+        }
+        return nodes.textNode(value.toString());
+    }
+
+    private Object identifierOf(EntityType entityType, Object value, SessionFactoryImplementor sessionFactory) {
+        if (value instanceof HibernateProxy proxy) {
+            return proxy.getHibernateLazyInitializer().getIdentifier();
+        }
+        return sessionFactory.getMetamodel()
+                .entityPersister(entityType.getAssociatedEntityName())
+                .getIdentifier(value, null);
+    }
+
+    private String write(ObjectNode snapshot) {
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(snapshot);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length <= compressionThreshold) {
+            return json;
+        }
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream output = new GZIPOutputStream(compressed)) {
+            output.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        ObjectNode wrapper = nodes.objectNode();
+        wrapper.put(GZIP, Base64.getEncoder().encodeToString(compressed.toByteArray()));
+        return wrapper.toString();
+    }
+
+    private record EntityMetadata(String[] names, Type[] types, boolean[] audited) {
+    }
+}
@@ -0,0 +1,227 @@
+package com.dmdev.audit;
+
+import com.dmdev.entity.Audit;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Файл, в который {@link AuditWriter} сбрасывает записи аудита, не поместившиеся в очередь.
+ * Записи дописываются в конец, а при чтении файл целиком забирается на обработку и удаляется.
+ * Сколько записей уже сохранено, отмечается в {name}.progress, чтобы повтор после сбоя не сохранял их второй раз.
+ * Записи, которые не удаётся сохранить даже по одной, откладываются в {name}.dead и больше не повторяются.
+ * Имя не зависит от процесса: audit, а если его держит другой писатель - audit-1, audit-2 и т.д. Имя занимается
+ * блокировкой {name}.lock до {@link #close()}, поэтому файлы, оставшиеся после падения процесса, достаются
+ * следующему писателю с тем же именем и дописываются в базу.
+ */
+class AuditSpillFile implements Closeable {
+
+    private static final String NAME = "audit";
+    /**
+     * Файлы блокировок, занятые в этой JVM: закрытие второго канала к такому файлу сняло бы блокировку первого
+     */
+    private static final Set<Path> LOCKED = ConcurrentHashMap.newKeySet();
+
+    private final Path path;
+    private final Path replayPath;
+    private final Path progressPath;
+    private final Path deadLetterPath;
+    private final Path lockPath;
+    private final FileChannel lockChannel;
+
+    private AuditSpillFile(Path directory, String name, Path lockPath, FileChannel lockChannel) {
+        this.path = directory.resolve(name + ".spill");
+        this.replayPath = directory.resolve(name + ".replay");
+        this.progressPath = directory.resolve(name + ".progress");
+        this.deadLetterPath = directory.resolve(name + ".dead");
+        this.lockPath = lockPath;
+        this.lockChannel = lockChannel;
+    }
+
+    /**
+     * Занимает первое свободное имя в {directory}
+     */
+    static AuditSpillFile lock(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        for (int index = 0; ; index++) {
+            String name = index == 0 ? NAME : NAME + "-" + index;
+            Path lockPath = directory.resolve(name + ".lock").toAbsolutePath().normalize();
+            if (!LOCKED.add(lockPath)) {
+                continue;
+            }
+            FileChannel channel = null;
+            try {
+                channel = FileChannel.open(lockPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                if (channel.tryLock() != null) {
+                    return new AuditSpillFile(directory, name, lockPath, channel);
+                }
+            } catch (IOException | RuntimeException e) {
+                LOCKED.remove(lockPath);
+                if (channel != null) {
+                    channel.close();
+                }
+                throw e;
+            }
+            // имя занято другим процессом
+            LOCKED.remove(lockPath);
+            channel.close();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (lockChannel.isOpen()) {
+            lockChannel.close();
+            LOCKED.remove(lockPath);
+        }
+    }
+
+    synchronized void append(Audit audit) throws IOException {
+        append(path, audit);
+    }
+
+    synchronized void deadLetter(Audit audit) throws IOException {
+        append(deadLetterPath, audit);
+    }
+
+    Path getDeadLetterPath() {
+        return deadLetterPath;
+    }
+
+    private static void append(Path path, Audit audit) throws IOException {
+        Files.createDirectories(path.getParent());
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(path, StandardOpenOption.CREATE, StandardOpenOption.APPEND)))) {
+            writeBytes(output, serialize(audit.getEntityId()));
+            writeBytes(output, bytesOf(audit.getEntityName()));
+            writeBytes(output, bytesOf(audit.getEntityContent()));
+            writeBytes(output, audit.getOperation() == null ? null : bytesOf(audit.getOperation().name()));
+        }
+    }
+
+    synchronized boolean isEmpty() {
+        return !Files.exists(path) && !Files.exists(replayPath);
+    }
+
+    /**
+     * Возвращает все сброшенные записи. Файл удаляется вызовом {@link #commitReplay()} после того,
+     * как записи сохранены, до этого повторный вызов вернёт их снова; первые {@link #replayed()} из них уже сохранены.
+     */
+    synchronized List<Audit> replay() throws IOException {
+        if (!Files.exists(replayPath)) {
+            if (!Files.exists(path)) {
+                return List.of();
+            }
+            Files.move(path, replayPath, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        List<Audit> audits = new ArrayList<>();
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(replayPath)))) {
+            while (true) {
+                byte[] entityId;
+                try {
+                    entityId = readBytes(input);
+                } catch (EOFException e) {
+                    break;
+                }
+                String entityName = stringOf(readBytes(input));
+                String entityContent = stringOf(readBytes(input));
+                String operation = stringOf(readBytes(input));
+                audits.add(Audit.builder()
+                        .entityId(deserialize(entityId))
+                        .entityName(entityName)
+                        .entityContent(entityContent)
+                        .operation(operation == null ? null : Audit.Operation.valueOf(operation))
+                        .build());
+            }
+        }
+        return audits;
+    }
+
+    /**
+     * Сколько записей из начала {@link #replay()} уже сохранено
+     */
+    synchronized int replayed() throws IOException {
+        return Files.exists(progressPath) ? Integer.parseInt(Files.readString(progressPath).trim()) : 0;
+    }
+
+    synchronized void replayed(int count) throws IOException {
+        Path temporary = progressPath.resolveSibling(progressPath.getFileName() + ".tmp");
+        Files.writeString(temporary, Integer.toString(count));
+        Files.move(temporary, progressPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    synchronized void commitReplay() throws IOException {
+        Files.deleteIfExists(replayPath);
+        Files.deleteIfExists(progressPath);
+    }
+
+    private static void writeBytes(DataOutputStream output, byte[] bytes) throws IOException {
+        if (bytes == null) {
+            output.writeInt(-1);
+        } else {
+            output.writeInt(bytes.length);
+            output.write(bytes);
+        }
+    }
+
+    private static byte[] readBytes(DataInputStream input) throws IOException {
+        int length = input.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return bytes;
+    }
+
+    private static byte[] bytesOf(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String stringOf(byte[] bytes) {
+        return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] serialize(Serializable value) throws IOException {
+        if (value == null) {
+            return null;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+            output.writeObject(value);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Serializable deserialize(byte[] bytes) throws IOException {
+        if (bytes == null) {
+            return null;
+        }
+        try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return (Serializable) input.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e);
+        }
+    }
+}
@@ -0,0 +1,349 @@
+package com.dmdev.audit;
+
+import com.dmdev.entity.Audit;
+import lombok.Builder;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+import org.hibernate.exception.JDBCConnectionException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Асинхронная запись аудита: записи, пойманные после коммита бизнес-транзакции, кладутся в ограниченную очередь,
+ * а фоновый поток пишет их порциями по {batchSize} через {@link StatelessSession} в отдельной транзакции.
+ * Порция уходит одним JDBC batch только с {@link com.dmdev.util.IdGeneration#POOLED_LO}: при IDENTITY (по умолчанию)
+ * каждый insert выполняется сразу, чтобы получить id, и порция - это только общая транзакция.
+ * Если порция не записалась не из-за недоступности базы, записи пишутся по одной, а те, что не записываются
+ * и по одной, откладываются в dead-letter файл рядом со spill-файлом.
+ * При заполнении очереди действует {@link BackpressurePolicy}. При закрытии фабрики сессий
+ * (или JVM, если фабрику не закрыли) очередь дописывается в базу. Сброшенное на диск упавшим процессом
+ * дописывается в базу после старта, см. {@link AuditSpillFile}.
+ */
+@Slf4j
+public class AuditWriter implements AutoCloseable {
+
+    private static final Map<SessionFactory, AuditWriter> WRITERS = new ConcurrentHashMap<>();
+    private static final long POLL_TIMEOUT_MILLIS = 100;
+
+    private final SessionFactory sessionFactory;
+    private final Settings settings;
+    private final BlockingQueue<PendingAudit> queue;
+    private final AuditSpillFile spillFile;
+    private final Thread worker;
+    private final Thread shutdownHook;
+
+    private final LongAdder written = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder spilled = new LongAdder();
+    private final LongAdder deadLettered = new LongAdder();
+    private volatile long lagMillis;
+    private volatile boolean closed;
+
+    public AuditWriter(SessionFactory sessionFactory, Settings settings) {
+        this.sessionFactory = sessionFactory;
+        this.settings = settings;
+        this.queue = new ArrayBlockingQueue<>(settings.getQueueCapacity());
+        try {
+            this.spillFile = AuditSpillFile.lock(Paths.get(settings.getSpillDirectory()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.worker = new Thread(this::run, "audit-writer");
+        this.worker.setDaemon(true);
+        this.worker.start();
+        this.shutdownHook = new Thread(this::close, "audit-writer-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    /**
+     * Писатель аудита фабрики сессий, собранной через {@link com.dmdev.util.HibernateUtil} с dmdev.audit.enabled=true
+     */
+    public static AuditWriter of(SessionFactory sessionFactory) {
+        AuditWriter writer = WRITERS.get(sessionFactory);
+        if (writer == null) {
+            throw new IllegalStateException("Audit writer is not registered for " + sessionFactory);
+        }
+        return writer;
+    }
+
+    static void register(SessionFactory sessionFactory, AuditWriter writer) {
+        WRITERS.put(sessionFactory, writer);
+    }
+
+    static void unregister(SessionFactory sessionFactory) {
+        AuditWriter writer = WRITERS.remove(sessionFactory);
+        if (writer != null) {
+            writer.close();
+        }
+    }
+
+    public void submit(Audit audit) {
+        if (closed) {
+            log.warn("Audit writer is closed, dropping audit of {} {}", audit.getEntityName(), audit.getEntityId());
+            dropped.increment();
+            return;
+        }
+
+        PendingAudit pending = new PendingAudit(audit, System.currentTimeMillis());
+        switch (settings.getBackpressure()) {
+            case BLOCK -> {
+                try {
+                    // после close() фоновый поток может уже не разбирать очередь, put() ждал бы вечно
+                    while (!queue.offer(pending, POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                        if (closed) {
+                            log.warn("Audit writer is closed, dropping audit of {} {}", audit.getEntityName(), audit.getEntityId());
+                            dropped.increment();
+                            return;
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    dropped.increment();
+                }
+            }
+            case DROP -> {
+                if (!queue.offer(pending)) {
+                    dropped.increment();
+                }
+            }
+            case SPILL -> {
+                if (!queue.offer(pending)) {
+                    spill(audit);
+                }
+            }
+        }
+    }
+
+    public Stats stats() {
+        return new Stats(queue.size(), written.sum(), dropped.sum(), spilled.sum(), deadLettered.sum(), lagMillis);
+    }
+
+    /**
+     * Перестаёт принимать записи, дожидается записи очереди и сброшенного на диск
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            worker.join(settings.getShutdownTimeoutMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (worker.isAlive()) {
+            log.warn("Audit writer did not finish in {} ms, {} audits left in queue",
+                    settings.getShutdownTimeoutMillis(), queue.size());
+        } else {
+            try {
+                spillFile.close();
+            } catch (IOException e) {
+                log.warn("Failed to release audit spill file", e);
+            }
+        }
+        if (Thread.currentThread() != shutdownHook) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException e) {
+                // JVM уже завершается
+            }
+        }
+    }
+
+    private void run() {
+        List<PendingAudit> batch = new ArrayList<>(settings.getBatchSize());
+        while (true) {
+            try {
+                PendingAudit first = queue.poll(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, settings.getBatchSize() - 1);
+                    write(batch);
+                    batch.clear();
+                } else if (!spillFile.isEmpty()) {
+                    replaySpilled();
+                } else if (closed) {
+                    return;
+                }
+            } catch (InterruptedException e) {
+                if (closed) {
+                    return;
+                }
+            } catch (Exception e) {
+                log.error("Audit writer failure", e);
+            }
+        }
+    }
+
+    private void write(List<PendingAudit> batch) {
+        List<Audit> audits = new ArrayList<>(batch.size());
+        for (PendingAudit pending : batch) {
+            audits.add(pending.audit());
+        }
+        try {
+            insert(audits);
+        } catch (RuntimeException e) {
+            if (isTransient(e)) {
+                log.error("Failed to write {} audits", audits.size(), e);
+                audits.forEach(this::retryLater);
+                return;
+            }
+            log.warn("Failed to write {} audits in one batch, writing them one by one", audits.size(), e);
+            for (Audit audit : audits) {
+                try {
+                    insert(List.of(audit));
+                } catch (RuntimeException auditFailure) {
+                    if (isTransient(auditFailure)) {
+                        retryLater(audit);
+                    } else {
+                        deadLetter(audit, auditFailure);
+                    }
+                }
+            }
+        }
+        lagMillis = System.currentTimeMillis() - batch.get(0).enqueuedAt();
+    }
+
+    /**
+     * Сохраняет сброшенные записи, отмечая прогресс после каждой порции: если база откажет посреди файла,
+     * следующий повтор продолжит с первой несохранённой записи
+     */
+    private void replaySpilled() throws IOException {
+        List<Audit> audits = spillFile.replay();
+        int replayed = spillFile.replayed();
+        while (replayed < audits.size()) {
+            List<Audit> batch = audits.subList(replayed, Math.min(replayed + settings.getBatchSize(), audits.size()));
+            try {
+                insert(batch);
+                replayed += batch.size();
+                spillFile.replayed(replayed);
+            } catch (RuntimeException e) {
+                if (isTransient(e)) {
+                    throw e;
+                }
+                log.warn("Failed to replay {} audits in one batch, replaying them one by one", batch.size(), e);
+                for (Audit audit : batch) {
+                    try {
+                        insert(List.of(audit));
+                    } catch (RuntimeException auditFailure) {
+                        if (isTransient(auditFailure)) {
+                            throw auditFailure;
+                        }
+                        deadLetter(audit, auditFailure);
+                    }
+                    spillFile.replayed(++replayed);
+                }
+            }
+        }
+        spillFile.commitReplay();
+    }
+
+    private void insert(List<Audit> audits) {
+        try (StatelessSession session = sessionFactory.openStatelessSession()) {
+            // действует только с POOLED_LO, insert с IDENTITY не откладывается
+            session.setJdbcBatchSize(settings.getBatchSize());
+            Transaction transaction = session.beginTransaction();
+            try {
+                for (Audit audit : audits) {
+                    session.insert(audit);
+                }
+                transaction.commit();
+            } catch (RuntimeException e) {
+                transaction.rollback();
+                throw e;
+            }
+        }
+        written.add(audits.size());
+    }
+
+    private void retryLater(Audit audit) {
+        if (settings.getBackpressure() == BackpressurePolicy.SPILL) {
+            spill(audit);
+        } else {
+            dropped.increment();
+        }
+    }
+
+    private void deadLetter(Audit audit, Exception cause) {
+        try {
+            spillFile.deadLetter(audit);
+            deadLettered.increment();
+            log.error("Failed to write audit of {} {}, moved to {}",
+                    audit.getEntityName(), audit.getEntityId(), spillFile.getDeadLetterPath(), cause);
+        } catch (IOException e) {
+            log.error("Failed to write audit of {} {}", audit.getEntityName(), audit.getEntityId(), cause);
+            dropped.increment();
+        }
+    }
+
+    /**
+     * База недоступна или занята: повтор имеет смысл, а запись по одной ничего не даст
+     */
+    private static boolean isTransient(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof JDBCConnectionException
+                || cause instanceof SQLTransientException
+                || cause instanceof SQLRecoverableException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void spill(Audit audit) {
+        try {
+            spillFile.append(audit);
+            spilled.increment();
+        } catch (IOException e) {
+            log.error("Failed to spill audit of {} {}", audit.getEntityName(), audit.getEntityId(), e);
+            dropped.increment();
+        }
+    }
+
+    private record PendingAudit(Audit audit, long enqueuedAt) {
+    }
+
+    /**
+     * @param queueDepth   записей в очереди
+     * @param deadLettered записей, отложенных в dead-letter файл
+     * @param lagMillis    сколько ждала в очереди первая запись последней записанной порции
+     */
+    public record Stats(int queueDepth,
+                        long written,
+                        long dropped,
+                        long spilled,
+                        long deadLettered,
+                        long lagMillis) {
+    }
+
+    @Value
+    @Builder
+    public static class Settings {
+        @Builder.Default
+        int queueCapacity = 10_000;
+        @Builder.Default
+        int batchSize = 50;
+        @Builder.Default
+        BackpressurePolicy backpressure = BackpressurePolicy.BLOCK;
+        @Builder.Default
+        String spillDirectory = System.getProperty("java.io.tmpdir");
+        @Builder.Default
+        long shutdownTimeoutMillis = 10_000;
+    }
+}
@@ -0,0 +1,19 @@
+package com.dmdev.audit;
+
+/**
+ * Поведение {@link AuditWriter}, когда очередь записей аудита заполнена
+ */
+public enum BackpressurePolicy {
+    /**
+     * Поток, закоммитивший транзакцию, ждёт освобождения места в очереди
+     */
+    BLOCK,
+    /**
+     * Запись отбрасывается и учитывается в {@link AuditWriter.Stats#dropped()}
+     */
+    DROP,
+    /**
+     * Запись сбрасывается в файл на диске и дописывается в базу, когда очередь опустеет
+     */
+    SPILL
+}
@@ -0,0 +1,145 @@
+package com.dmdev.bootstrap;
+
+import com.dmdev.metrics.MetricName;
+import com.dmdev.metrics.MetricsRegistry;
+import com.dmdev.metrics.MetricsSource;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Время фаз сборки фабрики сессий через {@link com.dmdev.util.HibernateUtil#buildSessionFactory(org.hibernate.cfg.Configuration)}.
+ * Фаза длится от предыдущей отметки до своей; отметки внутри сборки фабрики ставят {@link BootstrapProfilerIntegrator}
+ * и {@link ProfilingSchemaManagementTool}. Профайлер передаётся им через настройки под ключом {@link #PROPERTY}.
+ */
+@Slf4j
+public class BootstrapProfiler implements MetricsSource {
+
+    public static final String PROPERTY = "dmdev.bootstrap.profiler";
+
+    private static final Map<SessionFactory, BootstrapProfiler> PROFILERS = new ConcurrentHashMap<>();
+
+    private final long startedAt;
+    private final Map<Phase, Long> phases = new EnumMap<>(Phase.class);
+    private long lastMark;
+    private volatile CompletableFuture<Void> schemaValidation = CompletableFuture.completedFuture(null);
+
+    private BootstrapProfiler(long startedAt) {
+        this.startedAt = startedAt;
+        this.lastMark = startedAt;
+    }
+
+    public static BootstrapProfiler start() {
+        return new BootstrapProfiler(System.nanoTime());
+    }
+
+    /**
+     * Профайлер фабрики сессий, собранной через {@link com.dmdev.util.HibernateUtil}
+     */
+    public static BootstrapProfiler of(SessionFactory sessionFactory) {
+        BootstrapProfiler profiler = PROFILERS.get(sessionFactory);
+        if (profiler == null) {
+            throw new IllegalStateException("Bootstrap profile is not registered for " + sessionFactory);
+        }
+        return profiler;
+    }
+
+    /**
+     * @return null, если фабрика собирается без профайлера
+     */
+    static BootstrapProfiler from(Map<?, ?> settings) {
+        return settings.get(PROPERTY) instanceof BootstrapProfiler profiler ? profiler : null;
+    }
+
+    static void register(SessionFactory sessionFactory, BootstrapProfiler profiler) {
+        PROFILERS.put(sessionFactory, profiler);
+    }
+
+    static void unregister(SessionFactory sessionFactory) {
+        PROFILERS.remove(sessionFactory);
+    }
+
+    /**
+     * Завершает фазу: время с предыдущей отметки прибавляется к {phase}
+     */
+    public synchronized void mark(Phase phase) {
+        long now = System.nanoTime();
+        phases.merge(phase, now - lastMark, Long::sum);
+        lastMark = now;
+    }
+
+    public synchronized Map<Phase, Duration> phases() {
+        Map<Phase, Duration> durations = new EnumMap<>(Phase.class);
+        phases.forEach((phase, nanos) -> durations.put(phase, Duration.ofNanos(nanos)));
+        return Collections.unmodifiableMap(durations);
+    }
+
+    public synchronized Duration total() {
+        return Duration.ofNanos(lastMark - startedAt);
+    }
+
+    /**
+     * Проверка схемы, отложенная {@link ProfilingSchemaManagementTool}; завершена сразу, если проверка шла при старте
+     */
+    public CompletableFuture<Void> schemaValidation() {
+        return schemaValidation;
+    }
+
+    void schemaValidation(CompletableFuture<Void> schemaValidation) {
+        this.schemaValidation = schemaValidation;
+    }
+
+    @Override
+    public synchronized void sample(MetricsRegistry registry) {
+        phases.forEach((phase, nanos) ->
+                registry.gauge(MetricName.of("hibernate_bootstrap_phase_ms", "phase", phase.label()), toMillis(nanos)));
+        registry.gauge(MetricName.of("hibernate_bootstrap_ms"), toMillis(lastMark - startedAt));
+        registry.gauge(MetricName.of("hibernate_bootstrap_schema_validation_pending"), schemaValidation.isDone() ? 0 : 1);
+    }
+
+    void log() {
+        StringBuilder text = new StringBuilder();
+        phases().forEach((phase, duration) -> text.append(text.length() == 0 ? "" : ", ")
+                .append(phase.label()).append('=').append(duration.toMillis()).append(" ms"));
+        log.info("Session factory built in {} ms: {}", total().toMillis(), text);
+    }
+
+    private static double toMillis(long nanos) {
+        return (double) nanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    public enum Phase {
+        /**
+         * {@link com.dmdev.util.HibernateUtil#buildConfiguration()}: интеграторы, классы, настройки
+         */
+        CONFIGURATION,
+        /**
+         * Разбор hibernate.cfg.xml
+         */
+        CFG_XML,
+        SERVICE_REGISTRY,
+        /**
+         * Разбор аннотаций и маппинги Envers, до первого интегратора
+         */
+        METADATA,
+        /**
+         * Интеграторы, персистеры, проверка именованных запросов
+         */
+        SESSION_FACTORY,
+        /**
+         * hbm2ddl; при фоновой проверке - только её запуск
+         */
+        SCHEMA;
+
+        public String label() {
+            return name().toLowerCase();
+        }
+    }
+}
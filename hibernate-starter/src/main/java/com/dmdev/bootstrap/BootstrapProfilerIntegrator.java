@@ -0,0 +1,52 @@
+package com.dmdev.bootstrap;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.SessionFactoryObserver;
+import org.hibernate.boot.Metadata;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+
+/**
+ * Отмечает фазы сборки фабрики для {@link BootstrapProfiler}: интеграторы вызываются сразу после сборки метаданных,
+ * а фабрика готова к sessionFactoryCreated. Должен подключаться первым из интеграторов.
+ */
+public class BootstrapProfilerIntegrator implements Integrator {
+
+    @Override
+    public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+        BootstrapProfiler profiler = BootstrapProfiler.from(serviceRegistry.getService(ConfigurationService.class).getSettings());
+        if (profiler == null) {
+            return;
+        }
+        profiler.mark(BootstrapProfiler.Phase.METADATA);
+
+        sessionFactory.addObserver(new SessionFactoryObserver() {
+
+            @Override
+            public void sessionFactoryCreated(SessionFactory factory) {
+                profiler.mark(BootstrapProfiler.Phase.SESSION_FACTORY);
+                BootstrapProfiler.register(factory, profiler);
+                profiler.log();
+            }
+
+            /**
+             * Фоновая проверка схемы работает с пулом соединений фабрики, поэтому закрытие её дожидается
+             */
+            @Override
+            public void sessionFactoryClosing(SessionFactory factory) {
+                profiler.schemaValidation().exceptionally(throwable -> null).join();
+            }
+
+            @Override
+            public void sessionFactoryClosed(SessionFactory factory) {
+                BootstrapProfiler.unregister(factory);
+            }
+        });
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+    }
+}
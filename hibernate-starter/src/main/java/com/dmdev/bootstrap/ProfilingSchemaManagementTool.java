@@ -0,0 +1,120 @@
+package com.dmdev.bootstrap;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.boot.Metadata;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.jdbc.env.spi.JdbcEnvironment;
+import org.hibernate.internal.util.config.ConfigurationHelper;
+import org.hibernate.tool.schema.internal.HibernateSchemaManagementTool;
+import org.hibernate.tool.schema.spi.DelayedDropAction;
+import org.hibernate.tool.schema.spi.ExecutionOptions;
+import org.hibernate.tool.schema.spi.SchemaCreator;
+import org.hibernate.tool.schema.spi.SchemaDropper;
+import org.hibernate.tool.schema.spi.SchemaMigrator;
+import org.hibernate.tool.schema.spi.SchemaValidator;
+import org.hibernate.tool.schema.spi.SourceDescriptor;
+import org.hibernate.tool.schema.spi.TargetDescriptor;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * hbm2ddl с отметкой фазы {@link BootstrapProfiler.Phase#SCHEMA}. Если задан {@link #SNAPSHOT_DIR_PROPERTY},
+ * проверка схемы (validate) для маппингов, уже проверенных на этой базе ({@link SchemaSnapshot}), уходит с пути
+ * старта в фоновый поток; новые маппинги проверяются при старте, как обычно. Проверка выполняется всегда:
+ * снимок решает только, ждёт ли её старт.
+ */
+@Slf4j
+@SuppressWarnings("rawtypes")
+public class ProfilingSchemaManagementTool extends HibernateSchemaManagementTool {
+
+    public static final String SNAPSHOT_DIR_PROPERTY = "dmdev.bootstrap.snapshot_dir";
+
+    private static final Executor BACKGROUND = task -> {
+        Thread thread = new Thread(task, "schema-validation");
+        thread.setDaemon(true);
+        thread.start();
+    };
+
+    @Override
+    public SchemaCreator getSchemaCreator(Map options) {
+        SchemaCreator creator = super.getSchemaCreator(options);
+        return (metadata, executionOptions, source, target) ->
+                profiled(options, () -> creator.doCreation(metadata, executionOptions, source, target));
+    }
+
+    @Override
+    public SchemaDropper getSchemaDropper(Map options) {
+        SchemaDropper dropper = super.getSchemaDropper(options);
+        return new SchemaDropper() {
+
+            @Override
+            public void doDrop(Metadata metadata, ExecutionOptions executionOptions, SourceDescriptor source, TargetDescriptor target) {
+                profiled(options, () -> dropper.doDrop(metadata, executionOptions, source, target));
+            }
+
+            @Override
+            public DelayedDropAction buildDelayedAction(Metadata metadata, ExecutionOptions executionOptions, SourceDescriptor source) {
+                return dropper.buildDelayedAction(metadata, executionOptions, source);
+            }
+        };
+    }
+
+    @Override
+    public SchemaMigrator getSchemaMigrator(Map options) {
+        SchemaMigrator migrator = super.getSchemaMigrator(options);
+        return (metadata, executionOptions, target) -> profiled(options, () -> migrator.doMigration(metadata, executionOptions, target));
+    }
+
+    @Override
+    public SchemaValidator getSchemaValidator(Map options) {
+        SchemaValidator validator = super.getSchemaValidator(options);
+        String snapshotDir = ConfigurationHelper.getString(SNAPSHOT_DIR_PROPERTY, options);
+        if (snapshotDir == null) {
+            return (metadata, executionOptions) -> profiled(options, () -> validator.doValidation(metadata, executionOptions));
+        }
+        return (metadata, executionOptions) -> profiled(options, () -> {
+            Dialect dialect = getServiceRegistry().getService(JdbcEnvironment.class).getDialect();
+            Object url = options.get(AvailableSettings.URL);
+            SchemaSnapshot snapshot = SchemaSnapshot.of(metadata, dialect, url, Path.of(snapshotDir));
+            if (!snapshot.isValidated()) {
+                validator.doValidation(metadata, executionOptions);
+                snapshot.markValidated();
+                return;
+            }
+            CompletableFuture<Void> validation = CompletableFuture.runAsync(() -> {
+                long start = System.nanoTime();
+                validator.doValidation(metadata, executionOptions);
+                log.info("Schema {} validated in background in {} ms",
+                        snapshot.getHash(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            }, BACKGROUND).whenComplete((result, throwable) -> {
+                if (throwable != null) {
+                    log.error("Background schema validation failed, next start will validate before opening", throwable);
+                    snapshot.invalidate();
+                }
+            });
+            BootstrapProfiler profiler = BootstrapProfiler.from(options);
+            if (profiler != null) {
+                profiler.schemaValidation(validation);
+            }
+        });
+    }
+
+    /**
+     * Время до действия относится к сборке фабрики, само действие - к схеме
+     */
+    private static void profiled(Map<?, ?> options, Runnable action) {
+        BootstrapProfiler profiler = BootstrapProfiler.from(options);
+        if (profiler != null) {
+            profiler.mark(BootstrapProfiler.Phase.SESSION_FACTORY);
+        }
+        action.run();
+        if (profiler != null) {
+            profiler.mark(BootstrapProfiler.Phase.SCHEMA);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.dmdev.bootstrap;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.boot.Metadata;
+import org.hibernate.boot.model.relational.Namespace;
+import org.hibernate.boot.model.relational.Sequence;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.spi.Mapping;
+import org.hibernate.mapping.Column;
+import org.hibernate.mapping.Table;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Отпечаток схемы, которую ожидают маппинги: таблицы, колонки с SQL-типами диалекта и последовательности плюс URL базы.
+ * Успешная проверка схемы записывается в файл {dir}/schema-{hash}.validated. Отпечаток не видит саму базу,
+ * поэтому файл означает только, что эти маппинги уже проходили проверку, а не что схема по-прежнему верна.
+ */
+@Slf4j
+@RequiredArgsConstructor
+class SchemaSnapshot {
+
+    @Getter
+    private final String hash;
+    private final Path file;
+
+    static SchemaSnapshot of(Metadata metadata, Dialect dialect, Object url, Path dir) {
+        List<String> lines = new ArrayList<>();
+        for (Table table : metadata.collectTableMappings()) {
+            if (!table.isPhysicalTable()) {
+                continue;
+            }
+            Iterator<Column> columns = table.getColumnIterator();
+            while (columns.hasNext()) {
+                Column column = columns.next();
+                lines.add(table.getQualifiedTableName() + "." + column.getName() + " "
+                          + column.getSqlType(dialect, (Mapping) metadata) + (column.isNullable() ? "" : " not null"));
+            }
+        }
+        for (Namespace namespace : metadata.getDatabase().getNamespaces()) {
+            for (Sequence sequence : namespace.getSequences()) {
+                lines.add("sequence " + sequence.getName().render());
+            }
+        }
+        Collections.sort(lines);
+        lines.add(0, String.valueOf(url));
+
+        MessageDigest digest = sha256();
+        lines.forEach(line -> digest.update((line + "\n").getBytes(StandardCharsets.UTF_8)));
+        String hash = String.format("%064x", new BigInteger(1, digest.digest()));
+        return new SchemaSnapshot(hash, dir.resolve("schema-" + hash + ".validated"));
+    }
+
+    boolean isValidated() {
+        return Files.exists(file);
+    }
+
+    /**
+     * Без записи снимка следующий старт просто проверит схему ещё раз, поэтому ошибка записи не прерывает работу
+     */
+    void markValidated() {
+        try {
+            Files.createDirectories(file.getParent());
+            Files.writeString(file, Instant.now().toString());
+        } catch (IOException e) {
+            log.warn("Failed to write schema snapshot {}", file, e);
+        }
+    }
+
+    void invalidate() {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Failed to delete schema snapshot {}", file, e);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.dmdev.cache;
+
+import lombok.experimental.UtilityClass;
+import org.hibernate.SessionFactory;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cache.jcache.internal.JCacheRegionFactory;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+
+import javax.cache.CacheManager;
+import javax.cache.management.CacheStatisticsMXBean;
+import javax.management.JMX;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Регионы кэша второго уровня. Политика каждого региона (ёмкость heap, off-heap в байтах, TTL) задаётся в ehcache-config.xml,
+ * регион без политики - ошибка старта фабрики сессий (см. {@link CacheRegionsIntegrator}).
+ */
+@UtilityClass
+public class CacheRegions {
+
+    public static final String CONFIG = "ehcache-config.xml";
+
+    public static final String USERS = "Users";
+    public static final String USER_CHATS_OF_USER = "Users.userChats";
+    public static final String COMPANIES = "Companies";
+    public static final String PAYMENTS = "Payments";
+    public static final String USER_CHATS = "UserChats";
+
+    private static final String STATISTICS_OBJECT_NAME = "javax.cache:type=CacheStatistics,CacheManager=%s,Cache=%s";
+
+    public static void apply(Configuration configuration) {
+        configuration.setProperty(ConfigSettings.CONFIG_URI, CONFIG);
+        configuration.setProperty(ConfigSettings.MISSING_CACHE_STRATEGY, "fail");
+    }
+
+    /**
+     * Возвращает статистику регионов фабрики сессий, пусто - если кэш второго уровня выключен
+     */
+    public static List<RegionStats> stats(SessionFactory sessionFactory) {
+        SessionFactoryImplementor factory = sessionFactory.unwrap(SessionFactoryImplementor.class);
+        RegionFactory regionFactory = factory.getCache().getRegionFactory();
+        if (!(regionFactory instanceof JCacheRegionFactory jCacheRegionFactory)) {
+            return List.of();
+        }
+
+        CacheManager cacheManager = jCacheRegionFactory.getCacheManager();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        List<RegionStats> stats = new ArrayList<>();
+        for (String region : cacheManager.getCacheNames()) {
+            ObjectName name = statisticsObjectName(cacheManager, region);
+            if (server.isRegistered(name)) {
+                CacheStatisticsMXBean statistics = JMX.newMXBeanProxy(server, name, CacheStatisticsMXBean.class);
+                stats.add(new RegionStats(region, statistics.getCacheHits(), statistics.getCacheMisses(),
+                        statistics.getCachePuts(), statistics.getCacheEvictions()));
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Имя MBean статистики JCache, как его регистрирует ehcache
+     */
+    private static ObjectName statisticsObjectName(CacheManager cacheManager, String region) {
+        try {
+            return new ObjectName(String.format(STATISTICS_OBJECT_NAME,
+                    sanitize(cacheManager.getURI().toString()), sanitize(region)));
+        } catch (MalformedObjectNameException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String sanitize(String value) {
+        return value.replaceAll("[,:=\n]", ".");
+    }
+
+    public record RegionStats(String region,
+                              long hits,
+                              long misses,
+                              long puts,
+                              long evictions) {
+    }
+}
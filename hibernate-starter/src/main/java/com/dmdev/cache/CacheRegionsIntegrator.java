@@ -0,0 +1,66 @@
+package com.dmdev.cache;
+
+import org.hibernate.boot.Metadata;
+import org.hibernate.boot.spi.SessionFactoryOptions;
+import org.hibernate.cache.CacheException;
+import org.hibernate.cache.jcache.internal.JCacheRegionFactory;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.mapping.Collection;
+import org.hibernate.mapping.PersistentClass;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+
+import javax.cache.CacheManager;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Проверяет при старте, что у каждого региона @Cache сущностей и коллекций есть политика в конфигурации JCache,
+ * и включает по ним статистику для {@link CacheRegions#stats}. Регионы кэша запросов Hibernate создаёт раньше
+ * интеграторов, их отсутствие обрывает старт сам по missing_cache_strategy=fail.
+ */
+public class CacheRegionsIntegrator implements Integrator {
+
+    @Override
+    public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+        SessionFactoryOptions options = sessionFactory.getSessionFactoryOptions();
+        RegionFactory regionFactory = sessionFactory.getCache().getRegionFactory();
+        if (!options.isSecondLevelCacheEnabled() || !(regionFactory instanceof JCacheRegionFactory jCacheRegionFactory)) {
+            return;
+        }
+
+        CacheManager cacheManager = jCacheRegionFactory.getCacheManager();
+        Set<String> regions = mappedRegions(metadata, options);
+        Set<String> missing = new TreeSet<>(regions);
+        cacheManager.getCacheNames().forEach(missing::remove);
+        if (!missing.isEmpty()) {
+            throw new CacheException("Cache regions " + missing + " have no policy in " + cacheManager.getURI());
+        }
+        cacheManager.getCacheNames().forEach(region -> cacheManager.enableStatistics(region, true));
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+    }
+
+    private static Set<String> mappedRegions(Metadata metadata, SessionFactoryOptions options) {
+        Set<String> regions = new TreeSet<>();
+        for (PersistentClass entity : metadata.getEntityBindings()) {
+            if (entity.isCached()) {
+                regions.add(qualify(options, entity.getRootClass().getCacheRegionName()));
+            }
+        }
+        for (Collection collection : metadata.getCollectionBindings()) {
+            if (collection.getCacheConcurrencyStrategy() != null) {
+                regions.add(qualify(options, collection.getCacheRegionName()));
+            }
+        }
+        return regions;
+    }
+
+    private static String qualify(SessionFactoryOptions options, String region) {
+        String prefix = options.getCacheRegionPrefix();
+        return prefix == null ? region : prefix + '.' + region;
+    }
+}
@@ -0,0 +1,201 @@
+package com.dmdev.counter;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Счётчик участников чатов (chat.count).
+ * Вступления и выходы копятся в {@link LongAdder} на каждый чат без блокировок и без записи в строку чата,
+ * а раз в {flushPeriodMillis} применяются к базе одним батчем UPDATE chat SET count = count + ?.
+ * Поэтому значение Chat.count в загруженной сущности может отставать, точное значение возвращает {@link #count(Long)}.
+ */
+@Slf4j
+public class ChatMemberCounter implements AutoCloseable {
+
+    public static final String FLUSH_PERIOD_PROPERTY = "dmdev.chat_member_counter.flush_period_ms";
+    public static final int DEFAULT_FLUSH_PERIOD_MILLIS = 1_000;
+
+    private static final Map<SessionFactory, ChatMemberCounter> COUNTERS = new ConcurrentHashMap<>();
+
+    private final ConnectionProvider connectionProvider;
+    private final Map<Long, LongAdder> pending = new ConcurrentHashMap<>();
+    /**
+     * Запись - применение накопленных изменений к базе, чтение - точное значение счётчика.
+     * Вступления и выходы блокировку не берут.
+     */
+    private final ReadWriteLock flushLock = new ReentrantReadWriteLock();
+    private final ScheduledExecutorService scheduler;
+
+    ChatMemberCounter(ConnectionProvider connectionProvider, long flushPeriodMillis) {
+        this.connectionProvider = connectionProvider;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "chat-member-counter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, flushPeriodMillis, flushPeriodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Счётчик фабрики сессий, собранной через {@link com.dmdev.util.HibernateUtil}
+     */
+    public static ChatMemberCounter of(SessionFactory sessionFactory) {
+        ChatMemberCounter counter = COUNTERS.get(sessionFactory);
+        if (counter == null) {
+            throw new IllegalStateException("Chat member counter is not registered for " + sessionFactory);
+        }
+        return counter;
+    }
+
+    static void register(SessionFactory sessionFactory, ChatMemberCounter counter) {
+        COUNTERS.put(sessionFactory, counter);
+    }
+
+    static void unregister(SessionFactory sessionFactory) {
+        ChatMemberCounter counter = COUNTERS.remove(sessionFactory);
+        if (counter != null) {
+            counter.close();
+        }
+    }
+
+    public void increment(Long chatId) {
+        add(chatId, 1);
+    }
+
+    public void decrement(Long chatId) {
+        add(chatId, -1);
+    }
+
+    private void add(Long chatId, long delta) {
+        // compute атомарен относительно удаления обнулившихся счётчиков в flush
+        pending.compute(chatId, (id, adder) -> {
+            LongAdder result = adder == null ? new LongAdder() : adder;
+            result.add(delta);
+            return result;
+        });
+    }
+
+    /**
+     * Точное число участников чата: значение в базе плюс ещё не применённые изменения
+     */
+    public long count(Long chatId) {
+        flushLock.readLock().lock();
+        try {
+            LongAdder delta = pending.get(chatId);
+            return selectCount(chatId) + (delta == null ? 0 : delta.sum());
+        } finally {
+            flushLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Число чатов с ещё не применёнными изменениями
+     */
+    int pendingChats() {
+        return pending.size();
+    }
+
+    /**
+     * Применяет накопленные изменения к базе в одной транзакции.
+     * Изменения, пришедшие во время применения, остаются в очереди до следующего раза.
+     */
+    public void flush() {
+        flushLock.writeLock().lock();
+        try {
+            Map<Long, Long> deltas = new HashMap<>();
+            pending.forEach((chatId, adder) -> {
+                long delta = adder.sum();
+                if (delta != 0) {
+                    deltas.put(chatId, delta);
+                } else {
+                    pending.computeIfPresent(chatId, (id, current) -> current.sum() == 0 ? null : current);
+                }
+            });
+            if (deltas.isEmpty()) {
+                return;
+            }
+
+            applyDeltas(deltas);
+            deltas.forEach((chatId, delta) -> pending.computeIfPresent(chatId, (id, adder) -> {
+                adder.add(-delta);
+                return adder.sum() == 0 ? null : adder;
+            }));
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to apply chat member counts", e);
+        } finally {
+            flushLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Останавливает периодическое применение и применяет то, что осталось
+     */
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        flushQuietly();
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.warn("Chat member counts will be retried on the next flush", e);
+        }
+    }
+
+    private void applyDeltas(Map<Long, Long> deltas) throws SQLException {
+        Connection connection = connectionProvider.getConnection();
+        boolean autoCommit = connection.getAutoCommit();
+        try (PreparedStatement statement = connection.prepareStatement("UPDATE chat SET count = count + ? WHERE id = ?")) {
+            connection.setAutoCommit(false);
+            for (Map.Entry<Long, Long> entry : deltas.entrySet()) {
+                statement.setLong(1, entry.getValue());
+                statement.setLong(2, entry.getKey());
+                statement.addBatch();
+            }
+            statement.executeBatch();
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+            connectionProvider.closeConnection(connection);
+        }
+    }
+
+    private long selectCount(Long chatId) {
+        try {
+            Connection connection = connectionProvider.getConnection();
+            try (PreparedStatement statement = connection.prepareStatement("SELECT count FROM chat WHERE id = ?")) {
+                statement.setLong(1, chatId);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    return resultSet.next() ? resultSet.getLong(1) : 0;
+                }
+            } finally {
+                if (!connection.getAutoCommit()) {
+                    connection.rollback();
+                }
+                connectionProvider.closeConnection(connection);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to read chat member count", e);
+        }
+    }
+}
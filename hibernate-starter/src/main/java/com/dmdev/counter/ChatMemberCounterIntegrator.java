@@ -0,0 +1,51 @@
+package com.dmdev.counter;
+
+import com.dmdev.listener.UserChatListener;
+import org.hibernate.SessionFactory;
+import org.hibernate.SessionFactoryObserver;
+import org.hibernate.boot.Metadata;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.internal.util.config.ConfigurationHelper;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+
+/**
+ * Создаёт {@link ChatMemberCounter} для каждой фабрики сессий и подключает к ней {@link UserChatListener}.
+ * При закрытии фабрики остаток накопленных изменений применяется к базе.
+ */
+public class ChatMemberCounterIntegrator implements Integrator {
+
+    @Override
+    public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+        long flushPeriodMillis = ConfigurationHelper.getLong(
+                ChatMemberCounter.FLUSH_PERIOD_PROPERTY,
+                serviceRegistry.getService(ConfigurationService.class).getSettings(),
+                ChatMemberCounter.DEFAULT_FLUSH_PERIOD_MILLIS);
+        ChatMemberCounter counter = new ChatMemberCounter(serviceRegistry.getService(ConnectionProvider.class), flushPeriodMillis);
+        ChatMemberCounter.register(sessionFactory, counter);
+
+        UserChatListener listener = new UserChatListener(counter);
+        EventListenerRegistry listenerRegistry = serviceRegistry.getService(EventListenerRegistry.class);
+        listenerRegistry.appendListeners(EventType.POST_COMMIT_INSERT, listener);
+        listenerRegistry.appendListeners(EventType.POST_COMMIT_DELETE, listener);
+
+        sessionFactory.addObserver(new SessionFactoryObserver() {
+            @Override
+            public void sessionFactoryCreated(SessionFactory factory) {
+            }
+
+            @Override
+            public void sessionFactoryClosing(SessionFactory factory) {
+                ChatMemberCounter.unregister(factory);
+            }
+        });
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+    }
+}
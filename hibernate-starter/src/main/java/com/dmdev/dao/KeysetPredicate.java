@@ -0,0 +1,55 @@
+package com.dmdev.dao;
+
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.ComparableExpression;
+import com.querydsl.core.types.dsl.NumberExpression;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Условие "строго после" для ключа сортировки (k1, k2, ..., kn) по возрастанию:
+ * k1 >= v1 and (k1 > v1 or k1 = v1 and (k2 > v2 or ...)).
+ * Ведущее k1 >= v1 позволяет базе начать сканирование индекса с нужной позиции вместо OFFSET.
+ * Значения ключа не должны быть null.
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class KeysetPredicate {
+
+    private final List<BooleanExpression> greater = new ArrayList<>();
+    private final List<BooleanExpression> equal = new ArrayList<>();
+    private BooleanExpression leading;
+
+    public static KeysetPredicate builder() {
+        return new KeysetPredicate();
+    }
+
+    public <T extends Comparable<?>> KeysetPredicate add(ComparableExpression<T> path, T value) {
+        return add(path.gt(value), path.eq(value), path.goe(value));
+    }
+
+    public <T extends Number & Comparable<?>> KeysetPredicate add(NumberExpression<T> path, T value) {
+        return add(path.gt(value), path.eq(value), path.goe(value));
+    }
+
+    private KeysetPredicate add(BooleanExpression gt, BooleanExpression eq, BooleanExpression goe) {
+        if (leading == null) {
+            leading = goe;
+        }
+        greater.add(gt);
+        equal.add(eq);
+        return this;
+    }
+
+    public Predicate build() {
+        int last = greater.size() - 1;
+        BooleanExpression after = greater.get(last);
+        for (int i = last - 1; i >= 0; i--) {
+            after = greater.get(i).or(equal.get(i).and(after));
+        }
+        return leading.and(after);
+    }
+}
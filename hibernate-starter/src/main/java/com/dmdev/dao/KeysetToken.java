@@ -0,0 +1,60 @@
+package com.dmdev.dao;
+
+import lombok.experimental.UtilityClass;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Непрозрачный токен продолжения keyset-пагинации: значения ключа сортировки последней строки страницы
+ */
+@UtilityClass
+public class KeysetToken {
+
+    private static final String SEPARATOR = "\u001F";
+    private static final String NULL = "\u0000";
+
+    public String encode(Object... values) {
+        List<String> parts = new ArrayList<>(values.length);
+        for (Object value : values) {
+            parts.add(value == null ? NULL : value.toString());
+        }
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(String.join(SEPARATOR, parts).getBytes(StandardCharsets.UTF_8));
+    }
+
+    public List<String> decode(String token, int expectedSize) {
+        String decoded;
+        try {
+            decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed continuation token: " + token, e);
+        }
+        String[] parts = decoded.split(SEPARATOR, -1);
+        if (parts.length != expectedSize) {
+            throw new IllegalArgumentException("Malformed continuation token: " + token);
+        }
+        List<String> values = new ArrayList<>(parts.length);
+        for (String part : parts) {
+            values.add(NULL.equals(part) ? null : part);
+        }
+        return values;
+    }
+
+    /**
+     * Разбирает значение ключа из токена {token}: ошибка разбора - такой же IllegalArgumentException, как у повреждённого токена
+     */
+    public <T> T parse(String token, String value, Function<String, T> parser) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return parser.apply(value);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Malformed continuation token: " + token, e);
+        }
+    }
+}
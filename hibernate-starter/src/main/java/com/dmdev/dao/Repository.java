@@ -1,11 +1,15 @@
 package com.dmdev.dao;
 
+import com.dmdev.dto.Slice;
 import com.dmdev.entity.BaseEntity;
+import com.querydsl.core.types.Predicate;
 
 import java.io.Serializable;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import static java.util.Collections.emptyMap;
 
@@ -23,5 +27,33 @@ public interface Repository<K extends Serializable, E extends BaseEntity> {
 
     Optional<E> findById(K id, Map<String, Object> properties);
 
+    default List<E> findAllById(Collection<K> ids) {
+        return findAllById(ids, emptyMap());
+    }
+
+    /**
+     * Возвращает сущности с указанными id в порядке {ids}, отсутствующие в базе id пропускаются.
+     * Сущности из контекста персистентности и кэша второго уровня берутся без обращения к базе,
+     * остальные загружаются запросами с IN по порциям.
+     */
+    List<E> findAllById(Collection<K> ids, Map<String, Object> properties);
+
     List<E> findAll();
+
+    /**
+     * Потоково читает всю таблицу серверным курсором порциями по {fetchSize} строк.
+     * Прочитанные сущности read-only и вытесняются из сессии по мере продвижения потока,
+     * поэтому объём памяти не зависит от размера таблицы. Поток нужно закрыть.
+     */
+    Stream<E> streamAll(int fetchSize);
+
+    /**
+     * То же, что {@link #streamAll(int)}, но только для сущностей, удовлетворяющих {predicate}
+     */
+    Stream<E> streamAll(Predicate predicate, int fetchSize);
+
+    /**
+     * Keyset-пагинация по id: следующие {size} сущностей после строки из {token} (null - первая страница)
+     */
+    Slice<E> findSlice(String token, int size);
 }
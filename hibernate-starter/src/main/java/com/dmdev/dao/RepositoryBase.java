@@ -1,20 +1,57 @@
 package com.dmdev.dao;
 
+import com.dmdev.dto.Slice;
 import com.dmdev.entity.BaseEntity;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.PathBuilder;
+import com.querydsl.core.types.dsl.PathBuilderFactory;
+import com.querydsl.jpa.impl.JPAQuery;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
+import org.hibernate.Cache;
+import org.hibernate.CacheMode;
+import org.hibernate.Hibernate;
+import org.hibernate.MultiIdentifierLoadAccess;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.EntityKey;
+import org.hibernate.engine.spi.PersistenceContext;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.graph.GraphSemantic;
+import org.hibernate.graph.RootGraph;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.query.Query;
+import org.hibernate.type.Type;
 
 import javax.persistence.EntityManager;
+import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Root;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 @RequiredArgsConstructor
 public abstract class RepositoryBase<K extends Serializable, E extends BaseEntity> implements Repository<K, E> {
 
+    private static final int MULTI_LOAD_BATCH_SIZE = 500;
+
     @Getter
     private final EntityManager entityManager;
     private final Class<E> clazz;
@@ -29,7 +66,7 @@ public abstract class RepositoryBase<K extends Serializable, E extends BaseEntit
     @Override
     public void delete(K id) {
 
-        entityManager.remove(id);
+        entityManager.remove(entityManager.getReference(clazz, id));
         entityManager.flush();
     }
 
@@ -46,6 +83,52 @@ public abstract class RepositoryBase<K extends Serializable, E extends BaseEntit
         return Optional.ofNullable(entityManager.find(clazz, id, properties));
     }
 
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<E> findAllById(Collection<K> ids, Map<String, Object> properties) {
+
+        Session session = entityManager.unwrap(Session.class);
+        SessionImplementor sessionImplementor = session.unwrap(SessionImplementor.class);
+        EntityPersister persister = sessionImplementor.getEntityPersister(clazz.getName(), null);
+        Cache cache = session.getSessionFactory().getCache();
+
+        Map<K, E> found = new HashMap<>();
+        List<K> misses = new ArrayList<>();
+        for (K id : new LinkedHashSet<>(ids)) {
+            EntityKey key = sessionImplementor.generateEntityKey(id, persister);
+            if (sessionImplementor.getPersistenceContext().containsEntity(key) || cache.contains(clazz, id)) {
+                findById(id, properties).ifPresent(entity -> found.put(id, entity));
+            } else {
+                misses.add(id);
+            }
+        }
+
+        if (!misses.isEmpty()) {
+            MultiIdentifierLoadAccess<E> loadAccess = session.byMultipleIds(clazz)
+                    .withBatchSize(MULTI_LOAD_BATCH_SIZE);
+            for (GraphSemantic semantic : GraphSemantic.values()) {
+                Object graph = properties.get(semantic.getJpaHintName());
+                if (graph != null) {
+                    loadAccess.with((RootGraph<E>) graph, semantic);
+                }
+            }
+            for (E entity : loadAccess.multiLoad(misses)) {
+                if (entity != null) {
+                    found.put((K) entity.getId(), entity);
+                }
+            }
+        }
+
+        List<E> result = new ArrayList<>(ids.size());
+        for (K id : ids) {
+            E entity = found.get(id);
+            if (entity != null) {
+                result.add(entity);
+            }
+        }
+        return result;
+    }
+
     @Override
     public List<E> findAll() {
 
@@ -55,4 +138,151 @@ public abstract class RepositoryBase<K extends Serializable, E extends BaseEntit
         return entityManager.createQuery(criteria)
                 .getResultList();
     }
+
+    @Override
+    public Stream<E> streamAll(int fetchSize) {
+
+        CriteriaQuery<E> criteria = entityManager.getCriteriaBuilder().createQuery(clazz);
+        criteria.from(clazz);
+
+        return stream(entityManager.createQuery(criteria), fetchSize);
+    }
+
+    @Override
+    public Stream<E> streamAll(Predicate predicate, int fetchSize) {
+
+        // алиас совпадает с экземплярами по умолчанию Q-классов (QUser.user и т.д.), на которых строятся предикаты
+        PathBuilder<E> entity = new PathBuilderFactory().create(clazz);
+
+        return stream(new JPAQuery<E>(entityManager)
+                .select(entity)
+                .from(entity)
+                .where(predicate)
+                .createQuery(), fetchSize);
+    }
+
+    @Override
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    public Slice<E> findSlice(String token, int size) {
+
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<E> criteria = cb.createQuery(clazz);
+        Root<E> root = criteria.from(clazz);
+        Path<Comparable> id = root.get("id");
+        criteria.select(root).orderBy(cb.asc(id));
+        if (token != null) {
+            criteria.where(cb.greaterThan(id, KeysetToken.parse(token, KeysetToken.decode(token, 1).get(0), idParser())));
+        }
+
+        List<E> rows = entityManager.createQuery(criteria)
+                .setMaxResults(size + 1)
+                .getResultList();
+
+        return Slice.of(rows, size, entity -> KeysetToken.encode(entity.getId()));
+    }
+
+    @SuppressWarnings("rawtypes")
+    private Function<String, Comparable> idParser() {
+        Class<?> idType = entityManager.getMetamodel().entity(clazz).getIdType().getJavaType();
+        if (idType == Long.class) {
+            return Long::valueOf;
+        }
+        if (idType == Integer.class) {
+            return Integer::valueOf;
+        }
+        throw new IllegalArgumentException("Unsupported id type for keyset pagination: " + idType);
+    }
+
+    private Stream<E> stream(javax.persistence.Query query, int fetchSize) {
+        Session session = entityManager.unwrap(Session.class);
+        ScrollableResults results = query.unwrap(Query.class)
+                .setFetchSize(fetchSize)
+                .setReadOnly(true)
+                .setCacheMode(CacheMode.IGNORE)
+                .scroll(ScrollMode.FORWARD_ONLY);
+
+        EvictingSpliterator spliterator = new EvictingSpliterator(session, results);
+        return StreamSupport.stream(spliterator, false)
+                .onClose(spliterator::close);
+    }
+
+    /**
+     * Отдаёт строки курсора по одной и вытесняет из сессии предыдущую сущность перед чтением следующей,
+     * вместе с неинициализированными ссылками на связанные сущности (после enhancement'а это заготовки сущностей).
+     * Вытесняется только то, чего не было в сессии до чтения строки: сущности и ссылки вызывающего кода остаются.
+     * Для этого перед каждой строкой копируются ключи сущностей сессии, поток рассчитан на почти пустую сессию.
+     * Прокси без enhancement'а не вытесняются: сессия держит их по слабым ссылкам
+     */
+    private class EvictingSpliterator extends Spliterators.AbstractSpliterator<E> {
+
+        private final SessionImplementor session;
+        private final ScrollableResults results;
+        private Set<EntityKey> managedBeforeRow = Set.of();
+        private E previous;
+
+        EvictingSpliterator(Session session, ScrollableResults results) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.session = session.unwrap(SessionImplementor.class);
+            this.results = results;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super E> action) {
+            evictPrevious();
+            managedBeforeRow = managedKeys();
+            if (!results.next()) {
+                return false;
+            }
+            previous = clazz.cast(results.get(0));
+            action.accept(previous);
+            return true;
+        }
+
+        void close() {
+            evictPrevious();
+            results.close();
+        }
+
+        private void evictPrevious() {
+            if (previous != null) {
+                List<Object> references = uninitializedReferences(previous);
+                if (isReadWithRow(previous)) {
+                    session.evict(previous);
+                }
+                references.forEach(session::evict);
+                previous = null;
+            }
+        }
+
+        private Set<EntityKey> managedKeys() {
+            PersistenceContext persistenceContext = session.getPersistenceContext();
+            if (persistenceContext.getNumberOfManagedEntities() == 0) {
+                return Set.of();
+            }
+            Set<EntityKey> keys = new HashSet<>();
+            for (Object key : persistenceContext.getEntitiesByKey().keySet()) {
+                keys.add((EntityKey) key);
+            }
+            return keys;
+        }
+
+        private boolean isReadWithRow(Object entity) {
+            EntityEntry entry = session.getPersistenceContext().getEntry(entity);
+            return entry != null && !managedBeforeRow.contains(entry.getEntityKey());
+        }
+
+        private List<Object> uninitializedReferences(E entity) {
+            EntityPersister persister = session.getEntityPersister(null, entity);
+            Type[] types = persister.getPropertyTypes();
+            Object[] values = persister.getPropertyValues(entity);
+            List<Object> references = new ArrayList<>();
+            for (int i = 0; i < types.length; i++) {
+                if (types[i].isEntityType() && values[i] != null && !Hibernate.isInitialized(values[i])
+                    && isReadWithRow(values[i])) {
+                    references.add(values[i]);
+                }
+            }
+            return references;
+        }
+    }
 }
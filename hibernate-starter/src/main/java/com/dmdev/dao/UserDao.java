@@ -1,10 +1,20 @@
 package com.dmdev.dao;
 
+import com.dmdev.aggregate.PaymentAggregates;
+import com.dmdev.aggregate.PaymentAggregates.CompanyPayments;
+import com.dmdev.dto.CompanyReadDto;
 import com.dmdev.dto.PaymentFilter;
+import com.dmdev.dto.Slice;
+import com.dmdev.dto.UserAveragePaymentDto;
+import com.dmdev.dto.UserReadDto;
 import com.dmdev.entity.Company;
 import com.dmdev.entity.Payment;
+import com.dmdev.entity.PersonalInfo;
 import com.dmdev.entity.User;
+import com.dmdev.report.PaymentReportCache;
 import com.querydsl.core.Tuple;
+import com.querydsl.core.types.Projections;
+import com.querydsl.core.types.QTuple;
 import com.querydsl.core.types.Predicate;
 import com.querydsl.jpa.impl.JPAQuery;
 import lombok.AccessLevel;
@@ -15,8 +25,17 @@ import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Join;
 import javax.persistence.criteria.Root;
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.function.IntFunction;
 
 import static com.dmdev.entity.QCompany.company;
 import static com.dmdev.entity.QPayment.payment;
@@ -99,6 +118,100 @@ public class UserDao {
                 .fetch();
     }
 
+    /**
+     * Возвращает страницу из {size} сотрудников, упорядоченных по дате рождения и id (сотрудники без даты рождения - в конце),
+     * следующую за строкой из {token}. Первая страница - token = null.
+     * Вместо OFFSET используется условие по ключу сортировки, поэтому глубокие страницы стоят столько же, сколько первая.
+     */
+    public Slice<User> findUsersOrderedByBirthday(Session session, String token, int size) {
+        LocalDate lastBirthDate = null;
+        Long lastId = null;
+        if (token != null) {
+            List<String> key = KeysetToken.decode(token, 2);
+            lastBirthDate = KeysetToken.parse(token, key.get(0), LocalDate::parse);
+            lastId = KeysetToken.parse(token, key.get(1), Long::valueOf);
+        }
+        boolean inNullZone = lastId != null && lastBirthDate == null;
+
+        Predicate after = lastId == null || inNullZone ? null : KeysetPredicate.builder()
+                .add(user.personalInfo.birthDate, lastBirthDate)
+                .add(user.id, lastId)
+                .build();
+        Long lastNullZoneId = inNullZone ? lastId : null;
+
+        List<User> rows = seek(size, !inNullZone,
+                limit -> new JPAQuery<User>(session)
+                        .select(user)
+                        .from(user)
+                        .where(user.personalInfo.birthDate.isNotNull(), after)
+                        .orderBy(user.personalInfo.birthDate.asc(), user.id.asc())
+                        .limit(limit)
+                        .fetch(),
+                limit -> new JPAQuery<User>(session)
+                        .select(user)
+                        .from(user)
+                        .where(user.personalInfo.birthDate.isNull(), lastNullZoneId == null ? null : user.id.gt(lastNullZoneId))
+                        .orderBy(user.id.asc())
+                        .limit(limit)
+                        .fetch());
+
+        return Slice.of(rows, size, it -> KeysetToken.encode(
+                Optional.ofNullable(it.getPersonalInfo()).map(PersonalInfo::getBirthDate).orElse(null),
+                it.getId()));
+    }
+
+    /**
+     * Возвращает сотрудника с компанией сразу в виде {@link UserReadDto}: значения читаются проекцией,
+     * без загрузки управляемых сущностей в контекст персистентности
+     */
+    public Optional<UserReadDto> findUserReadDtoById(Session session, Long id) {
+        Tuple row = new JPAQuery<Tuple>(session)
+                .select(user.id, user.personalInfo, user.username, user.info, user.role, company.id, company.name)
+                .from(user)
+                .leftJoin(user.company, company)
+                .where(user.id.eq(id))
+                .fetchOne();
+        if (row == null) {
+            return Optional.empty();
+        }
+
+        Integer companyId = row.get(company.id);
+        CompanyReadDto companyDto = companyId == null
+                ? null
+                : new CompanyReadDto(companyId, row.get(company.name), findCompanyLocales(session, companyId));
+
+        return Optional.of(new UserReadDto(row.get(user.id),
+                row.get(user.personalInfo),
+                row.get(user.username),
+                row.get(user.info),
+                row.get(user.role),
+                companyDto));
+    }
+
+    private Map<String, String> findCompanyLocales(Session session, Integer companyId) {
+        List<Object[]> locales = session.createQuery(
+                        "select key(l), value(l) from Company c join c.locales l where c.id = :companyId", Object[].class)
+                .setParameter("companyId", companyId)
+                .list();
+
+        Map<String, String> result = new HashMap<>();
+        for (Object[] locale : locales) {
+            result.put((String) locale[0], (String) locale[1]);
+        }
+        return result;
+    }
+
+    /**
+     * Возвращает те из указанных логинов, которые уже заняты
+     */
+    public List<String> findExistingUsernames(Session session, Collection<String> usernames) {
+        return new JPAQuery<String>(session)
+                .select(user.username)
+                .from(user)
+                .where(user.username.in(usernames))
+                .fetch();
+    }
+
     /**
      * Возвращает всех сотрудников компании с указанным названием
      */
@@ -168,7 +281,105 @@ public class UserDao {
     }
 
     /**
-     * Возвращает среднюю зарплату сотрудника с указанными именем и фамилией
+     * Возвращает страницу из {size} выплат сотрудникам компании с указанным названием, следующую за строкой из {token},
+     * упорядоченных по имени сотрудника, его id, размеру выплаты и id выплаты (выплаты сотрудникам без имени - в конце).
+     * Порядок охватывает две таблицы, и одним запросом база сортировала бы все выплаты компании после позиции токена.
+     * Поэтому страница собирается в два шага, каждый по своему индексу: следующие сотрудники - по users (company_id, firstname, id),
+     * их выплаты - по payment (receiver_id, amount, id). Выплаты читаются по порциям сотрудников 1, 2, 4...,
+     * так что страница на любой глубине стоит порядка выплат попавших на неё сотрудников.
+     */
+    public Slice<Payment> findPaymentsByCompanyName(Session session, String companyName, String token, int size) {
+        List<Payment> rows = new ArrayList<>(size + 1);
+        String lastFirstname = null;
+        Long lastReceiverId = null;
+        boolean afterReceiver = token != null;
+        if (afterReceiver) {
+            List<String> key = KeysetToken.decode(token, 4);
+            lastFirstname = key.get(0);
+            lastReceiverId = KeysetToken.parse(token, key.get(1), Long::valueOf);
+            Integer lastAmount = KeysetToken.parse(token, key.get(2), Integer::valueOf);
+            Long lastId = KeysetToken.parse(token, key.get(3), Long::valueOf);
+
+            // оставшиеся выплаты сотрудника, на котором закончилась предыдущая страница
+            rows.addAll(new JPAQuery<Payment>(session)
+                    .select(payment)
+                    .from(payment)
+                    .join(payment.receiver, user).fetchJoin()
+                    .where(user.id.eq(lastReceiverId), KeysetPredicate.builder()
+                            .add(payment.amount, lastAmount)
+                            .add(payment.id, lastId)
+                            .build())
+                    .orderBy(payment.amount.asc(), payment.id.asc())
+                    .limit(size + 1)
+                    .fetch());
+        }
+
+        while (rows.size() <= size) {
+            int limit = size + 1 - rows.size();
+            List<Tuple> receivers = findNextReceivers(session, companyName, afterReceiver, lastFirstname, lastReceiverId, limit);
+            // выплаты читаются по растущим порциям сотрудников: обычно страницу заполняют первые же из них
+            for (int from = 0, chunk = 1; from < receivers.size() && rows.size() <= size; from += chunk, chunk *= 2) {
+                List<Tuple> chunkReceivers = receivers.subList(from, Math.min(from + chunk, receivers.size()));
+                rows.addAll(new JPAQuery<Payment>(session)
+                        .select(payment)
+                        .from(payment)
+                        .join(payment.receiver, user).fetchJoin()
+                        .where(user.id.in(chunkReceivers.stream().map(it -> it.get(user.id)).toList()))
+                        .orderBy(user.personalInfo.firstname.asc().nullsLast(), user.id.asc(), payment.amount.asc(), payment.id.asc())
+                        .limit(size + 1 - rows.size())
+                        .fetch());
+
+                Tuple last = chunkReceivers.get(chunkReceivers.size() - 1);
+                lastFirstname = last.get(user.personalInfo.firstname);
+                lastReceiverId = last.get(user.id);
+                afterReceiver = true;
+            }
+            if (receivers.size() < limit) {
+                break;
+            }
+        }
+
+        return Slice.of(rows, size, it -> KeysetToken.encode(
+                Optional.ofNullable(it.getReceiver().getPersonalInfo()).map(PersonalInfo::getFirstname).orElse(null),
+                it.getReceiver().getId(),
+                it.getAmount(),
+                it.getId()));
+    }
+
+    /**
+     * Id и имена следующих {limit} сотрудников компании по (firstname, id), сотрудники без имени - в конце
+     */
+    private List<Tuple> findNextReceivers(Session session, String companyName, boolean afterReceiver,
+                                          String lastFirstname, Long lastReceiverId, int limit) {
+        boolean inNullZone = afterReceiver && lastFirstname == null;
+        Predicate after = afterReceiver && !inNullZone ? KeysetPredicate.builder()
+                .add(user.personalInfo.firstname, lastFirstname)
+                .add(user.id, lastReceiverId)
+                .build() : null;
+
+        return seek(limit, !inNullZone,
+                n -> new JPAQuery<Tuple>(session)
+                        .select(user.id, user.personalInfo.firstname)
+                        .from(user)
+                        .join(user.company, company)
+                        .where(company.name.eq(companyName), user.personalInfo.firstname.isNotNull(), after)
+                        .orderBy(user.personalInfo.firstname.asc(), user.id.asc())
+                        .limit(n)
+                        .fetch(),
+                n -> new JPAQuery<Tuple>(session)
+                        .select(user.id, user.personalInfo.firstname)
+                        .from(user)
+                        .join(user.company, company)
+                        .where(company.name.eq(companyName), user.personalInfo.firstname.isNull(),
+                                inNullZone ? user.id.gt(lastReceiverId) : null)
+                        .orderBy(user.id.asc())
+                        .limit(n)
+                        .fetch());
+    }
+
+    /**
+     * Возвращает среднюю зарплату сотрудника с указанными именем и фамилией.
+     * Результат кэшируется в {@link PaymentReportCache}, если режим кэша сессии разрешает чтение.
      */
     public Double findAveragePaymentAmountByFirstAndLastNames(Session session, PaymentFilter filter) {
 //        return session.createQuery("select avg(p.amount) from Payment p " +
@@ -210,6 +421,14 @@ public class UserDao {
                 .add(filter.getLastName(), user.personalInfo.lastname::eq)
                 .buildAnd();
 
+        if (!session.getCacheMode().isGetEnabled()) {
+            return findAveragePaymentAmount(session, predicate);
+        }
+        return PaymentReportCache.of(session.getSessionFactory())
+                .averagePaymentAmount(filter, () -> findAveragePaymentAmount(session, predicate));
+    }
+
+    private Double findAveragePaymentAmount(Session session, Predicate predicate) {
         return new JPAQuery<Double>(session)
                 .select(payment.amount.avg())
                 .from(payment)
@@ -220,6 +439,8 @@ public class UserDao {
 
     /**
      * Возвращает для каждой компании: название, среднюю зарплату всех её сотрудников. Компании упорядочены по названию.
+     * Если сессия просит читать {@link PaymentAggregates} ({@link PaymentAggregates#READ_PROPERTY}) и они загружены,
+     * считается по ним за O(компаний).
      */
     public List<Tuple> findCompanyNamesWithAvgUserPaymentsOrderedByCompanyName(Session session) {
 //        return session.createQuery("select c.name, avg(p.amount) from Company c " +
@@ -247,21 +468,38 @@ public class UserDao {
 //        return session.createQuery(criteria)
 //                .list();
 
-        return new JPAQuery<Tuple>(session)
-                .select(company.name, payment.amount.avg())
-                .from(company)
-                .join(company.users, user)
-                .join(user.payments, payment)
-                .groupBy(company.name)
-                .orderBy(company.name.asc())
-                .fetch();
-
+        PaymentAggregates aggregates = PaymentAggregates.forReading(session).orElse(null);
+        if (aggregates == null) {
+            return new JPAQuery<Tuple>(session)
+                    .select(company.name, payment.amount.avg())
+                    .from(company)
+                    .join(company.users, user)
+                    .join(user.payments, payment)
+                    .groupBy(company.name)
+                    .orderBy(company.name.asc())
+                    .fetch();
+        }
+
+        // компании с одинаковым названием объединяются, как в group by c.name
+        Map<String, long[]> totalsByName = new TreeMap<>();
+        for (CompanyPayments it : aggregates.companyPayments(session)) {
+            long[] totals = totalsByName.computeIfAbsent(it.companyName(), name -> new long[2]);
+            totals[0] += it.amountSum();
+            totals[1] += it.paymentCount();
+        }
+
+        QTuple row = Projections.tuple(company.name, payment.amount.avg());
+        List<Tuple> result = new ArrayList<>(totalsByName.size());
+        totalsByName.forEach((name, totals) -> result.add(row.newInstance(name, (double) totals[0] / totals[1])));
+        return result;
     }
 
     /**
      * Возвращает список: сотрудник (объект User), средний размер выплат, но только для тех сотрудников, чей средний размер выплат
      * больше среднего размера выплат всех сотрудников
      * Упорядочить по имени сотрудника
+     * Если сессия просит читать {@link PaymentAggregates} ({@link PaymentAggregates#READ_PROPERTY}) и они загружены,
+     * сотрудники выбираются по ним за O(сотрудников) и загружаются по id.
      */
     public List<Tuple> isItPossible(Session session) {
 //        return session.createQuery("select u, avg(p.amount) from User u " +
@@ -296,17 +534,55 @@ public class UserDao {
 //
 //        return session.createQuery(criteria)
 //                .list();
-        return new JPAQuery<Tuple>(session)
-                .select(user, payment.amount.avg())
-                .from(user)
-                .join(user.payments, payment)
-                .groupBy(user.id)
-                .having(payment.amount.avg().gt(new JPAQuery<Double>(session)
-                        .select(payment.amount.avg())
-                        .from(payment)))
-                .orderBy(user.personalInfo.firstname.asc())
-                .fetch();
+        PaymentAggregates aggregates = PaymentAggregates.forReading(session).orElse(null);
+        if (aggregates == null) {
+            return new JPAQuery<Tuple>(session)
+                    .select(user, payment.amount.avg())
+                    .from(user)
+                    .join(user.payments, payment)
+                    .groupBy(user.id)
+                    .having(payment.amount.avg().gt(new JPAQuery<Double>(session)
+                            .select(payment.amount.avg())
+                            .from(payment)))
+                    .orderBy(user.personalInfo.firstname.asc())
+                    .fetch();
+        }
+
+        Map<Long, Double> averages = aggregates.usersAboveAverage();
+        List<User> users = session.byMultipleIds(User.class)
+                .multiLoad(new ArrayList<>(averages.keySet()));
+        QTuple row = Projections.tuple(user, payment.amount.avg());
+        return users.stream()
+                .filter(Objects::nonNull)
+                .sorted(Comparator.comparing(
+                        (User it) -> it.getPersonalInfo() == null ? null : it.getPersonalInfo().getFirstname(),
+                        Comparator.nullsLast(Comparator.naturalOrder())))
+                .map(it -> row.newInstance(it, averages.get(it.getId())))
+                .toList();
+    }
+
+    /**
+     * То же, что {@link #isItPossible(Session)}, но одним нативным запросом с оконными функциями
+     * и только нужными колонками, без загрузки сущностей User
+     */
+    public List<UserAveragePaymentDto> findUsersWithAboveAveragePayment(Session session) {
+        return session.createNamedQuery(User.USERS_ABOVE_AVERAGE_PAYMENT, UserAveragePaymentDto.class)
+                .list();
+    }
 
+    /**
+     * Читает до size + 1 строк: сначала из строк с заполненным ключом сортировки, затем (если не хватило) из строк с null,
+     * которые идут в конце. Каждая часть читается отдельным запросом, чтобы оба запроса могли идти по индексу.
+     */
+    private <T> List<T> seek(int size, boolean includeNonNullZone, IntFunction<List<T>> nonNullZone, IntFunction<List<T>> nullZone) {
+        List<T> rows = new ArrayList<>(size + 1);
+        if (includeNonNullZone) {
+            rows.addAll(nonNullZone.apply(size + 1));
+        }
+        if (rows.size() <= size) {
+            rows.addAll(nullZone.apply(size + 1 - rows.size()));
+        }
+        return rows;
     }
 
     public static UserDao getInstance() {
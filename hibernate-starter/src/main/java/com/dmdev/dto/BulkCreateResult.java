@@ -0,0 +1,18 @@
+package com.dmdev.dto;
+
+import java.util.List;
+
+/**
+ * Итог массового создания: id созданных сущностей и причины отказа для элементов, которые создать не удалось
+ */
+public record BulkCreateResult(List<Long> createdIds,
+                               List<Failure> failures) {
+
+    /**
+     * @param index позиция элемента во входном списке
+     */
+    public record Failure(int index,
+                          String username,
+                          String reason) {
+    }
+}
@@ -0,0 +1,15 @@
+package com.dmdev.dto;
+
+import org.hibernate.envers.RevisionType;
+
+import java.time.Instant;
+
+/**
+ * Состояние сущности после ревизии {revision}. Для удаления {entity} - null.
+ */
+public record EntityChange<T>(T entity,
+                              Long revision,
+                              Instant timestamp,
+                              String username,
+                              RevisionType type) {
+}
@@ -0,0 +1,27 @@
+package com.dmdev.dto;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Страница keyset-пагинации: {content} и токен продолжения для следующей страницы (null, если страница последняя)
+ */
+public record Slice<T>(List<T> content,
+                       String nextToken) {
+
+    public boolean hasNext() {
+        return nextToken != null;
+    }
+
+    /**
+     * @param rows    до size + 1 строк, лишняя строка означает, что следующая страница существует
+     * @param tokenOf токен по последнему элементу страницы
+     */
+    public static <T> Slice<T> of(List<T> rows, int size, Function<T, String> tokenOf) {
+        if (rows.size() <= size) {
+            return new Slice<>(rows, null);
+        }
+        List<T> content = rows.subList(0, size);
+        return new Slice<>(content, tokenOf.apply(content.get(size - 1)));
+    }
+}
@@ -0,0 +1,8 @@
+package com.dmdev.dto;
+
+public record UserAveragePaymentDto(Long id,
+                                    String username,
+                                    String firstname,
+                                    String lastname,
+                                    Double averageAmount) {
+}
@@ -4,6 +4,7 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Type;
 
 import javax.persistence.*;
 import java.io.Serializable;
@@ -15,6 +16,11 @@ import java.io.Serializable;
 @Builder
 public class Audit {
 
+    /**
+     * Переводит entity_content базы, созданной до JSON-снимков, из varchar в jsonb
+     */
+    public static final String MIGRATION = "audit-jsonb.sql";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -23,7 +29,11 @@ public class Audit {
 
     private String entityName;
 
-    //Здесь возможно использование JSON, чтобы легче передавать в BigQuery
+    /**
+     * JSON-снимок из {@link com.dmdev.audit.AuditSnapshotEncoder}
+     */
+    @Type(type = "dmdev")
+    @Column(columnDefinition = "jsonb")
     private String entityContent;
 
     @Enumerated(EnumType.STRING)
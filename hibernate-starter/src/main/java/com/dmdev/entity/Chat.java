@@ -24,7 +24,11 @@ public class Chat {
     @Column(nullable = false, unique = true)
     private String name;
 
+    /**
+     * Ведётся {@link com.dmdev.counter.ChatMemberCounter}, при обновлении сущности не перезаписывается
+     */
     @Builder.Default
+    @Column(updatable = false)
     private Integer count = 0;
 
     @Builder.Default
@@ -1,5 +1,6 @@
 package com.dmdev.entity;
 
+import com.dmdev.cache.CacheRegions;
 import lombok.*;
 import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.envers.Audited;
@@ -16,7 +17,7 @@ import java.util.Map;
 @Builder
 @Entity
 @Audited
-@Cache(usage = CacheConcurrencyStrategy.READ_ONLY, region = "Company")
+@Cache(usage = CacheConcurrencyStrategy.READ_ONLY, region = CacheRegions.COMPANIES)
 public class Company implements BaseEntity<Integer> {
 
     @Id
@@ -1,5 +1,6 @@
 package com.dmdev.entity;
 
+import com.dmdev.cache.CacheRegions;
 import com.dmdev.listener.AuditDatesListener;
 import lombok.*;
 import org.hibernate.annotations.CacheConcurrencyStrategy;
@@ -13,13 +14,14 @@ import javax.persistence.*;
 @AllArgsConstructor
 @Builder
 @Entity
+@Table(indexes = @Index(name = "payment_receiver_id_amount_id_idx", columnList = "receiver_id, amount, id"))
 @EntityListeners(AuditDatesListener.class)
 @EqualsAndHashCode(callSuper=false)
 //@OptimisticLocking(type = OptimisticLockType.ALL)
 //@DynamicUpdate
 //@Audited(targetAuditMode = RelationTargetAuditMode.NOT_AUDITED)
 @Audited
-@Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE)
+@Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE, region = CacheRegions.PAYMENTS)
 public class Payment extends AuditableEntity<Long> {
 
     @Id
@@ -12,11 +12,14 @@ import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
 
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
 @Entity
+@Table(indexes = @Index(name = "revision_timestamp_idx", columnList = "timestamp"))
 @RevisionEntity(DmdevRevisionListener.class)
 public class Revision {
 
@@ -1,6 +1,8 @@
 package com.dmdev.entity;
 
-import com.vladmihalcea.hibernate.type.json.JsonBinaryType;
+import com.dmdev.cache.CacheRegions;
+import com.dmdev.dto.UserAveragePaymentDto;
+import com.dmdev.type.JsonbStringType;
 import lombok.*;
 import org.hibernate.annotations.*;
 import org.hibernate.annotations.Cache;
@@ -10,6 +12,8 @@ import org.hibernate.envers.NotAudited;
 import javax.persistence.*;
 import javax.persistence.CascadeType;
 import javax.persistence.Entity;
+import javax.persistence.Index;
+import javax.persistence.NamedNativeQuery;
 import javax.persistence.NamedQuery;
 import javax.persistence.Table;
 import javax.validation.Valid;
@@ -49,19 +53,50 @@ import static com.dmdev.util.StringUtils.SPACE;
         "left join u.company c " +
         "where u.personalInfo.firstname = :firstname and c.name = :companyName " +
         "order by u.personalInfo.lastname desc")
+@NamedNativeQuery(name = User.USERS_ABOVE_AVERAGE_PAYMENT, query = "select u.id, u.username, u.firstname, u.lastname, " +
+        "cast(p.amount_sum as numeric) / p.payment_count as average_amount " +
+        "from (select receiver_id, sum(amount) as amount_sum, count(*) as payment_count, " +
+        "             sum(sum(amount)) over () as total_sum, sum(count(*)) over () as total_count " +
+        "      from payment " +
+        "      group by receiver_id) p " +
+        "join users u on u.id = p.receiver_id " +
+        "where p.amount_sum * p.total_count > p.total_sum * p.payment_count " +
+        "order by u.firstname",
+        resultSetMapping = User.USER_AVERAGE_PAYMENT_MAPPING)
+@SqlResultSetMapping(name = User.USER_AVERAGE_PAYMENT_MAPPING, classes = @ConstructorResult(
+        targetClass = UserAveragePaymentDto.class,
+        columns = {
+                @ColumnResult(name = "id", type = Long.class),
+                @ColumnResult(name = "username"),
+                @ColumnResult(name = "firstname"),
+                @ColumnResult(name = "lastname"),
+                @ColumnResult(name = "average_amount", type = Double.class)
+        }))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 @EqualsAndHashCode(of = "username")
-@ToString(exclude = {"company", "userChats", "payments"})
+@ToString(exclude = {"info", "company", "userChats", "payments"})
 @Builder
 @Entity
-@Table(name = "users", schema = "public")
-@TypeDef(name = "dmdev", typeClass = JsonBinaryType.class)
+@Table(name = "users", schema = "public",
+        indexes = {
+                @Index(name = "users_birth_date_id_idx", columnList = "birth_date, id"),
+                @Index(name = "users_company_id_firstname_id_idx", columnList = "company_id, firstname, id")
+        })
+@TypeDef(name = "dmdev", typeClass = JsonbStringType.class)
 @Audited
-@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "Users")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CacheRegions.USERS)
 public class User implements Comparable<User>, BaseEntity<Long> {
 
+    /**
+     * Сотрудники со средней выплатой выше средней по всем выплатам за один проход по payment:
+     * суммы по получателю считает group by, общие суммы - оконные функции поверх групп.
+     * Средние сравниваются перемножением сумм и количеств, без округления при делении.
+     */
+    public static final String USERS_ABOVE_AVERAGE_PAYMENT = "findUsersAboveAveragePayment";
+    public static final String USER_AVERAGE_PAYMENT_MAPPING = "UserAveragePayment";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -73,7 +108,14 @@ public class User implements Comparable<User>, BaseEntity<Long> {
     @Column(unique = true)
     private String username;
 
+    /**
+     * Грузится отдельным запросом при первом обращении (нужен enhancement сборки, без него читается вместе с сущностью).
+     * Envers пишет состояние целиком, поэтому при обновлении сущности незагруженное значение дочитывается
+     */
     @Type(type = "dmdev")
+    @Column(columnDefinition = "jsonb")
+    @Basic(fetch = FetchType.LAZY)
+    @LazyGroup("info")
     private String info;
 
     @Enumerated(EnumType.STRING)
@@ -94,7 +136,7 @@ public class User implements Comparable<User>, BaseEntity<Long> {
     @NotAudited
     @Builder.Default
     @OneToMany(mappedBy = "user")
-    @Cache(usage = CacheConcurrencyStrategy.READ_ONLY)
+    @Cache(usage = CacheConcurrencyStrategy.READ_ONLY, region = CacheRegions.USER_CHATS_OF_USER)
     private List<UserChat> userChats = new ArrayList<>();
 
     @NotAudited
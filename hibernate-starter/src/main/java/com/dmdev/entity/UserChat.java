@@ -1,6 +1,6 @@
 package com.dmdev.entity;
 
-import com.dmdev.listener.UserChatListener;
+import com.dmdev.cache.CacheRegions;
 import lombok.*;
 import org.hibernate.annotations.CacheConcurrencyStrategy;
 
@@ -15,8 +15,7 @@ import java.time.Instant;
 @Builder
 @Entity
 @Table(name = "users_chat")
-@EntityListeners(UserChatListener.class)
-@Cache(usage = CacheConcurrencyStrategy.READ_ONLY)
+@Cache(usage = CacheConcurrencyStrategy.READ_ONLY, region = CacheRegions.USER_CHATS)
 public class UserChat extends AuditableEntity<Long> {
 
     @Id
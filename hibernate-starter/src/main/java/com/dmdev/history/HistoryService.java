@@ -0,0 +1,94 @@
+package com.dmdev.history;
+
+import com.dmdev.dao.KeysetToken;
+import com.dmdev.dto.EntityChange;
+import com.dmdev.dto.Slice;
+import com.dmdev.entity.Revision;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.Session;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.envers.AuditReader;
+import org.hibernate.envers.AuditReaderFactory;
+import org.hibernate.envers.RevisionType;
+import org.hibernate.envers.exception.RevisionDoesNotExistException;
+import org.hibernate.envers.query.AuditEntity;
+import org.hibernate.envers.query.AuditQuery;
+import org.hibernate.persister.entity.EntityPersister;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * История @Audited сущностей по ревизиям Envers: состояние на ревизию или момент времени и постраничный список изменений.
+ * Рассчитан на {@link ValidityAudit}: состояние на ревизию - одна строка *_aud с rev <= ревизии < revend.
+ */
+@RequiredArgsConstructor
+public class HistoryService {
+
+    private final Session session;
+    private final SnapshotCache snapshotCache;
+
+    /**
+     * Возвращает состояние сущности на ревизию {revision}, пусто - если сущности тогда не было.
+     * Сущность отсоединена и без связей, см. {@link SnapshotCache}.
+     */
+    public <T> Optional<T> findAsOf(Class<T> entityClass, Serializable id, Number revision) {
+        return snapshotCache.get(persister(entityClass), id, revision,
+                () -> Optional.ofNullable(auditReader().find(entityClass, id, revision)));
+    }
+
+    /**
+     * Возвращает состояние сущности на момент {instant}: на последнюю ревизию, созданную не позже него
+     */
+    public <T> Optional<T> findAsOf(Class<T> entityClass, Serializable id, Instant instant) {
+        Number revision;
+        try {
+            revision = auditReader().getRevisionNumberForDate(Date.from(instant));
+        } catch (RevisionDoesNotExistException e) {
+            return Optional.empty();
+        }
+        return findAsOf(entityClass, id, revision);
+    }
+
+    /**
+     * Возвращает изменения сущности от новых к старым
+     *
+     * @param token токен продолжения из предыдущей страницы или null для первой страницы
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Slice<EntityChange<T>> findChanges(Class<T> entityClass, Serializable id, String token, int size) {
+        AuditQuery query = auditReader().createQuery()
+                .forRevisionsOfEntity(entityClass, false, true)
+                .add(AuditEntity.id().eq(id))
+                .addOrder(AuditEntity.revisionNumber().desc())
+                .setMaxResults(size + 1);
+        if (token != null) {
+            Long lastRevision = KeysetToken.parse(token, KeysetToken.decode(token, 1).get(0), Long::valueOf);
+            query.add(AuditEntity.revisionNumber().lt(lastRevision));
+        }
+
+        List<Object[]> rows = query.getResultList();
+        List<EntityChange<T>> changes = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            Revision revision = (Revision) row[1];
+            RevisionType type = (RevisionType) row[2];
+            T entity = type == RevisionType.DEL ? null : entityClass.cast(row[0]);
+            snapshotCache.put(persister(entityClass), id, revision.getId(), entity);
+            changes.add(new EntityChange<>(entity, revision.getId(), Instant.ofEpochMilli(revision.getTimestamp()),
+                    revision.getUsername(), type));
+        }
+        return Slice.of(changes, size, change -> KeysetToken.encode(change.revision()));
+    }
+
+    private EntityPersister persister(Class<?> entityClass) {
+        return session.unwrap(SessionImplementor.class).getFactory().getMetamodel().entityPersister(entityClass);
+    }
+
+    private AuditReader auditReader() {
+        return AuditReaderFactory.get(session);
+    }
+}
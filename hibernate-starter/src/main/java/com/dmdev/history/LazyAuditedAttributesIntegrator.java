@@ -0,0 +1,30 @@
+package com.dmdev.history;
+
+import com.dmdev.listener.LazyAuditedAttributesListener;
+import org.hibernate.boot.Metadata;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.envers.boot.internal.EnversService;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+
+/**
+ * Подключает {@link LazyAuditedAttributesListener}, чтобы ленивые атрибуты @Audited сущностей попадали в историю Envers
+ */
+public class LazyAuditedAttributesIntegrator implements Integrator {
+
+    @Override
+    public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+        EnversService enversService = serviceRegistry.getService(EnversService.class);
+        if (!enversService.isEnabled()) {
+            return;
+        }
+        serviceRegistry.getService(EventListenerRegistry.class)
+                .appendListeners(EventType.PRE_UPDATE, new LazyAuditedAttributesListener(enversService));
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+    }
+}
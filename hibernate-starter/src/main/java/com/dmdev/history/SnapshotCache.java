@@ -0,0 +1,111 @@
+package com.dmdev.history;
+
+import org.hibernate.internal.util.ReflectHelper;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.type.Type;
+
+import java.io.Serializable;
+import java.lang.reflect.Constructor;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * LRU-кэш состояний сущностей, восстановленных Envers на ревизию.
+ * Состояние на уже существующую ревизию не меняется, поэтому записи не устаревают, а только вытесняются.
+ * Кэшируется не объект Envers, а копия его простых свойств, и каждый вызов получает свой отсоединённый экземпляр:
+ * изменения вызывающего не попадают в кэш. Связи в копию не входят - их ленивая загрузка возможна только в сессии,
+ * построившей снимок, - и остаются такими, какими их создаёт конструктор сущности.
+ */
+public class SnapshotCache {
+
+    public static final int DEFAULT_MAX_SIZE = 10_000;
+
+    private final Map<Key, Optional<Object[]>> snapshots;
+
+    public SnapshotCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    public SnapshotCache(int maxSize) {
+        this.snapshots = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Optional<Object[]>> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Возвращает копию снимка из кэша или строит снимок через {loader}. Отсутствие сущности на ревизию тоже кэшируется.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Optional<T> get(EntityPersister persister, Serializable id, Number revision, Supplier<Optional<T>> loader) {
+        Key key = new Key(persister.getEntityName(), id, revision.longValue());
+        Optional<Object[]> snapshot;
+        synchronized (snapshots) {
+            snapshot = snapshots.get(key);
+        }
+        if (snapshot == null) {
+            // загрузка вне блокировки: в худшем случае два потока построят один снимок
+            snapshot = loader.get().map(entity -> copyState(persister, entity));
+            put(key, snapshot);
+        }
+        return snapshot.map(state -> (T) instantiate(persister, id, state));
+    }
+
+    public void put(EntityPersister persister, Serializable id, Number revision, Object entity) {
+        put(new Key(persister.getEntityName(), id, revision.longValue()),
+                Optional.ofNullable(entity).map(it -> copyState(persister, it)));
+    }
+
+    public int size() {
+        synchronized (snapshots) {
+            return snapshots.size();
+        }
+    }
+
+    private void put(Key key, Optional<Object[]> snapshot) {
+        synchronized (snapshots) {
+            snapshots.put(key, snapshot);
+        }
+    }
+
+    private static Object[] copyState(EntityPersister persister, Object entity) {
+        Type[] types = persister.getPropertyTypes();
+        Object[] state = new Object[types.length];
+        for (int i = 0; i < types.length; i++) {
+            if (!types[i].isAssociationType()) {
+                state[i] = types[i].deepCopy(persister.getPropertyValue(entity, i), persister.getFactory());
+            }
+        }
+        return state;
+    }
+
+    /**
+     * Экземпляр создаётся конструктором, а не persister'ом: тот подключил бы к улучшенной сущности загрузчик ленивых
+     * свойств, которому нужна сессия
+     */
+    private static Object instantiate(EntityPersister persister, Serializable id, Object[] state) {
+        Class<?> entityClass = persister.getMappedClass();
+        Object entity;
+        try {
+            Constructor<?> constructor = ReflectHelper.getDefaultConstructor(entityClass);
+            entity = constructor.newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot instantiate " + persister.getEntityName(), e);
+        }
+        persister.setIdentifier(entity, id, null);
+        Type[] types = persister.getPropertyTypes();
+        for (int i = 0; i < types.length; i++) {
+            if (!types[i].isAssociationType()) {
+                persister.setPropertyValue(entity, i, types[i].deepCopy(state[i], persister.getFactory()));
+            }
+        }
+        return entity;
+    }
+
+    private record Key(String entityName, Serializable id, long revision) {
+    }
+}
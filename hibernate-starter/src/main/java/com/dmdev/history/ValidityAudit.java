@@ -0,0 +1,42 @@
+package com.dmdev.history;
+
+import lombok.experimental.UtilityClass;
+import org.hibernate.boot.model.relational.SimpleAuxiliaryDatabaseObject;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.envers.configuration.EnversSettings;
+import org.hibernate.envers.strategy.internal.ValidityAuditStrategy;
+
+import java.util.Set;
+
+/**
+ * Validity-стратегия Envers: каждая строка *_aud хранит ревизию, в которой её состояние перестало действовать (revend),
+ * поэтому состояние на ревизию читается одной строкой по индексу, без подзапроса max(rev) по всей истории сущности.
+ * Индексы создаёт только hbm2ddl create; базу, история которой записана прежней стратегией, переводит {@link #MIGRATION}:
+ * добавляет колонки, заполняет revend по существующей истории и создаёт индексы.
+ */
+@UtilityClass
+public class ValidityAudit {
+
+    public static final String MIGRATION = "validity-audit.sql";
+
+    private static final String[] AUDIT_TABLES = {"users_aud", "company_aud", "payment_aud"};
+
+    public static void apply(Configuration configuration) {
+        configuration.setProperty(EnversSettings.AUDIT_STRATEGY, ValidityAuditStrategy.class.getName());
+        configuration.setProperty(EnversSettings.AUDIT_STRATEGY_VALIDITY_STORE_REVEND_TIMESTAMP, "true");
+        for (String table : AUDIT_TABLES) {
+            // закрытие предыдущей строки при каждой ревизии: where id = ? and revend is null
+            addIndex(configuration, table + "_id_revend_idx", table, "id, revend");
+        }
+    }
+
+    private static void addIndex(Configuration configuration, String name, String table, String columns) {
+        configuration.addAuxiliaryDatabaseObject(new SimpleAuxiliaryDatabaseObject(
+                Set.of(),
+                null,
+                null,
+                new String[]{"create index " + name + " on " + table + " (" + columns + ")"},
+                new String[]{"drop index if exists " + name}
+        ));
+    }
+}
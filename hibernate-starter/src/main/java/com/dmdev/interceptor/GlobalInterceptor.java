@@ -1,14 +1,58 @@
 package com.dmdev.interceptor;
 
 import org.hibernate.EmptyInterceptor;
+import org.hibernate.Transaction;
 import org.hibernate.type.Type;
 
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
 import java.io.Serializable;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class GlobalInterceptor extends EmptyInterceptor {
 
+    private final transient List<TransactionListener> transactionListeners = new CopyOnWriteArrayList<>();
+
     @Override
     public boolean onFlushDirty(Object entity, Serializable id, Object[] currentState, Object[] previousState, String[] propertyNames, Type[] types) {
         return super.onFlushDirty(entity, id, currentState, previousState, propertyNames, types);
     }
+
+    /**
+     * Засекает транзакцию, если на неё кто-то подписан: длительность считается от begin до завершения коммита или отката
+     */
+    @Override
+    public void afterTransactionBegin(Transaction tx) {
+        if (transactionListeners.isEmpty()) {
+            return;
+        }
+        long startedAt = System.nanoTime();
+        tx.registerSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                long duration = System.nanoTime() - startedAt;
+                boolean committed = status == Status.STATUS_COMMITTED;
+                transactionListeners.forEach(listener -> listener.transactionCompleted(duration, committed));
+            }
+        });
+    }
+
+    public void addTransactionListener(TransactionListener listener) {
+        transactionListeners.add(listener);
+    }
+
+    public void removeTransactionListener(TransactionListener listener) {
+        transactionListeners.remove(listener);
+    }
+
+    @FunctionalInterface
+    public interface TransactionListener {
+
+        void transactionCompleted(long durationNanos, boolean committed);
+    }
 }
@@ -0,0 +1,16 @@
+package com.dmdev.interceptor;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Помечает метод с {@link javax.transaction.Transactional} как только читающий.
+ * {@link TransactionInterceptor} открывает для него read-only транзакцию: сущности загружаются без снимков
+ * состояния для dirty checking, flush при коммите не выполняется, а база получает SET TRANSACTION READ ONLY.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ReadOnly {
+}
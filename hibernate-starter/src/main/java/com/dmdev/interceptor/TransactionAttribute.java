@@ -0,0 +1,36 @@
+package com.dmdev.interceptor;
+
+import javax.transaction.Transactional;
+import java.util.List;
+
+/**
+ * Транзакционные настройки метода, собранные {@link TransactionAttributeRegistry} из аннотаций один раз.
+ * Правила отката как в JTA: откатывают непроверяемые исключения и ошибки, проверяемые - только из rollbackOn,
+ * dontRollbackOn важнее обоих.
+ *
+ * @param timeoutSeconds 0 - без таймаута
+ */
+public record TransactionAttribute(Transactional.TxType propagation,
+                                   boolean readOnly,
+                                   int timeoutSeconds,
+                                   List<Class<?>> rollbackOn,
+                                   List<Class<?>> dontRollbackOn) {
+
+    public boolean rollbackOn(Throwable throwable) {
+        if (matches(dontRollbackOn, throwable)) {
+            return false;
+        }
+        return throwable instanceof RuntimeException
+               || throwable instanceof Error
+               || matches(rollbackOn, throwable);
+    }
+
+    private static boolean matches(List<Class<?>> types, Throwable throwable) {
+        for (Class<?> type : types) {
+            if (type.isInstance(throwable)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
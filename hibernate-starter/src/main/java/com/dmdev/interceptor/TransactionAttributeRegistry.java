@@ -0,0 +1,56 @@
+package com.dmdev.interceptor;
+
+import javax.transaction.Transactional;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Транзакционные настройки методов: аннотации читаются рефлексией при первом вызове метода,
+ * дальше настройки берутся из map. {@link Transactional} на методе важнее, чем на классе.
+ */
+public class TransactionAttributeRegistry {
+
+    private static final Set<Transactional.TxType> SUPPORTED_PROPAGATIONS = Set.of(
+            Transactional.TxType.REQUIRED,
+            Transactional.TxType.REQUIRES_NEW,
+            Transactional.TxType.SUPPORTS,
+            Transactional.TxType.MANDATORY,
+            Transactional.TxType.NEVER);
+
+    private final Map<Method, Optional<TransactionAttribute>> attributes = new ConcurrentHashMap<>();
+
+    /**
+     * @return пусто, если метод не транзакционный
+     */
+    public Optional<TransactionAttribute> get(Method method) {
+        return attributes.computeIfAbsent(method, TransactionAttributeRegistry::resolve);
+    }
+
+    private static Optional<TransactionAttribute> resolve(Method method) {
+        Transactional transactional = annotation(method, Transactional.class);
+        if (transactional == null) {
+            return Optional.empty();
+        }
+        if (!SUPPORTED_PROPAGATIONS.contains(transactional.value())) {
+            throw new IllegalArgumentException("Unsupported propagation " + transactional.value() + " of " + method);
+        }
+
+        TransactionTimeout timeout = annotation(method, TransactionTimeout.class);
+        return Optional.of(new TransactionAttribute(
+                transactional.value(),
+                method.isAnnotationPresent(ReadOnly.class),
+                timeout == null ? 0 : timeout.value(),
+                List.of(transactional.rollbackOn()),
+                List.of(transactional.dontRollbackOn())));
+    }
+
+    private static <A extends Annotation> A annotation(Method method, Class<A> type) {
+        A annotation = method.getAnnotation(type);
+        return annotation != null ? annotation : method.getDeclaringClass().getAnnotation(type);
+    }
+}
@@ -1,49 +1,118 @@
 package com.dmdev.interceptor;
 
+import com.dmdev.session.TaskSessionContext;
 import lombok.RequiredArgsConstructor;
 import net.bytebuddy.implementation.bind.annotation.Origin;
 import net.bytebuddy.implementation.bind.annotation.RuntimeType;
 import net.bytebuddy.implementation.bind.annotation.SuperCall;
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.Transaction;
+import org.hibernate.TransactionException;
 
-import javax.transaction.Transactional;
 import java.lang.reflect.Method;
+import java.sql.Statement;
+import java.util.Optional;
 import java.util.concurrent.Callable;
 
+/**
+ * Транзакции для методов с {@link javax.transaction.Transactional} на текущей сессии фабрики.
+ * Поддерживаются REQUIRED, REQUIRES_NEW, SUPPORTS, MANDATORY и NEVER, {@link ReadOnly}, {@link TransactionTimeout}
+ * и правила отката rollbackOn/dontRollbackOn. Настройки метода берутся из {@link TransactionAttributeRegistry}.
+ */
 @RequiredArgsConstructor
 public class TransactionInterceptor {
 
     private final SessionFactory sessionFactory;
+    private final TransactionAttributeRegistry attributes;
+
+    public TransactionInterceptor(SessionFactory sessionFactory) {
+        this(sessionFactory, new TransactionAttributeRegistry());
+    }
 
     @RuntimeType
     public Object intercept(@SuperCall Callable<Object> call, @Origin Method method) throws Exception {
+        Optional<TransactionAttribute> attribute = attributes.get(method);
+        if (attribute.isEmpty()) {
+            return call.call();
+        }
 
-        Transaction transaction = null;
+        TransactionAttribute transactionAttribute = attribute.get();
+        return switch (transactionAttribute.propagation()) {
+            case SUPPORTS -> call.call();
+            case MANDATORY -> {
+                if (!isTransactionActive()) {
+                    throw new TransactionException("No active transaction for " + method);
+                }
+                yield call.call();
+            }
+            case NEVER -> {
+                if (isTransactionActive()) {
+                    throw new TransactionException("Active transaction is not allowed for " + method);
+                }
+                yield call.call();
+            }
+            case REQUIRED -> isTransactionActive()
+                    ? call.call()
+                    : inNewTransaction(call, transactionAttribute);
+            case REQUIRES_NEW -> TaskSessionContext.call(sessionFactory, () -> inNewTransaction(call, transactionAttribute));
+            default -> throw new IllegalStateException("Unsupported propagation " + transactionAttribute.propagation());
+        };
+    }
 
-        boolean transactionStarted = false;
+    private boolean isTransactionActive() {
+        return sessionFactory.getCurrentSession().getTransaction().isActive();
+    }
 
-        if (method.isAnnotationPresent(Transactional.class)) {
-            transaction = sessionFactory.getCurrentSession().getTransaction();
-            if (!transaction.isActive()) {
-                transaction.begin();
-                transactionStarted = true;
-            }
+    private Object inNewTransaction(Callable<Object> call, TransactionAttribute attribute) throws Exception {
+        Session session = sessionFactory.getCurrentSession();
+        Transaction transaction = session.getTransaction();
+        if (attribute.timeoutSeconds() > 0) {
+            transaction.setTimeout(attribute.timeoutSeconds());
         }
+        transaction.begin();
 
-        Object result;
+        // сессия задачи (TaskSessionContext) переживает транзакцию, поэтому режимы read-only возвращаются после неё
+        FlushMode flushMode = session.getHibernateFlushMode();
+        boolean defaultReadOnly = session.isDefaultReadOnly();
         try {
-            result = call.call();
-            if (transactionStarted) {
-                transaction.commit();
+            Object result;
+            try {
+                if (attribute.readOnly()) {
+                    setReadOnly(session);
+                }
+                result = call.call();
+            } catch (Throwable throwable) {
+                if (attribute.rollbackOn(throwable)) {
+                    transaction.rollback();
+                } else {
+                    transaction.commit();
+                }
+                throw throwable;
             }
-        } catch (Exception exception) {
-            if (transactionStarted) {
+
+            if (transaction.getRollbackOnly()) {
                 transaction.rollback();
+            } else {
+                transaction.commit();
+            }
+            return result;
+        } finally {
+            if (attribute.readOnly() && session.isOpen()) {
+                session.setHibernateFlushMode(flushMode);
+                session.setDefaultReadOnly(defaultReadOnly);
             }
-            throw exception;
         }
+    }
 
-        return result;
+    private void setReadOnly(Session session) {
+        session.setDefaultReadOnly(true);
+        session.setHibernateFlushMode(FlushMode.MANUAL);
+        session.doWork(connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("SET TRANSACTION READ ONLY");
+            }
+        });
     }
 }
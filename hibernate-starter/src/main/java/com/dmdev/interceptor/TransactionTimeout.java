@@ -0,0 +1,20 @@
+package com.dmdev.interceptor;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Таймаут транзакции, которую {@link TransactionInterceptor} открывает для метода или методов класса
+ * с {@link javax.transaction.Transactional}. Hibernate ограничивает им время выполнения каждого JDBC-запроса транзакции.
+ */
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface TransactionTimeout {
+
+    /**
+     * Секунды
+     */
+    int value();
+}
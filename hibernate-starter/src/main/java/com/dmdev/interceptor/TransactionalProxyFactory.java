@@ -0,0 +1,72 @@
+package com.dmdev.interceptor;
+
+import net.bytebuddy.ByteBuddy;
+import net.bytebuddy.implementation.MethodDelegation;
+import org.hibernate.SessionFactory;
+
+import javax.transaction.Transactional;
+import java.lang.reflect.Constructor;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static net.bytebuddy.matcher.ElementMatchers.isAnnotatedWith;
+import static net.bytebuddy.matcher.ElementMatchers.isDeclaredBy;
+
+/**
+ * Создаёт сервисы с транзакциями {@link TransactionInterceptor}. Класс-наследник генерируется ByteBuddy один раз
+ * на тип, перехватываются только методы с {@link Transactional} на самом методе или на классе, остальные
+ * вызываются напрямую.
+ */
+public class TransactionalProxyFactory {
+
+    private final TransactionInterceptor interceptor;
+    private final Map<Class<?>, Class<?>> proxyClasses = new ConcurrentHashMap<>();
+
+    public TransactionalProxyFactory(SessionFactory sessionFactory) {
+        this.interceptor = new TransactionInterceptor(sessionFactory);
+    }
+
+    /**
+     * @param args аргументы конструктора сервиса, конструктор подбирается по их типам
+     */
+    public <T> T create(Class<T> type, Object... args) {
+        Class<? extends T> proxyClass = proxyClass(type);
+        try {
+            return proxyClass.cast(constructor(proxyClass, args).newInstance(args));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Failed to create transactional " + type.getName(), e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> Class<? extends T> proxyClass(Class<T> type) {
+        return (Class<? extends T>) proxyClasses.computeIfAbsent(type, it -> new ByteBuddy()
+                .subclass(it)
+                .method(isAnnotatedWith(Transactional.class).or(isDeclaredBy(isAnnotatedWith(Transactional.class))))
+                .intercept(MethodDelegation.to(interceptor))
+                .make()
+                .load(it.getClassLoader())
+                .getLoaded());
+    }
+
+    private static Constructor<?> constructor(Class<?> type, Object[] args) {
+        for (Constructor<?> constructor : type.getDeclaredConstructors()) {
+            if (accepts(constructor.getParameterTypes(), args)) {
+                return constructor;
+            }
+        }
+        throw new IllegalArgumentException("No constructor of " + type.getSuperclass().getName() + " accepts given arguments");
+    }
+
+    private static boolean accepts(Class<?>[] parameterTypes, Object[] args) {
+        if (parameterTypes.length != args.length) {
+            return false;
+        }
+        for (int i = 0; i < args.length; i++) {
+            if (args[i] != null && !parameterTypes[i].isPrimitive() && !parameterTypes[i].isInstance(args[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
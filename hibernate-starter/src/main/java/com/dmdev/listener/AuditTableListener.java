@@ -1,37 +1,99 @@
 package com.dmdev.listener;
 
+import com.dmdev.audit.AuditSnapshotEncoder;
+import com.dmdev.audit.AuditWriter;
 import com.dmdev.entity.Audit;
-import org.hibernate.event.spi.*;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.EntityMode;
+import org.hibernate.event.spi.PostCommitDeleteEventListener;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.persister.entity.EntityPersister;
+
+import java.io.Serializable;
+import java.util.function.Supplier;
+
+/**
+ * Передаёт вставки, обновления и удаления в {@link AuditWriter} после коммита транзакции:
+ * бизнес-транзакция аудит не пишет и не ждёт. Содержимое записи - снимок из {@link AuditSnapshotEncoder}.
+ */
+@RequiredArgsConstructor
+public class AuditTableListener implements PostCommitInsertEventListener, PostCommitUpdateEventListener, PostCommitDeleteEventListener {
+
+    private final AuditWriter auditWriter;
+    private final AuditSnapshotEncoder snapshotEncoder;
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        auditEntity(event.getId(), event.getPersister(), event.getEntity(), Audit.Operation.INSERT,
+                () -> snapshotEncoder.encodeState(event.getPersister(), event.getState()));
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        auditEntity(event.getId(), event.getPersister(), event.getEntity(), Audit.Operation.UPDATE,
+                () -> snapshotEncoder.encodeChanges(event.getPersister(), event.getOldState(), event.getState()));
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        auditEntity(event.getId(), event.getPersister(), event.getEntity(), Audit.Operation.DELETE,
+                () -> snapshotEncoder.encodeState(event.getPersister(), event.getDeletedState()));
+    }
 
-public class AuditTableListener implements PreDeleteEventListener, PreInsertEventListener {
     @Override
-    public boolean onPreDelete(PreDeleteEvent event) {
+    public void onPostInsertCommitFailed(PostInsertEvent event) {
+    }
 
-        auditEntity(event, Audit.Operation.DELETE);
+    @Override
+    public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+    }
 
-        return false;
+    @Override
+    public void onPostDeleteCommitFailed(PostDeleteEvent event) {
     }
 
     @Override
-    public boolean onPreInsert(PreInsertEvent event) {
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return isAudited(persister);
+    }
 
-        auditEntity(event, Audit.Operation.INSERT);
+    @Deprecated
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return requiresPostCommitHandling(persister);
+    }
 
-        return false;
+    /**
+     * Не аудируются сами записи аудита и строки Envers (*_AUD): это map-сущности,
+     * их составной идентификатор содержит {@link com.dmdev.entity.Revision} и не сериализуется в Audit.entityId
+     */
+    private static boolean isAudited(EntityPersister persister) {
+        return persister.getMappedClass() != Audit.class
+               && persister.getEntityMode() == EntityMode.POJO;
     }
 
-    public void auditEntity(AbstractPreDatabaseOperationEvent event, Audit.Operation operation) {
+    public void auditEntity(Serializable id, EntityPersister persister, Object entity, Audit.Operation operation,
+                            Supplier<String> content) {
+
+        if (isAudited(persister)) {
 
-        if (event.getEntity().getClass() != Audit.class) {
+            String entityContent = content.get();
+            if (entityContent == null) {
+                return;
+            }
 
             Audit audit = Audit.builder()
-                    .entityId(event.getId())
-                    .entityName(event.getEntityName())
-                    .entityContent(event.getEntity().toString())
+                    .entityId(id)
+                    .entityName(persister.getEntityName())
+                    .entityContent(entityContent)
                     .operation(operation)
                     .build();
 
-            event.getSession().save(audit);
+            auditWriter.submit(audit);
         }
     }
 }
@@ -0,0 +1,39 @@
+package com.dmdev.listener;
+
+import lombok.RequiredArgsConstructor;
+import org.hibernate.bytecode.enhance.spi.LazyPropertyInitializer;
+import org.hibernate.bytecode.enhance.spi.interceptor.LazyAttributeLoadingInterceptor;
+import org.hibernate.engine.spi.PersistentAttributeInterceptable;
+import org.hibernate.envers.boot.internal.EnversService;
+import org.hibernate.event.spi.PreUpdateEvent;
+import org.hibernate.event.spi.PreUpdateEventListener;
+
+/**
+ * Дочитывает незагруженные ленивые атрибуты обновляемой @Audited сущности до того, как Envers запишет её состояние:
+ * Envers пишет строку *_aud целиком и не может записать заглушку незагруженного значения.
+ * Обновление такой сущности стоит одного дополнительного select на ленивую группу.
+ */
+@RequiredArgsConstructor
+public class LazyAuditedAttributesListener implements PreUpdateEventListener {
+
+    private final EnversService enversService;
+
+    @Override
+    public boolean onPreUpdate(PreUpdateEvent event) {
+        if (!(event.getEntity() instanceof PersistentAttributeInterceptable interceptable)
+            || !(interceptable.$$_hibernate_getInterceptor() instanceof LazyAttributeLoadingInterceptor interceptor)
+            || !enversService.getEntitiesConfigurations().isVersioned(event.getPersister().getEntityName())) {
+            return false;
+        }
+
+        Object[] state = event.getState();
+        String[] propertyNames = event.getPersister().getPropertyNames();
+        for (int i = 0; i < state.length; i++) {
+            if (state[i] == LazyPropertyInitializer.UNFETCHED_PROPERTY) {
+                // состояние события - тот же массив, что получат update и Envers
+                state[i] = interceptor.fetchAttribute(event.getEntity(), propertyNames[i]);
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,108 @@
+package com.dmdev.listener;
+
+import com.dmdev.aggregate.PaymentAggregates;
+import com.dmdev.entity.BaseEntity;
+import com.dmdev.entity.Company;
+import com.dmdev.entity.Payment;
+import com.dmdev.entity.User;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.event.spi.PostCommitDeleteEventListener;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.proxy.HibernateProxy;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * Передаёт закоммиченные выплаты, смену компании сотрудником и переименование компании в {@link PaymentAggregates}
+ */
+@RequiredArgsConstructor
+public class PaymentAggregatesListener implements PostCommitInsertEventListener, PostCommitUpdateEventListener, PostCommitDeleteEventListener {
+
+    private final PaymentAggregates paymentAggregates;
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (event.getEntity() instanceof Payment payment) {
+            paymentAggregates.addPayment(idOf(payment.getReceiver()), payment.getAmount());
+        }
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        Object[] oldState = event.getOldState();
+        if (oldState == null && !(event.getEntity() instanceof Company)) {
+            // обновление отсоединённой сущности без снимка: что было раньше, неизвестно
+            paymentAggregates.reconcileLater();
+            return;
+        }
+
+        EntityPersister persister = event.getPersister();
+        if (event.getEntity() instanceof Payment payment) {
+            paymentAggregates.removePayment(idOf((User) oldState[propertyIndex(persister, "receiver")]),
+                    (Integer) oldState[propertyIndex(persister, "amount")]);
+            paymentAggregates.addPayment(idOf(payment.getReceiver()), payment.getAmount());
+        } else if (event.getEntity() instanceof User user) {
+            Integer oldCompanyId = idOf((Company) oldState[propertyIndex(persister, "company")]);
+            if (!Objects.equals(oldCompanyId, idOf(user.getCompany()))) {
+                paymentAggregates.changeCompany(user.getId());
+            }
+        } else if (event.getEntity() instanceof Company company) {
+            paymentAggregates.renameCompany(company.getId(), company.getName());
+        }
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (event.getEntity() instanceof Payment payment) {
+            paymentAggregates.removePayment(idOf(payment.getReceiver()), payment.getAmount());
+        }
+    }
+
+    @Override
+    public void onPostInsertCommitFailed(PostInsertEvent event) {
+    }
+
+    @Override
+    public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+    }
+
+    @Override
+    public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        Class<?> entityClass = persister.getMappedClass();
+        return entityClass == Payment.class || entityClass == User.class || entityClass == Company.class;
+    }
+
+    @Deprecated
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return requiresPostCommitHandling(persister);
+    }
+
+    /**
+     * Идентификатор связанной сущности без инициализации прокси
+     */
+    @SuppressWarnings("unchecked")
+    private static <K extends Serializable> K idOf(BaseEntity<K> entity) {
+        if (entity == null) {
+            return null;
+        }
+        if (entity instanceof HibernateProxy proxy) {
+            return (K) proxy.getHibernateLazyInitializer().getIdentifier();
+        }
+        return entity.getId();
+    }
+
+    private static int propertyIndex(EntityPersister persister, String propertyName) {
+        return persister.getEntityMetamodel().getPropertyIndex(propertyName);
+    }
+}
@@ -0,0 +1,106 @@
+package com.dmdev.listener;
+
+import com.dmdev.entity.Payment;
+import com.dmdev.entity.PersonalInfo;
+import com.dmdev.entity.User;
+import com.dmdev.report.PaymentReportCache;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.Hibernate;
+import org.hibernate.event.spi.PostCommitDeleteEventListener;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.persister.entity.EntityPersister;
+
+/**
+ * Сбрасывает в {@link PaymentReportCache} то, что изменила закоммиченная запись:
+ * выплата - средние по имени получателя, сотрудник - по старому и новому имени.
+ * Если получатель выплаты - неинициализированный прокси, его имя неизвестно и сбрасывается весь кэш.
+ */
+@RequiredArgsConstructor
+public class PaymentReportListener implements PostCommitInsertEventListener, PostCommitUpdateEventListener, PostCommitDeleteEventListener {
+
+    private final PaymentReportCache paymentReportCache;
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (event.getEntity() instanceof Payment payment) {
+            invalidateReceiver(payment.getReceiver());
+        }
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        Object[] oldState = event.getOldState();
+        if (oldState == null) {
+            // обновление отсоединённой сущности без снимка: что было раньше, неизвестно
+            paymentReportCache.invalidateAll();
+            return;
+        }
+
+        EntityPersister persister = event.getPersister();
+        if (event.getEntity() instanceof Payment payment) {
+            invalidateReceiver((User) oldState[propertyIndex(persister, "receiver")]);
+            invalidateReceiver(payment.getReceiver());
+        } else if (event.getEntity() instanceof User user) {
+            invalidate((PersonalInfo) oldState[propertyIndex(persister, "personalInfo")]);
+            invalidate(user.getPersonalInfo());
+        }
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (event.getEntity() instanceof Payment payment) {
+            invalidateReceiver(payment.getReceiver());
+        }
+    }
+
+    @Override
+    public void onPostInsertCommitFailed(PostInsertEvent event) {
+    }
+
+    @Override
+    public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+    }
+
+    @Override
+    public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        Class<?> entityClass = persister.getMappedClass();
+        return entityClass == Payment.class || entityClass == User.class;
+    }
+
+    @Deprecated
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return requiresPostCommitHandling(persister);
+    }
+
+    private void invalidateReceiver(User receiver) {
+        if (receiver == null) {
+            return;
+        }
+        if (!Hibernate.isInitialized(receiver)) {
+            paymentReportCache.invalidateAll();
+            return;
+        }
+        invalidate(receiver.getPersonalInfo());
+    }
+
+    private void invalidate(PersonalInfo personalInfo) {
+        if (personalInfo != null) {
+            paymentReportCache.invalidateReceiver(personalInfo.getFirstname(), personalInfo.getLastname());
+        } else {
+            paymentReportCache.invalidateReceiver(null, null);
+        }
+    }
+
+    private static int propertyIndex(EntityPersister persister, String propertyName) {
+        return persister.getEntityMetamodel().getPropertyIndex(propertyName);
+    }
+}
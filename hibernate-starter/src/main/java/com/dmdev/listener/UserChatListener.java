@@ -1,23 +1,53 @@
 package com.dmdev.listener;
 
-import com.dmdev.entity.Chat;
+import com.dmdev.counter.ChatMemberCounter;
 import com.dmdev.entity.UserChat;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.event.spi.PostCommitDeleteEventListener;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.persister.entity.EntityPersister;
 
-import javax.persistence.PostPersist;
-import javax.persistence.PostRemove;
+/**
+ * Передаёт вступления в чат и выходы из него в {@link ChatMemberCounter} после коммита транзакции,
+ * поэтому откаченные изменения счётчик не затрагивают
+ */
+@RequiredArgsConstructor
+public class UserChatListener implements PostCommitInsertEventListener, PostCommitDeleteEventListener {
 
-public class UserChatListener {
+    private final ChatMemberCounter chatMemberCounter;
 
-    @PostPersist
-    public void postPersist(UserChat userChat) {
-        Chat chat = userChat.getChat();
-        chat.setCount(chat.getCount() + 1);
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (event.getEntity() instanceof UserChat userChat) {
+            chatMemberCounter.increment(userChat.getChat().getId());
+        }
     }
 
-    @PostRemove
-    public void postRemove(UserChat userChat) {
-        Chat chat = userChat.getChat();
-        chat.setCount(chat.getCount() - 1);
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (event.getEntity() instanceof UserChat userChat) {
+            chatMemberCounter.decrement(userChat.getChat().getId());
+        }
     }
 
+    @Override
+    public void onPostInsertCommitFailed(PostInsertEvent event) {
+    }
+
+    @Override
+    public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return persister.getMappedClass() == UserChat.class;
+    }
+
+    @Deprecated
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return requiresPostCommitHandling(persister);
+    }
 }
@@ -3,6 +3,8 @@ package com.dmdev.mapper;
 import com.dmdev.dto.CompanyReadDto;
 import com.dmdev.entity.Company;
 
+import java.util.Set;
+
 public class CompanyReadMapper implements Mapper <Company, CompanyReadDto>{
     @Override
     public CompanyReadDto mapFrom(Company object) {
@@ -10,4 +12,9 @@ public class CompanyReadMapper implements Mapper <Company, CompanyReadDto>{
                 object.getName(),
                 object.getLocales());
     }
+
+    @Override
+    public Set<String> fetchPaths() {
+        return Set.of("locales");
+    }
 }
@@ -1,7 +1,27 @@
 package com.dmdev.mapper;
 
+import java.util.LinkedHashSet;
+import java.util.Set;
+
 public interface Mapper <F, T> {
 
     T mapFrom(F object);
 
+    /**
+     * Пути связей, которые читает маппер, например "company" или "company.locales".
+     * По ним строится граф загрузки, чтобы маппинг не вызывал ленивых загрузок
+     */
+    default Set<String> fetchPaths() {
+        return Set.of();
+    }
+
+    /**
+     * Связь {attribute} вместе с путями маппера, которому она передаётся
+     */
+    static Set<String> nested(String attribute, Mapper<?, ?> mapper) {
+        Set<String> paths = new LinkedHashSet<>();
+        paths.add(attribute);
+        mapper.fetchPaths().forEach(path -> paths.add(attribute + "." + path));
+        return paths;
+    }
 }
@@ -2,6 +2,7 @@ package com.dmdev.mapper;
 
 import com.dmdev.dao.CompanyRepository;
 import com.dmdev.dto.UserCreateDto;
+import com.dmdev.entity.Company;
 import com.dmdev.entity.User;
 import lombok.RequiredArgsConstructor;
 
@@ -12,12 +13,19 @@ public class UserCreateMapper implements Mapper<UserCreateDto, User>{
 
     @Override
     public User mapFrom(UserCreateDto object) {
+        return mapFrom(object, companyRepository.findById(object.companyId()).orElseThrow(IllegalArgumentException::new));
+    }
+
+    /**
+     * Для массового создания, когда компании уже загружены одним запросом
+     */
+    public User mapFrom(UserCreateDto object, Company company) {
         return User.builder()
                 .personalInfo(object.personalInfo())
                 .username(object.username())
                 .info(object.info())
                 .role(object.role())
-                .company(companyRepository.findById(object.companyId()).orElseThrow(IllegalArgumentException::new))
+                .company(company)
                 .build();
     }
 }
@@ -5,6 +5,7 @@ import com.dmdev.entity.User;
 import lombok.RequiredArgsConstructor;
 
 import java.util.Optional;
+import java.util.Set;
 
 @RequiredArgsConstructor
 public class UserReadMapper implements Mapper<User, UserReadDto>{
@@ -22,4 +23,9 @@ public class UserReadMapper implements Mapper<User, UserReadDto>{
                         .map(companyReadMapper::mapFrom)
                         .orElse(null));
     }
+
+    @Override
+    public Set<String> fetchPaths() {
+        return Mapper.nested("company", companyReadMapper);
+    }
 }
@@ -0,0 +1,213 @@
+package com.dmdev.metrics;
+
+import com.sun.net.httpserver.HttpServer;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.EntityStatistics;
+import org.hibernate.stat.QueryStatistics;
+import org.hibernate.stat.Statistics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Метрики фабрики сессий: {@link Statistics} Hibernate, снятые в {@link MetricsRegistry}, плюс гистограммы времени
+ * запросов ({@link MeteredStatistics}) и транзакций, плюс метрики подключённых {@link MetricsSource}. Значения снимаются при каждом чтении -
+ * через JMX (com.dmdev:type=HibernateMetrics) и текстом в формате Prometheus на http://{host}:{port}/metrics.
+ * HTTP по умолчанию слушает только loopback, для доступа снаружи адрес задаётся через {@link #HTTP_HOST_PROPERTY}.
+ */
+@Slf4j
+public class HibernateMetrics implements AutoCloseable {
+
+    public static final String JMX_ENABLED_PROPERTY = "dmdev.metrics.jmx.enabled";
+    public static final String HTTP_PORT_PROPERTY = "dmdev.metrics.http.port";
+    /**
+     * HTTP выключен, 0 - любой свободный порт
+     */
+    public static final int DEFAULT_HTTP_PORT = -1;
+    public static final String HTTP_HOST_PROPERTY = "dmdev.metrics.http.host";
+    public static final String DEFAULT_HTTP_HOST = "127.0.0.1";
+
+    public static final MetricName TRANSACTION_DURATION = MetricName.of("hibernate_transaction_duration_ms");
+
+    private static final Map<SessionFactory, HibernateMetrics> METRICS = new ConcurrentHashMap<>();
+
+    private final Statistics statistics;
+    @Getter
+    private final MetricsRegistry registry;
+    private final Histogram committedTransactions;
+    private final Histogram rolledBackTransactions;
+    private final List<MetricsSource> sources = new CopyOnWriteArrayList<>();
+
+    @Getter
+    private ObjectName objectName;
+    private HttpServer httpServer;
+
+    HibernateMetrics(Statistics statistics, MetricsRegistry registry) {
+        this.statistics = statistics;
+        this.registry = registry;
+        this.committedTransactions = registry.histogram(MetricName.of(TRANSACTION_DURATION.name(), "outcome", "commit"));
+        this.rolledBackTransactions = registry.histogram(MetricName.of(TRANSACTION_DURATION.name(), "outcome", "rollback"));
+    }
+
+    /**
+     * Метрики фабрики сессий, собранной через {@link com.dmdev.util.HibernateUtil}
+     */
+    public static HibernateMetrics of(SessionFactory sessionFactory) {
+        HibernateMetrics metrics = METRICS.get(sessionFactory);
+        if (metrics == null) {
+            throw new IllegalStateException("Hibernate metrics are not registered for " + sessionFactory);
+        }
+        return metrics;
+    }
+
+    static void register(SessionFactory sessionFactory, HibernateMetrics metrics) {
+        METRICS.put(sessionFactory, metrics);
+    }
+
+    static void unregister(SessionFactory sessionFactory) {
+        HibernateMetrics metrics = METRICS.remove(sessionFactory);
+        if (metrics != null) {
+            metrics.close();
+        }
+    }
+
+    public void addSource(MetricsSource source) {
+        sources.add(source);
+    }
+
+    public void transactionCompleted(long durationNanos, boolean committed) {
+        double millis = (double) durationNanos / TimeUnit.MILLISECONDS.toNanos(1);
+        (committed ? committedTransactions : rolledBackTransactions).record(millis);
+    }
+
+    /**
+     * Переносит текущие значения {@link Statistics} в реестр
+     */
+    public synchronized void sample() {
+        sources.forEach(source -> source.sample(registry));
+
+        for (String query : statistics.getQueries()) {
+            QueryStatistics queryStatistics = statistics.getQueryStatistics(query);
+            registry.counter(MetricName.of("hibernate_query_executions_total", "query", query), queryStatistics.getExecutionCount());
+            registry.counter(MetricName.of("hibernate_query_rows_total", "query", query), queryStatistics.getExecutionRowCount());
+        }
+
+        for (String entity : statistics.getEntityNames()) {
+            EntityStatistics entityStatistics = statistics.getEntityStatistics(entity);
+            registry.counter(MetricName.of("hibernate_entity_loads_total", "entity", entity), entityStatistics.getLoadCount());
+            registry.counter(MetricName.of("hibernate_entity_fetches_total", "entity", entity), entityStatistics.getFetchCount());
+        }
+
+        for (String region : statistics.getSecondLevelCacheRegionNames()) {
+            CacheRegionStatistics regionStatistics = statistics.getCacheRegionStatistics(region);
+            if (regionStatistics != null) {
+                sampleCache("hibernate_cache", "region", region,
+                        regionStatistics.getHitCount(), regionStatistics.getMissCount(), regionStatistics.getPutCount());
+            }
+        }
+        sampleCache("hibernate_query_cache", null, null,
+                statistics.getQueryCacheHitCount(), statistics.getQueryCacheMissCount(), statistics.getQueryCachePutCount());
+
+        registry.counter(MetricName.of("hibernate_sessions_opened_total"), statistics.getSessionOpenCount());
+        registry.counter(MetricName.of("hibernate_sessions_closed_total"), statistics.getSessionCloseCount());
+        registry.counter(MetricName.of("hibernate_flushes_total"), statistics.getFlushCount());
+        registry.counter(MetricName.of("hibernate_connections_total"), statistics.getConnectCount());
+        registry.counter(MetricName.of("hibernate_statements_prepared_total"), statistics.getPrepareStatementCount());
+        registry.counter(MetricName.of("hibernate_transactions_total"), statistics.getTransactionCount());
+        registry.counter(MetricName.of("hibernate_transactions_successful_total"), statistics.getSuccessfulTransactionCount());
+    }
+
+    /**
+     * Снимает статистику и возвращает все метрики в текстовом формате Prometheus
+     */
+    public String scrape() {
+        sample();
+        return registry.scrape();
+    }
+
+    /**
+     * Снимает статистику и возвращает все метрики плоским списком, как их видит JMX
+     */
+    public Map<String, Double> values() {
+        sample();
+        return registry.values();
+    }
+
+    /**
+     * @param port порт текстового endpoint'а, отрицательный - не поднимать
+     */
+    void start(boolean jmxEnabled, String host, int port, String sessionFactoryId) {
+        if (jmxEnabled) {
+            try {
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                objectName = new ObjectName("com.dmdev:type=HibernateMetrics,sessionFactory=" + sessionFactoryId);
+                server.registerMBean(new HibernateMetricsMBean(this), objectName);
+            } catch (JMException e) {
+                log.warn("Failed to register Hibernate metrics MBean", e);
+                objectName = null;
+            }
+        }
+        if (port >= 0) {
+            try {
+                httpServer = HttpServer.create(new InetSocketAddress(host, port), 0);
+                httpServer.createContext("/metrics", exchange -> {
+                    byte[] body = scrape().getBytes(StandardCharsets.UTF_8);
+                    exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+                    exchange.sendResponseHeaders(200, body.length);
+                    try (OutputStream output = exchange.getResponseBody()) {
+                        output.write(body);
+                    }
+                });
+                httpServer.start();
+                log.info("Hibernate metrics are available at http://{}:{}/metrics",
+                        httpServer.getAddress().getHostString(), httpServer.getAddress().getPort());
+            } catch (IOException e) {
+                log.warn("Failed to start Hibernate metrics endpoint on {}:{}", host, port, e);
+                httpServer = null;
+            }
+        }
+    }
+
+    /**
+     * @return адрес текстового endpoint'а или null, если он не поднят
+     */
+    public InetSocketAddress httpAddress() {
+        return httpServer == null ? null : httpServer.getAddress();
+    }
+
+    @Override
+    public void close() {
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (JMException e) {
+                log.warn("Failed to unregister {}", objectName, e);
+            }
+        }
+        if (httpServer != null) {
+            httpServer.stop(0);
+        }
+    }
+
+    private void sampleCache(String prefix, String labelName, String labelValue, long hits, long misses, long puts) {
+        registry.counter(MetricName.of(prefix + "_hits_total", labelName, labelValue), hits);
+        registry.counter(MetricName.of(prefix + "_misses_total", labelName, labelValue), misses);
+        registry.counter(MetricName.of(prefix + "_puts_total", labelName, labelValue), puts);
+        long requests = hits + misses;
+        registry.gauge(MetricName.of(prefix + "_hit_ratio", labelName, labelValue), requests == 0 ? 0 : (double) hits / requests);
+    }
+}
@@ -0,0 +1,78 @@
+package com.dmdev.metrics;
+
+import com.dmdev.bootstrap.BootstrapProfiler;
+import com.dmdev.interceptor.GlobalInterceptor;
+import org.hibernate.Interceptor;
+import org.hibernate.SessionFactory;
+import org.hibernate.SessionFactoryObserver;
+import org.hibernate.boot.Metadata;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.internal.util.config.ConfigurationHelper;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.hibernate.stat.spi.StatisticsImplementor;
+
+import java.util.Map;
+
+/**
+ * Создаёт {@link HibernateMetrics} для каждой фабрики сессий, подписывает их на транзакции через {@link GlobalInterceptor},
+ * подключает метрики пула соединений, если он их публикует, и время фаз сборки фабрики,
+ * и после старта фабрики публикует в JMX и (если задан {@link HibernateMetrics#HTTP_PORT_PROPERTY}) по HTTP
+ * на {@link HibernateMetrics#HTTP_HOST_PROPERTY}
+ */
+public class HibernateMetricsIntegrator implements Integrator {
+
+    @Override
+    public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+        Map<?, ?> settings = serviceRegistry.getService(ConfigurationService.class).getSettings();
+        boolean jmxEnabled = ConfigurationHelper.getBoolean(HibernateMetrics.JMX_ENABLED_PROPERTY, settings, true);
+        String httpHost = ConfigurationHelper.getString(HibernateMetrics.HTTP_HOST_PROPERTY, settings, HibernateMetrics.DEFAULT_HTTP_HOST);
+        int httpPort = ConfigurationHelper.getInt(HibernateMetrics.HTTP_PORT_PROPERTY, settings, HibernateMetrics.DEFAULT_HTTP_PORT);
+
+        Interceptor interceptor = sessionFactory.getSessionFactoryOptions().getInterceptor();
+
+        sessionFactory.addObserver(new SessionFactoryObserver() {
+
+            private GlobalInterceptor.TransactionListener transactionListener;
+
+            /**
+             * Статистика строится по метамодели, поэтому метрики создаются только после сборки фабрики
+             */
+            @Override
+            public void sessionFactoryCreated(SessionFactory factory) {
+                StatisticsImplementor statistics = sessionFactory.getStatistics();
+                MetricsRegistry registry = statistics instanceof MeteredStatistics meteredStatistics
+                        ? meteredStatistics.getRegistry()
+                        : new MetricsRegistry();
+                HibernateMetrics metrics = new HibernateMetrics(statistics, registry);
+                HibernateMetrics.register(factory, metrics);
+
+                if (interceptor instanceof GlobalInterceptor globalInterceptor) {
+                    transactionListener = metrics::transactionCompleted;
+                    globalInterceptor.addTransactionListener(transactionListener);
+                }
+                if (serviceRegistry.getService(ConnectionProvider.class) instanceof MetricsSource connectionPool) {
+                    metrics.addSource(connectionPool);
+                }
+                if (settings.get(BootstrapProfiler.PROPERTY) instanceof BootstrapProfiler bootstrapProfiler) {
+                    metrics.addSource(bootstrapProfiler);
+                }
+                metrics.start(jmxEnabled, httpHost, httpPort, sessionFactory.getUuid());
+            }
+
+            @Override
+            public void sessionFactoryClosing(SessionFactory factory) {
+                if (interceptor instanceof GlobalInterceptor globalInterceptor && transactionListener != null) {
+                    globalInterceptor.removeTransactionListener(transactionListener);
+                }
+                HibernateMetrics.unregister(factory);
+            }
+        });
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+    }
+}
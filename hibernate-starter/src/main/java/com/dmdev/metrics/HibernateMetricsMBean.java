@@ -0,0 +1,77 @@
+package com.dmdev.metrics;
+
+import lombok.RequiredArgsConstructor;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.ReflectionException;
+import java.util.Map;
+
+/**
+ * Каждая метрика {@link HibernateMetrics} - атрибут MBean, операция scrape возвращает их текстом.
+ * Набор атрибутов меняется по мере появления новых запросов и регионов.
+ */
+@RequiredArgsConstructor
+class HibernateMetricsMBean implements DynamicMBean {
+
+    private static final String SCRAPE = "scrape";
+
+    private final HibernateMetrics metrics;
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        Double value = metrics.values().get(attribute);
+        if (value == null) {
+            throw new AttributeNotFoundException(attribute);
+        }
+        return value;
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        Map<String, Double> values = metrics.values();
+        AttributeList list = new AttributeList();
+        for (String attribute : attributes) {
+            Double value = values.get(attribute);
+            if (value != null) {
+                list.add(new Attribute(attribute, value));
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Hibernate metrics are read-only: " + attribute.getName());
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+        if (SCRAPE.equals(actionName)) {
+            return metrics.scrape();
+        }
+        throw new ReflectionException(new NoSuchMethodException(actionName));
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        MBeanAttributeInfo[] attributes = metrics.values().keySet().stream()
+                .map(name -> new MBeanAttributeInfo(name, Double.class.getName(), name, true, false, false))
+                .toArray(MBeanAttributeInfo[]::new);
+        MBeanOperationInfo[] operations = {
+                new MBeanOperationInfo(SCRAPE, "Metrics in Prometheus text format", null, String.class.getName(), MBeanOperationInfo.INFO)
+        };
+        return new MBeanInfo(HibernateMetrics.class.getName(), "Hibernate statistics of a session factory",
+                attributes, null, operations, null);
+    }
+}
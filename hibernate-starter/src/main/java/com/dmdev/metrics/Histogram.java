@@ -0,0 +1,81 @@
+package com.dmdev.metrics;
+
+import java.util.concurrent.atomic.DoubleAccumulator;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Гистограмма длительностей в миллисекундах с фиксированными границами корзин.
+ * Запись без блокировок, перцентили оцениваются по верхней границе корзины.
+ */
+public class Histogram {
+
+    static final double[] BOUNDS = {0.5, 1, 2, 5, 10, 25, 50, 100, 250, 500, 1_000, 2_500, 5_000, 10_000};
+
+    private final LongAdder[] buckets = new LongAdder[BOUNDS.length + 1];
+    private final DoubleAdder sum = new DoubleAdder();
+    private final DoubleAccumulator max = new DoubleAccumulator(Math::max, 0);
+
+    public Histogram() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(double millis) {
+        int bucket = 0;
+        while (bucket < BOUNDS.length && millis > BOUNDS[bucket]) {
+            bucket++;
+        }
+        buckets[bucket].increment();
+        sum.add(millis);
+        max.accumulate(millis);
+    }
+
+    public long count() {
+        long count = 0;
+        for (LongAdder bucket : buckets) {
+            count += bucket.sum();
+        }
+        return count;
+    }
+
+    public double sum() {
+        return sum.sum();
+    }
+
+    public double max() {
+        return max.get();
+    }
+
+    /**
+     * @return накопленное число записей по корзинам, последняя - все записи (le="+Inf")
+     */
+    public long[] cumulativeCounts() {
+        long[] counts = new long[buckets.length];
+        long count = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            count += buckets[i].sum();
+            counts[i] = count;
+        }
+        return counts;
+    }
+
+    /**
+     * @param quantile от 0 до 1
+     */
+    public double percentile(double quantile) {
+        long[] counts = cumulativeCounts();
+        long total = counts[counts.length - 1];
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(quantile * total);
+        for (int i = 0; i < BOUNDS.length; i++) {
+            if (counts[i] >= rank) {
+                return Math.min(BOUNDS[i], max());
+            }
+        }
+        return max();
+    }
+}
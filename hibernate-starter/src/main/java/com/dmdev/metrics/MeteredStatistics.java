@@ -0,0 +1,44 @@
+package com.dmdev.metrics;
+
+import lombok.Getter;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.internal.StatisticsImpl;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Статистика Hibernate, которая дополнительно пишет время каждого выполнения запроса в гистограмму.
+ * Стандартная статистика хранит по запросу только среднее, минимум и максимум.
+ * Запросов с отдельной гистограммой не больше {@link #MAX_QUERIES}, остальные пишутся под query="other".
+ */
+public class MeteredStatistics extends StatisticsImpl {
+
+    public static final MetricName QUERY_EXECUTION_TIME = MetricName.of("hibernate_query_execution_ms");
+    public static final int MAX_QUERIES = 1_000;
+    private static final String OTHER_QUERIES = "other";
+
+    @Getter
+    private final MetricsRegistry registry = new MetricsRegistry();
+    private final Map<String, Histogram> queryExecutionTimes = new ConcurrentHashMap<>();
+
+    public MeteredStatistics(SessionFactoryImplementor sessionFactory) {
+        super(sessionFactory);
+    }
+
+    @Override
+    public void queryExecuted(String hql, int rows, long time) {
+        super.queryExecuted(hql, rows, time);
+        queryExecutionTime(hql).record(time);
+    }
+
+    private Histogram queryExecutionTime(String hql) {
+        Histogram histogram = queryExecutionTimes.get(hql);
+        if (histogram != null) {
+            return histogram;
+        }
+        String query = queryExecutionTimes.size() < MAX_QUERIES ? hql : OTHER_QUERIES;
+        return queryExecutionTimes.computeIfAbsent(query,
+                it -> registry.histogram(MetricName.of(QUERY_EXECUTION_TIME.name(), "query", it)));
+    }
+}
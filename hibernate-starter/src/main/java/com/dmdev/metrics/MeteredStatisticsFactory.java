@@ -0,0 +1,16 @@
+package com.dmdev.metrics;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.spi.StatisticsFactory;
+import org.hibernate.stat.spi.StatisticsImplementor;
+
+/**
+ * Подключается настройкой hibernate.stats.factory
+ */
+public class MeteredStatisticsFactory implements StatisticsFactory {
+
+    @Override
+    public StatisticsImplementor buildStatistics(SessionFactoryImplementor sessionFactory) {
+        return new MeteredStatistics(sessionFactory);
+    }
+}
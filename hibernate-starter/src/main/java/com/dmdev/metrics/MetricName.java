@@ -0,0 +1,57 @@
+package com.dmdev.metrics;
+
+import java.util.Comparator;
+
+/**
+ * Имя метрики с необязательной меткой, например hibernate_entity_loads_total{entity="com.dmdev.entity.User"}
+ */
+public record MetricName(String name, String labelName, String labelValue) implements Comparable<MetricName> {
+
+    private static final Comparator<MetricName> ORDER = Comparator.comparing(MetricName::name)
+            .thenComparing(MetricName::labelValue, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    public static MetricName of(String name) {
+        return new MetricName(name, null, null);
+    }
+
+    public static MetricName of(String name, String labelName, String labelValue) {
+        return new MetricName(name, labelName, labelValue);
+    }
+
+    public MetricName withSuffix(String suffix) {
+        return new MetricName(name + suffix, labelName, labelValue);
+    }
+
+    /**
+     * Метки в формате Prometheus: {label="value"} или пустая строка
+     */
+    String labels(String... extra) {
+        StringBuilder labels = new StringBuilder();
+        if (labelName != null) {
+            labels.append(labelName).append("=\"").append(escape(labelValue)).append('"');
+        }
+        for (int i = 0; i < extra.length; i += 2) {
+            if (!labels.isEmpty()) {
+                labels.append(',');
+            }
+            labels.append(extra[i]).append("=\"").append(escape(extra[i + 1])).append('"');
+        }
+        return labels.isEmpty() ? "" : "{" + labels + "}";
+    }
+
+    @Override
+    public int compareTo(MetricName other) {
+        return ORDER.compare(this, other);
+    }
+
+    @Override
+    public String toString() {
+        return name + labels();
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\")
+                .replace("\"", "\\\"")
+                .replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,107 @@
+package com.dmdev.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Метрики в памяти процесса: значения, которые выставляет {@link HibernateMetrics#sample()},
+ * и гистограммы, которые пишутся в момент события.
+ */
+public class MetricsRegistry {
+
+    private final Map<MetricName, Sample> samples = new ConcurrentHashMap<>();
+    private final Map<MetricName, Histogram> histograms = new ConcurrentHashMap<>();
+
+    public void counter(MetricName name, double value) {
+        samples.put(name, new Sample(Type.COUNTER, value));
+    }
+
+    public void gauge(MetricName name, double value) {
+        samples.put(name, new Sample(Type.GAUGE, value));
+    }
+
+    public Histogram histogram(MetricName name) {
+        return histograms.computeIfAbsent(name, it -> new Histogram());
+    }
+
+    /**
+     * Подключает гистограмму, которую пишет {@link MetricsSource}
+     */
+    public void histogram(MetricName name, Histogram histogram) {
+        histograms.putIfAbsent(name, histogram);
+    }
+
+    /**
+     * Все значения плоским списком: гистограмма раскладывается на _count, _sum, _max, _p50, _p95 и _p99
+     */
+    public Map<String, Double> values() {
+        Map<String, Double> values = new LinkedHashMap<>();
+        new TreeMap<>(samples).forEach((name, sample) -> values.put(name.toString(), sample.value()));
+        new TreeMap<>(histograms).forEach((name, histogram) -> {
+            values.put(name.withSuffix("_count").toString(), (double) histogram.count());
+            values.put(name.withSuffix("_sum").toString(), histogram.sum());
+            values.put(name.withSuffix("_max").toString(), histogram.max());
+            values.put(name.withSuffix("_p50").toString(), histogram.percentile(0.5));
+            values.put(name.withSuffix("_p95").toString(), histogram.percentile(0.95));
+            values.put(name.withSuffix("_p99").toString(), histogram.percentile(0.99));
+        });
+        return values;
+    }
+
+    /**
+     * Текстовый формат экспозиции Prometheus
+     */
+    public String scrape() {
+        StringBuilder text = new StringBuilder();
+        String previous = null;
+        for (Map.Entry<MetricName, Sample> entry : new TreeMap<>(samples).entrySet()) {
+            MetricName name = entry.getKey();
+            if (!name.name().equals(previous)) {
+                text.append("# TYPE ").append(name.name()).append(' ').append(entry.getValue().type().text).append('\n');
+                previous = name.name();
+            }
+            text.append(name).append(' ').append(format(entry.getValue().value())).append('\n');
+        }
+
+        for (Map.Entry<MetricName, Histogram> entry : new TreeMap<>(histograms).entrySet()) {
+            MetricName name = entry.getKey();
+            Histogram histogram = entry.getValue();
+            if (!name.name().equals(previous)) {
+                text.append("# TYPE ").append(name.name()).append(" histogram\n");
+                previous = name.name();
+            }
+            long[] counts = histogram.cumulativeCounts();
+            for (int i = 0; i < counts.length; i++) {
+                String bound = i < Histogram.BOUNDS.length ? format(Histogram.BOUNDS[i]) : "+Inf";
+                text.append(name.name()).append("_bucket").append(name.labels("le", bound))
+                        .append(' ').append(counts[i]).append('\n');
+            }
+            text.append(name.withSuffix("_sum")).append(' ').append(format(histogram.sum())).append('\n');
+            text.append(name.withSuffix("_count")).append(' ').append(counts[counts.length - 1]).append('\n');
+        }
+        return text.toString();
+    }
+
+    private static String format(double value) {
+        if (value == Math.rint(value) && !Double.isInfinite(value)) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+
+    private record Sample(Type type, double value) {
+    }
+
+    private enum Type {
+        COUNTER("counter"),
+        GAUGE("gauge");
+
+        private final String text;
+
+        Type(String text) {
+            this.text = text;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.dmdev.metrics;
+
+/**
+ * Компонент со своими метриками, например пул соединений. Подключается через {@link HibernateMetrics#addSource(MetricsSource)}
+ */
+@FunctionalInterface
+public interface MetricsSource {
+
+    /**
+     * Вызывается при каждом снятии метрик
+     */
+    void sample(MetricsRegistry registry);
+}
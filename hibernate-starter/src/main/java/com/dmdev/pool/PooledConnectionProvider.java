@@ -0,0 +1,182 @@
+package com.dmdev.pool;
+
+import com.dmdev.metrics.Histogram;
+import com.dmdev.metrics.MetricName;
+import com.dmdev.metrics.MetricsRegistry;
+import com.dmdev.metrics.MetricsSource;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.hikaricp.internal.HikariConfigurationUtil;
+import org.hibernate.internal.util.config.ConfigurationHelper;
+import org.hibernate.service.UnknownUnwrapTypeException;
+import org.hibernate.service.spi.Configurable;
+import org.hibernate.service.spi.Stoppable;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Пул соединений на HikariCP вместо встроенного в Hibernate DriverManager-провайдера.
+ * Размер, время ожидания соединения, порог удержания и кэш подготовленных запросов PostgreSQL
+ * задаются свойствами dmdev.pool.*, остальные настройки Hikari - свойствами hibernate.hikari.*.
+ * Время ожидания и использования соединений, состояние пула и соединения, удерживаемые дольше порога,
+ * публикуются в {@link com.dmdev.metrics.HibernateMetrics}; о каждом таком соединении Hikari пишет в лог стек, где его взяли.
+ */
+@Slf4j
+public class PooledConnectionProvider implements ConnectionProvider, Configurable, Stoppable, MetricsSource {
+
+    public static final String MIN_IDLE_PROPERTY = "dmdev.pool.min_idle";
+    public static final String MAX_SIZE_PROPERTY = "dmdev.pool.max_size";
+    public static final String ACQUISITION_TIMEOUT_PROPERTY = "dmdev.pool.acquisition_timeout_ms";
+    public static final String LEAK_DETECTION_PROPERTY = "dmdev.pool.leak_detection_ms";
+    public static final String STATEMENT_CACHE_SIZE_PROPERTY = "dmdev.pool.statement_cache_size";
+
+    public static final int DEFAULT_MIN_IDLE = 2;
+    public static final int DEFAULT_MAX_SIZE = 10;
+    public static final int DEFAULT_ACQUISITION_TIMEOUT_MILLIS = 5_000;
+    /**
+     * Hikari пишет стек удерживаемого соединения только для порога от 2 секунд, 0 - не отслеживать
+     */
+    public static final int DEFAULT_LEAK_DETECTION_MILLIS = 10_000;
+    public static final int DEFAULT_STATEMENT_CACHE_SIZE = 256;
+
+    public static final MetricName ACQUISITION_TIME = MetricName.of("hibernate_pool_acquisition_ms");
+    public static final MetricName USAGE_TIME = MetricName.of("hibernate_pool_usage_ms");
+
+    private final Histogram acquisitionTime = new Histogram();
+    private final Histogram usageTime = new Histogram();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder longHeldConnections = new LongAdder();
+    private final Map<Connection, Long> acquiredAt = new ConcurrentHashMap<>();
+
+    private long leakDetectionNanos;
+    private HikariDataSource dataSource;
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public void configure(Map settings) {
+        HikariConfig config = HikariConfigurationUtil.loadConfiguration(settings);
+        if (!settings.containsKey(AvailableSettings.AUTOCOMMIT)) {
+            config.setAutoCommit(false);
+        }
+        config.setMinimumIdle(ConfigurationHelper.getInt(MIN_IDLE_PROPERTY, settings, DEFAULT_MIN_IDLE));
+        config.setMaximumPoolSize(ConfigurationHelper.getInt(MAX_SIZE_PROPERTY, settings, DEFAULT_MAX_SIZE));
+        config.setConnectionTimeout(ConfigurationHelper.getLong(ACQUISITION_TIMEOUT_PROPERTY, settings, DEFAULT_ACQUISITION_TIMEOUT_MILLIS));
+        long leakDetectionMillis = ConfigurationHelper.getLong(LEAK_DETECTION_PROPERTY, settings, DEFAULT_LEAK_DETECTION_MILLIS);
+        config.setLeakDetectionThreshold(leakDetectionMillis);
+        leakDetectionNanos = TimeUnit.MILLISECONDS.toNanos(leakDetectionMillis);
+        config.addDataSourceProperty("preparedStatementCacheQueries",
+                ConfigurationHelper.getInt(STATEMENT_CACHE_SIZE_PROPERTY, settings, DEFAULT_STATEMENT_CACHE_SIZE));
+        config.setMetricsTrackerFactory((poolName, poolStats) -> new PoolMetricsTracker());
+
+        dataSource = new HikariDataSource(config);
+        log.info("Connection pool {} started: {}..{} connections, acquisition timeout {} ms",
+                dataSource.getPoolName(), config.getMinimumIdle(), config.getMaximumPoolSize(), config.getConnectionTimeout());
+    }
+
+    public int getMaximumPoolSize() {
+        return dataSource.getMaximumPoolSize();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Connection connection = dataSource.getConnection();
+        acquiredAt.put(connection, System.nanoTime());
+        return connection;
+    }
+
+    @Override
+    public void closeConnection(Connection connection) throws SQLException {
+        Long acquired = acquiredAt.remove(connection);
+        if (acquired != null && leakDetectionNanos > 0 && System.nanoTime() - acquired > leakDetectionNanos) {
+            longHeldConnections.increment();
+        }
+        connection.close();
+    }
+
+    @Override
+    public void sample(MetricsRegistry registry) {
+        registry.histogram(ACQUISITION_TIME, acquisitionTime);
+        registry.histogram(USAGE_TIME, usageTime);
+        registry.counter(MetricName.of("hibernate_pool_acquisition_timeouts_total"), timeouts.sum());
+        registry.counter(MetricName.of("hibernate_pool_long_held_connections_total"), longHeldConnections.sum());
+        registry.gauge(MetricName.of("hibernate_pool_longest_held_ms"), longestHeldMillis());
+
+        HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+        if (pool != null) {
+            registry.gauge(MetricName.of("hibernate_pool_connections", "state", "active"), pool.getActiveConnections());
+            registry.gauge(MetricName.of("hibernate_pool_connections", "state", "idle"), pool.getIdleConnections());
+            registry.gauge(MetricName.of("hibernate_pool_connections_max"), dataSource.getMaximumPoolSize());
+            registry.gauge(MetricName.of("hibernate_pool_pending_threads"), pool.getThreadsAwaitingConnection());
+        }
+    }
+
+    private double longestHeldMillis() {
+        long now = System.nanoTime();
+        long longest = 0;
+        for (Long acquired : acquiredAt.values()) {
+            longest = Math.max(longest, now - acquired);
+        }
+        return (double) longest / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    @Override
+    public boolean supportsAggressiveRelease() {
+        return false;
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public boolean isUnwrappableAs(Class unwrapType) {
+        return ConnectionProvider.class.equals(unwrapType)
+               || PooledConnectionProvider.class.isAssignableFrom(unwrapType)
+               || DataSource.class.isAssignableFrom(unwrapType);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T unwrap(Class<T> unwrapType) {
+        if (ConnectionProvider.class.equals(unwrapType) || PooledConnectionProvider.class.isAssignableFrom(unwrapType)) {
+            return (T) this;
+        }
+        if (DataSource.class.isAssignableFrom(unwrapType)) {
+            return (T) dataSource;
+        }
+        throw new UnknownUnwrapTypeException(unwrapType);
+    }
+
+    @Override
+    public void stop() {
+        if (dataSource != null) {
+            dataSource.close();
+        }
+    }
+
+    private class PoolMetricsTracker implements IMetricsTracker {
+
+        @Override
+        public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+            acquisitionTime.record((double) elapsedAcquiredNanos / TimeUnit.MILLISECONDS.toNanos(1));
+        }
+
+        @Override
+        public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+            usageTime.record(elapsedBorrowedMillis);
+        }
+
+        @Override
+        public void recordConnectionTimeout() {
+            timeouts.increment();
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.dmdev.report;
+
+import com.dmdev.dto.PaymentFilter;
+import org.hibernate.SessionFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Кэш средних выплат по фильтру имени из {@link com.dmdev.dao.UserDao}.
+ * Кэш запросов Hibernate сбрасывает результат при любой записи в таблицу, а здесь запись сбрасывает только средние
+ * по фильтрам, под которые подходит имя получателя. Отчёты по компаниям строятся по {@link com.dmdev.aggregate.PaymentAggregates}.
+ * Сбросы приходят после коммита (см. {@link com.dmdev.listener.PaymentReportListener}), поэтому отчёт отражает
+ * только закоммиченные данные.
+ */
+public class PaymentReportCache {
+
+    public static final String MAX_FILTERS_PROPERTY = "dmdev.report_cache.max_filters";
+    public static final int DEFAULT_MAX_FILTERS = 1_000;
+
+    private static final Map<SessionFactory, PaymentReportCache> CACHES = new ConcurrentHashMap<>();
+
+    /**
+     * Средние по фильтру, вытеснение LRU. Поколение растёт при каждом сбросе, чтобы не положить в кэш значение,
+     * посчитанное до сброса.
+     */
+    private final Map<PaymentFilter, Double> averages;
+    private final AtomicLong averagesGeneration = new AtomicLong();
+
+    PaymentReportCache(int maxFilters) {
+        this.averages = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<PaymentFilter, Double> eldest) {
+                return size() > maxFilters;
+            }
+        };
+    }
+
+    /**
+     * Кэш отчётов фабрики сессий, собранной через {@link com.dmdev.util.HibernateUtil}
+     */
+    public static PaymentReportCache of(SessionFactory sessionFactory) {
+        PaymentReportCache cache = CACHES.get(sessionFactory);
+        if (cache == null) {
+            throw new IllegalStateException("Payment report cache is not registered for " + sessionFactory);
+        }
+        return cache;
+    }
+
+    static void register(SessionFactory sessionFactory, PaymentReportCache cache) {
+        CACHES.put(sessionFactory, cache);
+    }
+
+    static void unregister(SessionFactory sessionFactory) {
+        CACHES.remove(sessionFactory);
+    }
+
+    /**
+     * Возвращает средний размер выплат по фильтру, null - если выплат нет
+     */
+    public Double averagePaymentAmount(PaymentFilter filter, Supplier<Double> loader) {
+        synchronized (averages) {
+            if (averages.containsKey(filter)) {
+                return averages.get(filter);
+            }
+        }
+
+        long generation = averagesGeneration.get();
+        Double average = loader.get();
+        synchronized (averages) {
+            if (averagesGeneration.get() == generation) {
+                averages.put(filter, average);
+            }
+        }
+        return average;
+    }
+
+    /**
+     * Сбрасывает средние всех фильтров, под которые подходит сотрудник с таким именем и фамилией
+     */
+    public void invalidateReceiver(String firstName, String lastName) {
+        averagesGeneration.incrementAndGet();
+        synchronized (averages) {
+            averages.keySet().removeIf(filter -> matches(filter, firstName, lastName));
+        }
+    }
+
+    public void invalidateAll() {
+        averagesGeneration.incrementAndGet();
+        synchronized (averages) {
+            averages.clear();
+        }
+    }
+
+    private static boolean matches(PaymentFilter filter, String firstName, String lastName) {
+        return (filter.getFirstName() == null || filter.getFirstName().equals(firstName))
+               && (filter.getLastName() == null || filter.getLastName().equals(lastName));
+    }
+}
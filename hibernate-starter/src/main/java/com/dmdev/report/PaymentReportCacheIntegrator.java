@@ -0,0 +1,50 @@
+package com.dmdev.report;
+
+import com.dmdev.listener.PaymentReportListener;
+import org.hibernate.SessionFactory;
+import org.hibernate.SessionFactoryObserver;
+import org.hibernate.boot.Metadata;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.internal.util.config.ConfigurationHelper;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+
+/**
+ * Создаёт {@link PaymentReportCache} для каждой фабрики сессий и подключает к ней {@link PaymentReportListener}
+ */
+public class PaymentReportCacheIntegrator implements Integrator {
+
+    @Override
+    public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+        int maxFilters = ConfigurationHelper.getInt(
+                PaymentReportCache.MAX_FILTERS_PROPERTY,
+                serviceRegistry.getService(ConfigurationService.class).getSettings(),
+                PaymentReportCache.DEFAULT_MAX_FILTERS);
+        PaymentReportCache cache = new PaymentReportCache(maxFilters);
+        PaymentReportCache.register(sessionFactory, cache);
+
+        PaymentReportListener listener = new PaymentReportListener(cache);
+        EventListenerRegistry listenerRegistry = serviceRegistry.getService(EventListenerRegistry.class);
+        listenerRegistry.appendListeners(EventType.POST_COMMIT_INSERT, listener);
+        listenerRegistry.appendListeners(EventType.POST_COMMIT_UPDATE, listener);
+        listenerRegistry.appendListeners(EventType.POST_COMMIT_DELETE, listener);
+
+        sessionFactory.addObserver(new SessionFactoryObserver() {
+            @Override
+            public void sessionFactoryCreated(SessionFactory factory) {
+            }
+
+            @Override
+            public void sessionFactoryClosing(SessionFactory factory) {
+                PaymentReportCache.unregister(factory);
+            }
+        });
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+    }
+}
@@ -0,0 +1,150 @@
+package com.dmdev.service;
+
+import com.dmdev.dao.CompanyRepository;
+import com.dmdev.dao.UserRepository;
+import com.dmdev.dto.UserCreateDto;
+import com.dmdev.dto.UserReadDto;
+import com.dmdev.entity.User;
+import com.dmdev.interceptor.TransactionInterceptor;
+import com.dmdev.interceptor.TransactionalProxyFactory;
+import com.dmdev.mapper.CompanyReadMapper;
+import com.dmdev.mapper.Mapper;
+import com.dmdev.mapper.UserCreateMapper;
+import com.dmdev.mapper.UserReadMapper;
+import com.dmdev.pool.PooledConnectionProvider;
+import com.dmdev.session.TaskSessionContext;
+import com.dmdev.util.HibernateUtil;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.internal.util.config.ConfigurationHelper;
+
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Асинхронный API {@link UserService}: каждый вызов выполняется отдельной задачей со своей сессией
+ * ({@link TaskSessionContext}) на ограниченном пуле потоков. Потоков на dmdev.async.reserved_connections меньше,
+ * чем соединений в пуле: остаток оставлен фоновым писателям (аудит, счётчики чатов, агрегаты, проверка схемы).
+ * Соединения берут и синхронные вызовы, поэтому задача может ждать соединения, но не дольше таймаута пула.
+ * Задачи сверх очереди сразу завершаются {@link RejectedExecutionException}, а не блокируют вызывающего.
+ */
+public class AsyncUserService implements AutoCloseable {
+
+    public static final String RESERVED_CONNECTIONS_PROPERTY = "dmdev.async.reserved_connections";
+    public static final int DEFAULT_RESERVED_CONNECTIONS = 4;
+    public static final int DEFAULT_QUEUE_CAPACITY = 1_000;
+
+    private final SessionFactory sessionFactory;
+    private final UserService userService;
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * @param userService сервис, работающий с текущей сессией фабрики (getCurrentSession)
+     */
+    public AsyncUserService(SessionFactory sessionFactory, UserService userService) {
+        this(sessionFactory, userService, defaultThreads(sessionFactory), DEFAULT_QUEUE_CAPACITY);
+    }
+
+    public AsyncUserService(SessionFactory sessionFactory, UserService userService, int threads, int queueCapacity) {
+        this.sessionFactory = sessionFactory;
+        this.userService = userService;
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), daemonThreads("user-service-"));
+    }
+
+    /**
+     * Сервис поверх текущей сессии фабрики с транзакциями {@link TransactionInterceptor}
+     */
+    public static AsyncUserService create(SessionFactory sessionFactory) {
+        Session session = HibernateUtil.currentSessionProxy(sessionFactory);
+        CompanyRepository companyRepository = new CompanyRepository(session);
+        UserRepository userRepository = new UserRepository(session);
+        UserReadMapper userReadMapper = new UserReadMapper(new CompanyReadMapper());
+        UserCreateMapper userCreateMapper = new UserCreateMapper(companyRepository);
+
+        UserService userService = new TransactionalProxyFactory(sessionFactory)
+                .create(UserService.class, userRepository, userReadMapper, userCreateMapper, companyRepository);
+        return new AsyncUserService(sessionFactory, userService);
+    }
+
+    public CompletableFuture<Optional<UserReadDto>> findById(Long id) {
+        return submit(() -> userService.findById(id));
+    }
+
+    /**
+     * Маппер вызывается внутри задачи, пока сессия открыта
+     */
+    public <T> CompletableFuture<Optional<T>> findById(Long id, Mapper<User, T> mapper) {
+        return submit(() -> userService.findById(id, mapper));
+    }
+
+    public CompletableFuture<Long> create(UserCreateDto userDto) {
+        return submit(() -> userService.create(userDto));
+    }
+
+    public CompletableFuture<Boolean> delete(Long id) {
+        return submit(() -> userService.delete(id));
+    }
+
+    private <T> CompletableFuture<T> submit(Callable<T> call) {
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return TaskSessionContext.call(sessionFactory, call);
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Дожидается уже принятых задач
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static int defaultThreads(SessionFactory sessionFactory) {
+        ConnectionProvider connectionProvider = sessionFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .getService(ConnectionProvider.class);
+        if (!(connectionProvider instanceof PooledConnectionProvider pool)) {
+            return Runtime.getRuntime().availableProcessors();
+        }
+        int reserved = ConfigurationHelper.getInt(RESERVED_CONNECTIONS_PROPERTY, sessionFactory.getProperties(), DEFAULT_RESERVED_CONNECTIONS);
+        return Math.max(1, pool.getMaximumPoolSize() - reserved);
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -1,37 +1,60 @@
 package com.dmdev.service;
 
+import com.dmdev.dao.CompanyRepository;
+import com.dmdev.dao.UserDao;
 import com.dmdev.dao.UserRepository;
+import com.dmdev.dto.BulkCreateResult;
 import com.dmdev.dto.UserCreateDto;
 import com.dmdev.mapper.UserCreateMapper;
 import com.dmdev.dto.UserReadDto;
+import com.dmdev.entity.Company;
 import com.dmdev.entity.User;
+import com.dmdev.interceptor.ReadOnly;
 import com.dmdev.mapper.Mapper;
 import com.dmdev.mapper.UserReadMapper;
 import com.dmdev.validation.UpdateCheck;
 import lombok.RequiredArgsConstructor;
+import org.hibernate.Session;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.graph.Graph;
 import org.hibernate.graph.GraphSemantic;
+import org.hibernate.graph.RootGraph;
 
 import javax.transaction.Transactional;
 import javax.validation.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toMap;
 
 @RequiredArgsConstructor
 public class UserService {
+
+    private static final int BATCH_SIZE = 1_000;
+    private static final String FETCH_GRAPH_PREFIX = "fetch:";
+    private static final Validator VALIDATOR = Validation.buildDefaultValidatorFactory().getValidator();
     
     private final UserRepository userRepository;
     private final UserReadMapper userReadMapper;
     private final UserCreateMapper userCreateMapper;
+    private final CompanyRepository companyRepository;
+    private final UserDao userDao = UserDao.getInstance();
 
     @Transactional
     public Long create(UserCreateDto userDto) {
         // validation   Dto
 
-        ValidatorFactory validatorFactory = Validation.buildDefaultValidatorFactory();
-        Validator validator = validatorFactory.getValidator();
-
-        Set<ConstraintViolation<UserCreateDto>> validationResult = validator.validate(userDto, UpdateCheck.class);
+        Set<ConstraintViolation<UserCreateDto>> validationResult = VALIDATOR.validate(userDto, UpdateCheck.class);
 
         if(!validationResult.isEmpty()) {
             throw new ConstraintViolationException(validationResult);
@@ -41,22 +64,149 @@ public class UserService {
         return userRepository.save(userEntity).getId();
     }
 
+    /**
+     *     BATCH_SIZE  flush   .   
+     *   ,      .
+     *      ,   -    .
+     * ,   ,      ,      failures.
+     */
+    @Transactional
+    public BulkCreateResult createAll(List<UserCreateDto> userDtos) {
+        Session session = userRepository.getEntityManager().unwrap(Session.class);
+
+        List<Integer> companyIds = userDtos.stream()
+                .map(UserCreateDto::companyId)
+                .filter(Objects::nonNull)
+                .distinct()
+                .collect(toList());
+        Map<Integer, Company> companies = companyRepository.findAllById(companyIds).stream()
+                .collect(toMap(Company::getId, Function.identity()));
+
+        List<Long> createdIds = new ArrayList<>();
+        List<User> created = new ArrayList<>(BATCH_SIZE);
+        List<BulkCreateResult.Failure> failures = new ArrayList<>();
+        Set<String> usernames = new HashSet<>();
+        for (int from = 0; from < userDtos.size(); from += BATCH_SIZE) {
+            List<UserCreateDto> batch = userDtos.subList(from, Math.min(from + BATCH_SIZE, userDtos.size()));
+            Set<String> existingUsernames = new HashSet<>(userDao.findExistingUsernames(session, batch.stream()
+                    .map(UserCreateDto::username)
+                    .filter(Objects::nonNull)
+                    .collect(toList())));
+
+            for (int i = 0; i < batch.size(); i++) {
+                UserCreateDto userDto = batch.get(i);
+                String failure = checkCreate(userDto, companies, existingUsernames, usernames);
+                if (failure != null) {
+                    failures.add(new BulkCreateResult.Failure(from + i, userDto.username(), failure));
+                    continue;
+                }
+                User userEntity = userCreateMapper.mapFrom(userDto, companies.get(userDto.companyId()));
+                created.add(userRepository.save(userEntity));
+            }
+            session.flush();
+            for (User user : created) {
+                createdIds.add(user.getId());
+                session.evict(user);
+            }
+            created.clear();
+        }
+
+        return new BulkCreateResult(createdIds, failures);
+    }
+
+    private String checkCreate(UserCreateDto userDto, Map<Integer, Company> companies,
+                               Set<String> existingUsernames, Set<String> usernames) {
+        Set<ConstraintViolation<UserCreateDto>> validationResult = VALIDATOR.validate(userDto, UpdateCheck.class);
+        if (!validationResult.isEmpty()) {
+            return new ConstraintViolationException(validationResult).getMessage();
+        }
+        if (!companies.containsKey(userDto.companyId())) {
+            return "Company not found: " + userDto.companyId();
+        }
+        if (existingUsernames.contains(userDto.username()) || !usernames.add(userDto.username())) {
+            return "Username already exists: " + userDto.username();
+        }
+        return null;
+    }
+
+    @ReadOnly
     @Transactional
     public Optional<UserReadDto> findById(Long id) {
         return findById(id, userReadMapper);
     }
 
+    @ReadOnly
     @Transactional
     public <T> Optional<T> findById(Long id, Mapper<User, T> mapper) {
-        Map<String, Object> properties = Map.of(
-                GraphSemantic.LOAD.getJpaHintName(),
-                userRepository.getEntityManager().getEntityGraph("WithCompany")
-        );
-
-        return userRepository.findById(id, properties)
+        return userRepository.findById(id, fetchGraphOf(mapper))
                 .map(mapper::mapFrom);
     }
 
+    /**
+     *  ,  {@link #findById(Long)},  dto     
+     */
+    @ReadOnly
+    @Transactional
+    public Optional<UserReadDto> findReadDtoById(Long id) {
+        return userDao.findUserReadDtoById(userRepository.getEntityManager().unwrap(Session.class), id);
+    }
+
+    @ReadOnly
+    @Transactional
+    public List<UserReadDto> findAllById(List<Long> ids) {
+        return findAllById(ids, userReadMapper);
+    }
+
+    @ReadOnly
+    @Transactional
+    public <T> List<T> findAllById(List<Long> ids, Mapper<User, T> mapper) {
+        return userRepository.findAllById(ids, fetchGraphOf(mapper)).stream()
+                .map(mapper::mapFrom)
+                .collect(toList());
+    }
+
+    /**
+     *    {@link Mapper#fetchPaths()}:      
+     *       
+     */
+    private Map<String, Object> fetchGraphOf(Mapper<User, ?> mapper) {
+        Set<String> paths = mapper.fetchPaths();
+        if (paths.isEmpty()) {
+            return Map.of();
+        }
+
+        Session session = userRepository.getEntityManager().unwrap(Session.class);
+        SessionFactoryImplementor sessionFactory = session.getSessionFactory().unwrap(SessionFactoryImplementor.class);
+        //           
+        String graphName = FETCH_GRAPH_PREFIX + String.join(",", new TreeSet<>(paths));
+        RootGraph<?> graph = sessionFactory.findEntityGraphByName(graphName);
+        if (graph == null) {
+            RootGraph<User> fetchGraph = session.createEntityGraph(User.class);
+            addPaths(fetchGraph, paths);
+            sessionFactory.addNamedEntityGraph(graphName, fetchGraph);
+            graph = sessionFactory.findEntityGraphByName(graphName);
+        }
+        return Map.of(GraphSemantic.LOAD.getJpaHintName(), graph);
+    }
+
+    private static void addPaths(Graph<?> graph, Collection<String> paths) {
+        Map<String, List<String>> nestedPaths = new LinkedHashMap<>();
+        for (String path : paths) {
+            int dot = path.indexOf('.');
+            String attribute = dot < 0 ? path : path.substring(0, dot);
+            List<String> nested = nestedPaths.computeIfAbsent(attribute, it -> new ArrayList<>());
+            if (dot >= 0) {
+                nested.add(path.substring(dot + 1));
+            }
+        }
+        nestedPaths.forEach((attribute, nested) -> {
+            if (nested.isEmpty()) {
+                graph.addAttributeNode(attribute);
+            } else {
+                addPaths(graph.addSubGraph(attribute), nested);
+            }
+        });
+    }
 
     @Transactional
     public boolean delete(Long id) {
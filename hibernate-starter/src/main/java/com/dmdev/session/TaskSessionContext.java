@@ -0,0 +1,66 @@
+package com.dmdev.session;
+
+import org.hibernate.HibernateException;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.context.internal.ThreadLocalSessionContext;
+import org.hibernate.context.spi.AbstractCurrentSessionContext;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * Текущая сессия, привязанная к задаче, а не к потоку: {@link #call(SessionFactory, Callable)} открывает сессию,
+ * getCurrentSession() возвращает её, пока задача выполняется, и сессия закрывается вместе с задачей.
+ * Поток пула между задачами не держит ни сессии, ни соединения, поэтому задачи можно запускать в любом executor'е.
+ * Вне задачи ведёт себя как контекст thread.
+ */
+public class TaskSessionContext extends AbstractCurrentSessionContext {
+
+    private static final ThreadLocal<Map<SessionFactory, Session>> TASK_SESSIONS = new ThreadLocal<>();
+
+    private final ThreadLocalSessionContext threadContext;
+
+    public TaskSessionContext(SessionFactoryImplementor factory) {
+        super(factory);
+        this.threadContext = new ThreadLocalSessionContext(factory);
+    }
+
+    @Override
+    public Session currentSession() throws HibernateException {
+        Map<SessionFactory, Session> sessions = TASK_SESSIONS.get();
+        Session session = sessions == null ? null : sessions.get(factory());
+        if (session != null) {
+            validateExistingSession(session);
+            return session;
+        }
+        return threadContext.currentSession();
+    }
+
+    /**
+     * Выполняет задачу с собственной сессией; вложенная задача получает новую сессию, после неё восстанавливается прежняя
+     */
+    public static <T> T call(SessionFactory sessionFactory, Callable<T> task) throws Exception {
+        Map<SessionFactory, Session> sessions = TASK_SESSIONS.get();
+        if (sessions == null) {
+            sessions = new HashMap<>();
+            TASK_SESSIONS.set(sessions);
+        }
+        Session outer = sessions.get(sessionFactory);
+        try (Session session = sessionFactory.openSession()) {
+            sessions.put(sessionFactory, session);
+            return task.call();
+        } finally {
+            if (outer != null) {
+                sessions.put(sessionFactory, outer);
+            } else {
+                sessions.remove(sessionFactory);
+                if (sessions.isEmpty()) {
+                    TASK_SESSIONS.remove();
+                }
+            }
+        }
+    }
+}
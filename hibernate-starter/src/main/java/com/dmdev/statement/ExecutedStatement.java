@@ -0,0 +1,13 @@
+package com.dmdev.statement;
+
+/**
+ * @param callSite первый кадр стека вне Hibernate и библиотек, например com.dmdev.mapper.UserReadMapper.mapFrom:21
+ */
+public record ExecutedStatement(String sql,
+                                String shape,
+                                String callSite) {
+
+    public boolean isSelect() {
+        return StatementShape.isSelect(shape);
+    }
+}
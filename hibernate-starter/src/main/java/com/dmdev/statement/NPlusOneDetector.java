@@ -0,0 +1,119 @@
+package com.dmdev.statement;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Считает запросы каждой сессии ({@link SessionStatements}) и потока ({@link StatementLog}) по месту вызова.
+ * Когда за сессию выполняется {threshold} выборок одной формы ({@link StatementShape}) - это N+1:
+ * в режиме LOG пишется предупреждение со стеком, в режиме FAIL запрос падает с {@link NPlusOneException}.
+ * По умолчанию выключен (OFF) и не подключается к фабрике: LOG или FAIL включаются в тестовой конфигурации.
+ * Inspector один на фабрику и сессию не знает, поэтому запрос засчитывает {@link SessionStatementsListener}
+ * той сессии, которая сразу после inspect готовит его statement.
+ */
+@Slf4j
+public class NPlusOneDetector implements StatementInspector {
+
+    public static final String MODE_PROPERTY = "dmdev.n_plus_one.mode";
+    public static final String THRESHOLD_PROPERTY = "dmdev.n_plus_one.threshold";
+    public static final int DEFAULT_THRESHOLD = 3;
+
+    private static final List<String> LIBRARY_PACKAGES = List.of("java.", "jdk.", "sun.", "com.sun.",
+            "org.hibernate.", "com.querydsl.", "net.bytebuddy.", "org.postgresql.");
+    private static final String PROXY_CLASS_MARKER = "$HibernateProxy$";
+    private static final ThreadLocal<Inspected> INSPECTED = new ThreadLocal<>();
+
+    private volatile Mode mode = Mode.OFF;
+    private volatile int threshold = DEFAULT_THRESHOLD;
+
+    /**
+     * Подключает детектор и {@link SessionStatementsListener}, если {@link #MODE_PROPERTY} не off
+     */
+    public static void apply(Configuration configuration) {
+        String mode = configuration.getProperty(MODE_PROPERTY);
+        if (mode == null || Mode.valueOf(mode.toUpperCase(Locale.ROOT)) == Mode.OFF) {
+            return;
+        }
+        configuration.setProperty(AvailableSettings.STATEMENT_INSPECTOR, NPlusOneDetector.class.getName());
+        configuration.setProperty(AvailableSettings.AUTO_SESSION_EVENTS_LISTENER, SessionStatementsListener.class.getName());
+    }
+
+    void configure(Mode mode, int threshold) {
+        this.mode = mode;
+        this.threshold = threshold;
+    }
+
+    @Override
+    public String inspect(String sql) {
+        if (mode == Mode.OFF) {
+            return sql;
+        }
+        ExecutedStatement statement = new ExecutedStatement(sql, StatementShape.of(sql), callSite());
+        StatementLog.recordAll(statement);
+        INSPECTED.set(new Inspected(this, statement));
+        return sql;
+    }
+
+    /**
+     * Засчитывает сессии запрос, разобранный в этом потоке перед подготовкой её statement
+     */
+    static void prepared(SessionStatements session) {
+        Inspected inspected = INSPECTED.get();
+        if (inspected == null) {
+            return;
+        }
+        INSPECTED.remove();
+        inspected.detector().record(session, inspected.statement());
+    }
+
+    private void record(SessionStatements session, ExecutedStatement statement) {
+        int executions = session.record(statement);
+        if (executions >= threshold && statement.isSelect() && session.markReported(statement.shape())) {
+            report(statement, executions, session);
+        }
+    }
+
+    private void report(ExecutedStatement statement, int executions, SessionStatements session) {
+        NPlusOneException exception = new NPlusOneException(String.format(
+                "%d selects of the same shape in one session, last one at %s: %s (statements by call site: %s)",
+                executions, statement.callSite(), statement.shape(), session.countsByCallSite()));
+        if (mode == Mode.FAIL) {
+            throw exception;
+        }
+        log.warn(exception.getMessage(), exception);
+    }
+
+    private static String callSite() {
+        return StackWalker.getInstance().walk(frames -> frames
+                .filter(frame -> isApplicationClass(frame.getClassName()))
+                .findFirst()
+                .map(frame -> frame.getClassName() + "." + frame.getMethodName() + ":" + frame.getLineNumber())
+                .orElse("unknown"));
+    }
+
+    private static boolean isApplicationClass(String className) {
+        if (className.equals(NPlusOneDetector.class.getName()) || className.contains(PROXY_CLASS_MARKER)) {
+            return false;
+        }
+        for (String libraryPackage : LIBRARY_PACKAGES) {
+            if (className.startsWith(libraryPackage)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private record Inspected(NPlusOneDetector detector, ExecutedStatement statement) {
+    }
+
+    public enum Mode {
+        OFF,
+        LOG,
+        FAIL
+    }
+}
@@ -0,0 +1,32 @@
+package com.dmdev.statement;
+
+import org.hibernate.boot.Metadata;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.internal.util.config.ConfigurationHelper;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Настраивает {@link NPlusOneDetector} фабрики сессий из {@link NPlusOneDetector#MODE_PROPERTY} (off по умолчанию, log, fail)
+ * и {@link NPlusOneDetector#THRESHOLD_PROPERTY}
+ */
+public class NPlusOneDetectorIntegrator implements Integrator {
+
+    @Override
+    public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+        if (sessionFactory.getSessionFactoryOptions().getStatementInspector() instanceof NPlusOneDetector detector) {
+            Map<?, ?> settings = serviceRegistry.getService(ConfigurationService.class).getSettings();
+            String mode = ConfigurationHelper.getString(NPlusOneDetector.MODE_PROPERTY, settings, NPlusOneDetector.Mode.OFF.name());
+            int threshold = ConfigurationHelper.getInt(NPlusOneDetector.THRESHOLD_PROPERTY, settings, NPlusOneDetector.DEFAULT_THRESHOLD);
+            detector.configure(NPlusOneDetector.Mode.valueOf(mode.toUpperCase(Locale.ROOT)), threshold);
+        }
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+    }
+}
@@ -0,0 +1,10 @@
+package com.dmdev.statement;
+
+import org.hibernate.HibernateException;
+
+public class NPlusOneException extends HibernateException {
+
+    public NPlusOneException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,42 @@
+package com.dmdev.statement;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Выполненные за сессию запросы: всего, по месту вызова и по форме, см. {@link SessionStatementsListener}
+ */
+public class SessionStatements {
+
+    private final Map<String, Integer> byCallSite = new LinkedHashMap<>();
+    private final Map<String, Integer> byShape = new HashMap<>();
+    private final Set<String> reportedShapes = new HashSet<>();
+    private int count;
+
+    /**
+     * @return сколько раз за сессию выполнялся запрос этой формы
+     */
+    synchronized int record(ExecutedStatement statement) {
+        count++;
+        byCallSite.merge(statement.callSite(), 1, Integer::sum);
+        return byShape.merge(statement.shape(), 1, Integer::sum);
+    }
+
+    /**
+     * @return true только для первого обращения по форме, чтобы о каждой серии сообщать один раз
+     */
+    synchronized boolean markReported(String shape) {
+        return reportedShapes.add(shape);
+    }
+
+    public synchronized int count() {
+        return count;
+    }
+
+    public synchronized Map<String, Integer> countsByCallSite() {
+        return new LinkedHashMap<>(byCallSite);
+    }
+}
@@ -0,0 +1,17 @@
+package com.dmdev.statement;
+
+import org.hibernate.BaseSessionEventListener;
+
+/**
+ * Создаётся Hibernate на каждую сессию (hibernate.session.events.auto) и ведёт её {@link SessionStatements}:
+ * запрос засчитывается той сессии, которая готовит его statement
+ */
+public class SessionStatementsListener extends BaseSessionEventListener {
+
+    private final SessionStatements statements = new SessionStatements();
+
+    @Override
+    public void jdbcPrepareStatementStart() {
+        NPlusOneDetector.prepared(statements);
+    }
+}
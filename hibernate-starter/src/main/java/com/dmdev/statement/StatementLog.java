@@ -0,0 +1,80 @@
+package com.dmdev.statement;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.stream.Collectors.counting;
+import static java.util.stream.Collectors.groupingBy;
+
+/**
+ * Запросы, выполненные текущим потоком между {@link #start()} и {@link #close()} во всех сессиях.
+ * Нужен тестам, которые проверяют бюджет запросов.
+ */
+public class StatementLog implements AutoCloseable {
+
+    private static final ThreadLocal<List<StatementLog>> ACTIVE = new ThreadLocal<>();
+
+    private final List<ExecutedStatement> statements = new ArrayList<>();
+
+    private StatementLog() {
+    }
+
+    public static StatementLog start() {
+        StatementLog log = new StatementLog();
+        List<StatementLog> active = ACTIVE.get();
+        if (active == null) {
+            active = new ArrayList<>();
+            ACTIVE.set(active);
+        }
+        active.add(log);
+        return log;
+    }
+
+    static boolean isRecording() {
+        return ACTIVE.get() != null;
+    }
+
+    static void recordAll(ExecutedStatement statement) {
+        List<StatementLog> active = ACTIVE.get();
+        if (active != null) {
+            active.forEach(log -> log.statements.add(statement));
+        }
+    }
+
+    public int count() {
+        return statements.size();
+    }
+
+    public List<ExecutedStatement> statements() {
+        return List.copyOf(statements);
+    }
+
+    /**
+     * @return формы выборок, выполненных не меньше threshold раз, с числом выполнений
+     */
+    public Map<String, Long> repeatedSelects(int threshold) {
+        Map<String, Long> repeated = new LinkedHashMap<>();
+        statements.stream()
+                .filter(ExecutedStatement::isSelect)
+                .collect(groupingBy(ExecutedStatement::shape, LinkedHashMap::new, counting()))
+                .forEach((shape, count) -> {
+                    if (count >= threshold) {
+                        repeated.put(shape, count);
+                    }
+                });
+        return repeated;
+    }
+
+    @Override
+    public void close() {
+        List<StatementLog> active = ACTIVE.get();
+        if (active != null) {
+            active.remove(this);
+            if (active.isEmpty()) {
+                ACTIVE.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.dmdev.statement;
+
+import lombok.experimental.UtilityClass;
+
+import java.util.regex.Pattern;
+
+/**
+ * Форма SQL: текст без значений. Выборки одной формы отличаются только ключами,
+ * например загрузка ленивой связи для каждой строки родительского запроса.
+ */
+@UtilityClass
+public class StatementShape {
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern IN_LIST = Pattern.compile("\\(\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\)");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    public static String of(String sql) {
+        String shape = STRING_LITERAL.matcher(sql).replaceAll("?");
+        shape = NUMBER_LITERAL.matcher(shape).replaceAll("?");
+        shape = IN_LIST.matcher(shape).replaceAll("(?)");
+        return WHITESPACE.matcher(shape).replaceAll(" ").trim();
+    }
+
+    public static boolean isSelect(String shape) {
+        return shape.regionMatches(true, 0, "select", 0, 6)
+               || shape.regionMatches(true, 0, "with", 0, 4);
+    }
+}
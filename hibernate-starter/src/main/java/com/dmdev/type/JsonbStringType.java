@@ -0,0 +1,22 @@
+package com.dmdev.type;
+
+import com.vladmihalcea.hibernate.type.json.JsonBinaryType;
+
+/**
+ * jsonb-колонка, которая читается в String. Тип значения задан заранее, а не берётся из свойства сущности:
+ * у map-сущностей Envers (*_aud) класса свойства нет, и {@link JsonBinaryType} не знал бы, во что читать значение.
+ * Envers ссылается на тип по {@link #getName()}, поэтому тип регистрируется под своим именем.
+ */
+public class JsonbStringType extends JsonBinaryType {
+
+    public static final String NAME = "jsonb-string";
+
+    public JsonbStringType() {
+        super(String.class);
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+}
@@ -0,0 +1,218 @@
+package com.dmdev.util;
+
+import com.dmdev.counter.ChatMemberCounter;
+import com.dmdev.entity.Chat;
+import com.dmdev.entity.Company;
+import com.dmdev.entity.Payment;
+import com.dmdev.entity.PersonalInfo;
+import com.dmdev.entity.User;
+import com.dmdev.entity.UserChat;
+import lombok.Builder;
+import lombok.Cleanup;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+/**
+ * Генератор синтетических данных произвольного объёма: компании, сотрудники, выплаты и участники чатов.
+ * Распределение выплат по сотрудникам и сотрудников по компаниям задаётся показателем Ципфа,
+ * одинаковый seed даёт одинаковый набор данных.
+ * Данные пишутся порциями по {batchSize} сущностей с flush/clear после каждой порции,
+ * транзакция фиксируется каждые {batchesPerTransaction} порций, чтобы не держать блокировки и WAL всего набора.
+ * При генерации id через IDENTITY (по умолчанию) insert выполняется сразу в save, чтобы получить id,
+ * и {batchSize} только ограничивает размер сессии: JDBC batching вставок работает с {@link IdGeneration#POOLED_LO}.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class DataGenerator {
+
+    public static final String[] FIRST_NAMES = {"Bill", "Steve", "Sergey", "Tim", "Diane", "Larry", "Jeff", "Ivan", "Petr", "Liza"};
+    public static final String[] LAST_NAMES = {"Gates", "Jobs", "Brin", "Cook", "Greene", "Page", "Bezos", "Ivanov", "Petrov", "Stepanova"};
+
+    private static final LocalDate MIN_BIRTH_DATE = LocalDate.of(1950, 1, 1);
+    private static final int BIRTH_DATE_RANGE_DAYS = 20_000;
+
+    private final SessionFactory sessionFactory;
+    private final Settings settings;
+    private int flushedBatches;
+
+    public static String companyName(int index) {
+        return "Company-" + index;
+    }
+
+    public static String chatName(int index) {
+        return "chat-" + index;
+    }
+
+    public void generate() {
+        SplittableRandom random = new SplittableRandom(settings.getSeed());
+
+        @Cleanup Session session = sessionFactory.openSession();
+        session.setJdbcBatchSize(settings.getBatchSize());
+        session.setCacheMode(CacheMode.IGNORE);
+        session.beginTransaction();
+        flushedBatches = 0;
+
+        long start = System.currentTimeMillis();
+        Integer[] companyIds = saveCompanies(session);
+        Long[] userIds = saveUsers(session, random, companyIds);
+        savePayments(session, random, userIds);
+        Long[] chatIds = saveChats(session);
+        saveChatMembers(session, random, userIds, chatIds);
+
+        session.getTransaction().commit();
+        ChatMemberCounter.of(sessionFactory).flush();
+        log.info("Generated {} companies, {} users, {} payments, {} chats in {} ms",
+                companyIds.length, userIds.length, settings.getPaymentCount(), chatIds.length,
+                System.currentTimeMillis() - start);
+    }
+
+    private Integer[] saveCompanies(Session session) {
+        Integer[] ids = new Integer[settings.getCompanyCount()];
+        for (int i = 0; i < ids.length; i++) {
+            Company company = Company.builder()
+                    .name(companyName(i))
+                    .build();
+            session.save(company);
+            ids[i] = company.getId();
+            flushIfNeeded(session, i);
+        }
+        flush(session);
+        return ids;
+    }
+
+    private Long[] saveUsers(Session session, SplittableRandom random, Integer[] companyIds) {
+        ZipfDistribution companies = new ZipfDistribution(companyIds.length, settings.getCompanySkew());
+        Long[] ids = new Long[settings.getUserCount()];
+        for (int i = 0; i < ids.length; i++) {
+            User user = User.builder()
+                    .username("user" + i + "@gmail.com")
+                    .personalInfo(PersonalInfo.builder()
+                            .firstname(FIRST_NAMES[random.nextInt(FIRST_NAMES.length)])
+                            .lastname(LAST_NAMES[random.nextInt(LAST_NAMES.length)])
+                            .birthDate(MIN_BIRTH_DATE.plusDays(random.nextInt(BIRTH_DATE_RANGE_DAYS)))
+                            .build())
+                    .company(session.load(Company.class, companyIds[companies.sample(random)]))
+                    .build();
+            session.save(user);
+            ids[i] = user.getId();
+            flushIfNeeded(session, i);
+        }
+        flush(session);
+        return ids;
+    }
+
+    private void savePayments(Session session, SplittableRandom random, Long[] userIds) {
+        ZipfDistribution receivers = new ZipfDistribution(userIds.length, settings.getPaymentSkew());
+        for (long i = 0; i < settings.getPaymentCount(); i++) {
+            Payment payment = Payment.builder()
+                    .receiver(session.load(User.class, userIds[receivers.sample(random)]))
+                    .amount(random.nextInt(settings.getMinAmount(), settings.getMaxAmount() + 1))
+                    .build();
+            session.save(payment);
+            flushIfNeeded(session, i);
+        }
+        flush(session);
+    }
+
+    private Long[] saveChats(Session session) {
+        Long[] ids = new Long[settings.getChatCount()];
+        for (int i = 0; i < ids.length; i++) {
+            Chat chat = Chat.builder()
+                    .name(chatName(i))
+                    .build();
+            session.save(chat);
+            ids[i] = chat.getId();
+            flushIfNeeded(session, i);
+        }
+        flush(session);
+        return ids;
+    }
+
+    private void saveChatMembers(Session session, SplittableRandom random, Long[] userIds, Long[] chatIds) {
+        if (chatIds.length == 0) {
+            return;
+        }
+        ZipfDistribution chats = new ZipfDistribution(chatIds.length, settings.getChatSkew());
+        int maxChatsPerUser = Math.min(chatIds.length, settings.getChatsPerUser() * 2);
+        long saved = 0;
+        for (Long userId : userIds) {
+            Set<Integer> joined = new HashSet<>();
+            int chatsOfUser = random.nextInt(maxChatsPerUser + 1);
+            for (int attempt = 0; joined.size() < chatsOfUser && attempt < chatsOfUser * 4; attempt++) {
+                joined.add(chats.sample(random));
+            }
+            for (Integer chatIndex : joined) {
+                UserChat userChat = UserChat.builder()
+                        .user(session.load(User.class, userId))
+                        .chat(session.load(Chat.class, chatIds[chatIndex]))
+                        .build();
+                userChat.setCreatedAt(Instant.now());
+                session.save(userChat);
+                flushIfNeeded(session, saved++);
+            }
+        }
+        flush(session);
+    }
+
+    private void flushIfNeeded(Session session, long index) {
+        if (index % settings.getBatchSize() == settings.getBatchSize() - 1) {
+            flush(session);
+        }
+    }
+
+    private void flush(Session session) {
+        session.flush();
+        if (++flushedBatches % settings.getBatchesPerTransaction() == 0) {
+            session.getTransaction().commit();
+            session.beginTransaction();
+        }
+        session.clear();
+    }
+
+    @Value
+    @Builder
+    public static class Settings {
+        @Builder.Default
+        int companyCount = 10;
+        @Builder.Default
+        int userCount = 1_000;
+        @Builder.Default
+        long paymentCount = 10_000;
+        @Builder.Default
+        int chatCount = 20;
+        @Builder.Default
+        int chatsPerUser = 2;
+        /**
+         * Показатель Ципфа для числа выплат на сотрудника (0 - равномерно)
+         */
+        @Builder.Default
+        double paymentSkew = 1.0;
+        /**
+         * Показатель Ципфа для числа сотрудников в компании (0 - равномерно)
+         */
+        @Builder.Default
+        double companySkew = 1.0;
+        @Builder.Default
+        double chatSkew = 1.0;
+        @Builder.Default
+        int minAmount = 100;
+        @Builder.Default
+        int maxAmount = 1_000;
+        @Builder.Default
+        long seed = 42L;
+        @Builder.Default
+        int batchSize = 1_000;
+        @Builder.Default
+        int batchesPerTransaction = 10;
+    }
+}
@@ -1,50 +1,123 @@
 package com.dmdev.util;
 
+import com.dmdev.aggregate.PaymentAggregatesIntegrator;
+import com.dmdev.audit.AuditIntegrator;
+import com.dmdev.bootstrap.BootstrapProfiler;
+import com.dmdev.bootstrap.BootstrapProfilerIntegrator;
+import com.dmdev.bootstrap.ProfilingSchemaManagementTool;
+import com.dmdev.cache.CacheRegions;
+import com.dmdev.cache.CacheRegionsIntegrator;
 import com.dmdev.converter.BirthdayConverter;
+import com.dmdev.counter.ChatMemberCounterIntegrator;
 import com.dmdev.entity.Audit;
 import com.dmdev.entity.Revision;
 import com.dmdev.entity.User;
+import com.dmdev.history.LazyAuditedAttributesIntegrator;
+import com.dmdev.history.ValidityAudit;
 import com.dmdev.interceptor.GlobalInterceptor;
-import com.dmdev.listener.AuditTableListener;
+import com.dmdev.metrics.HibernateMetricsIntegrator;
+import com.dmdev.metrics.MeteredStatisticsFactory;
+import com.dmdev.pool.PooledConnectionProvider;
+import com.dmdev.report.PaymentReportCacheIntegrator;
+import com.dmdev.session.TaskSessionContext;
+import com.dmdev.statement.NPlusOneDetector;
+import com.dmdev.statement.NPlusOneDetectorIntegrator;
+import com.dmdev.type.JsonbStringType;
 import com.vladmihalcea.hibernate.type.json.JsonBinaryType;
 import lombok.experimental.UtilityClass;
+import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.boot.model.naming.CamelCaseToUnderscoresNamingStrategy;
+import org.hibernate.boot.registry.BootstrapServiceRegistryBuilder;
+import org.hibernate.boot.registry.StandardServiceRegistry;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.AvailableSettings;
 import org.hibernate.cfg.Configuration;
-import org.hibernate.event.service.spi.EventListenerRegistry;
-import org.hibernate.event.spi.EventType;
-import org.hibernate.internal.SessionFactoryImpl;
+import org.hibernate.stat.internal.StatisticsInitiator;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
 
 @UtilityClass
 public class HibernateUtil {
 
     public static SessionFactory buildSessionFactory() {
+        BootstrapProfiler profiler = BootstrapProfiler.start();
         Configuration configuration = buildConfiguration();
+        profiler.mark(BootstrapProfiler.Phase.CONFIGURATION);
         configuration.configure();
+        profiler.mark(BootstrapProfiler.Phase.CFG_XML);
+
+        return buildSessionFactory(configuration, profiler);
+    }
 
-        var sessionFactory = configuration.buildSessionFactory();
-//        registerListeners(sessionFactory);
+    /**
+     * Собирает фабрику из готовой конфигурации, замеряя фазы сборки, см. {@link BootstrapProfiler#of(SessionFactory)}
+     */
+    public static SessionFactory buildSessionFactory(Configuration configuration) {
+        return buildSessionFactory(configuration, BootstrapProfiler.start());
+    }
 
-        return sessionFactory;
+    private static SessionFactory buildSessionFactory(Configuration configuration, BootstrapProfiler profiler) {
+        configuration.getProperties().put(BootstrapProfiler.PROPERTY, profiler);
+        NPlusOneDetector.apply(configuration);
+        StandardServiceRegistry serviceRegistry = configuration.getStandardServiceRegistryBuilder()
+                .applySettings(configuration.getProperties())
+                .build();
+        profiler.mark(BootstrapProfiler.Phase.SERVICE_REGISTRY);
+        try {
+            return configuration.buildSessionFactory(serviceRegistry);
+        } catch (RuntimeException e) {
+            StandardServiceRegistryBuilder.destroy(serviceRegistry);
+            throw e;
+        }
     }
 
-    private static void registerListeners(SessionFactory sessionFactory) {
-        var sessionFactoryImpl = sessionFactory.unwrap(SessionFactoryImpl.class);
-        var listenerRegistry = sessionFactoryImpl.getServiceRegistry().getService(EventListenerRegistry.class);
-        var auditTableListener = new AuditTableListener();
-        listenerRegistry.appendListeners(EventType.PRE_INSERT, auditTableListener);
-        listenerRegistry.appendListeners(EventType.PRE_DELETE, auditTableListener);
+    /**
+     * Сессия-заместитель для репозиториев: каждый вызов уходит в текущую сессию фабрики (getCurrentSession)
+     */
+    public static Session currentSessionProxy(SessionFactory sessionFactory) {
+        return (Session) Proxy.newProxyInstance(SessionFactory.class.getClassLoader(), new Class<?>[]{Session.class},
+                (proxy, method, args) -> {
+                    try {
+                        return method.invoke(sessionFactory.getCurrentSession(), args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
     }
 
     public static Configuration buildConfiguration() {
-        Configuration configuration = new Configuration();
+        return buildConfiguration(IdGeneration.fromSystemProperties());
+    }
+
+    public static Configuration buildConfiguration(IdGeneration idGeneration) {
+        Configuration configuration = new Configuration(new BootstrapServiceRegistryBuilder()
+                .applyIntegrator(new BootstrapProfilerIntegrator())
+                .applyIntegrator(new ChatMemberCounterIntegrator())
+                .applyIntegrator(new AuditIntegrator())
+                .applyIntegrator(new LazyAuditedAttributesIntegrator())
+                .applyIntegrator(new CacheRegionsIntegrator())
+                .applyIntegrator(new PaymentReportCacheIntegrator())
+                .applyIntegrator(new PaymentAggregatesIntegrator())
+                .applyIntegrator(new HibernateMetricsIntegrator())
+                .applyIntegrator(new NPlusOneDetectorIntegrator())
+                .build());
         configuration.setPhysicalNamingStrategy(new CamelCaseToUnderscoresNamingStrategy());
         configuration.addAnnotatedClass(User.class);
         configuration.addAnnotatedClass(Audit.class);
         configuration.addAnnotatedClass(Revision.class);
         configuration.addAttributeConverter(new BirthdayConverter());
         configuration.registerTypeOverride(new JsonBinaryType());
+        configuration.registerTypeOverride(new JsonbStringType());
         configuration.setInterceptor(new GlobalInterceptor());
+        configuration.setProperty(StatisticsInitiator.STATS_BUILDER, MeteredStatisticsFactory.class.getName());
+        configuration.setProperty(AvailableSettings.CURRENT_SESSION_CONTEXT_CLASS, TaskSessionContext.class.getName());
+        configuration.setProperty(AvailableSettings.CONNECTION_PROVIDER, PooledConnectionProvider.class.getName());
+        configuration.setProperty(AvailableSettings.SCHEMA_MANAGEMENT_TOOL, ProfilingSchemaManagementTool.class.getName());
+        CacheRegions.apply(configuration);
+        ValidityAudit.apply(configuration);
+        idGeneration.apply(configuration);
         return configuration;
     }
 }
\ No newline at end of file
@@ -0,0 +1,35 @@
+package com.dmdev.util;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.cfg.Configuration;
+
+import java.util.Locale;
+
+/**
+ * Стратегия генерации первичных ключей для всех сущностей.
+ * IDENTITY отключает JDBC batching для insert, поэтому для массовой записи используется POOLED_LO:
+ * последовательности с шагом 50 (см. sequence.sql) и оптимизатор pooled-lo.
+ */
+public enum IdGeneration {
+
+    IDENTITY {
+        @Override
+        void apply(Configuration configuration) {
+        }
+    },
+    POOLED_LO {
+        @Override
+        void apply(Configuration configuration) {
+            configuration.addResource("META-INF/pooled-lo-ids.xml");
+            configuration.setProperty(AvailableSettings.PREFERRED_POOLED_OPTIMIZER, "pooled-lo");
+        }
+    };
+
+    public static final String PROPERTY = "dmdev.id.generation";
+
+    abstract void apply(Configuration configuration);
+
+    public static IdGeneration fromSystemProperties() {
+        return valueOf(System.getProperty(PROPERTY, IDENTITY.name()).toUpperCase(Locale.ROOT));
+    }
+}
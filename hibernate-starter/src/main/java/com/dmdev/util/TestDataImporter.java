@@ -19,6 +19,13 @@ import java.util.Arrays;
 @UtilityClass
 public class TestDataImporter {
 
+    /**
+     * Заполняет базу синтетическими данными нужного объёма, см. {@link DataGenerator}
+     */
+    public void importData(SessionFactory sessionFactory, DataGenerator.Settings settings) {
+        new DataGenerator(sessionFactory, settings).generate();
+    }
+
     public void importData(SessionFactory sessionFactory) {
         @Cleanup Session session = sessionFactory.openSession();
 
@@ -0,0 +1,38 @@
+package com.dmdev.util;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Распределение Ципфа на рангах 0..size-1: вероятность ранга k пропорциональна 1 / (k + 1)^exponent.
+ * При exponent = 0 распределение равномерное.
+ */
+public class ZipfDistribution {
+
+    private final double[] cumulative;
+
+    public ZipfDistribution(int size, double exponent) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("size must be positive: " + size);
+        }
+        cumulative = new double[size];
+        double sum = 0;
+        for (int rank = 0; rank < size; rank++) {
+            sum += 1.0 / Math.pow(rank + 1, exponent);
+            cumulative[rank] = sum;
+        }
+        for (int rank = 0; rank < size; rank++) {
+            cumulative[rank] /= sum;
+        }
+    }
+
+    public int sample(SplittableRandom random) {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        int rank = index >= 0 ? index : -index - 1;
+        return Math.min(rank, cumulative.length - 1);
+    }
+
+    public int size() {
+        return cumulative.length;
+    }
+}
@@ -0,0 +1,5 @@
+-- JSON snapshots of the audit table (com.dmdev.audit.AuditSnapshotEncoder) for a database created while
+-- audit.entity_content was a varchar. hbm2ddl.auto=validate expects jsonb. Earlier rows hold entity toString()
+-- text, not JSON, so they are kept verbatim as JSON strings. Safe to run more than once.
+
+ALTER TABLE audit ALTER COLUMN entity_content TYPE jsonb USING to_jsonb(entity_content);
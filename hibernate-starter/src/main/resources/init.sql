@@ -33,8 +33,9 @@ CREATE TABLE profile
 
 CREATE TABLE chat
 (
-    id   SERIAL PRIMARY KEY,
-    name VARCHAR(64) NOT NULL UNIQUE
+    id    SERIAL PRIMARY KEY,
+    name  VARCHAR(64) NOT NULL UNIQUE,
+    count INT NOT NULL DEFAULT 0
 );
 
 CREATE TABLE users_chat
@@ -62,5 +63,5 @@ INSERT INTO users (username, firstname, lastname, birth_date, company_id)
 VALUES ('petr@gmail.com', 'Petr', 'Petrov', '2000-12-22', 1),
        ('ivan@gmail.com', 'Ivan', 'Ivanov', '2001-12-22', 1);
 
-
-
+CREATE INDEX users_birth_date_id_idx ON users (birth_date, id);
+CREATE INDEX users_company_id_firstname_id_idx ON users (company_id, firstname, id);
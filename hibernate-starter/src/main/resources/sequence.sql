@@ -7,4 +7,33 @@ create table all_sequence
 (
     table_name VARCHAR(32) PRIMARY KEY,
     pk_value   BIGINT NOT NULL
-);
\ No newline at end of file
+);
+
+-- pooled-lo identifiers (IdGeneration.POOLED_LO): every table gets its own sequence with the allocation size of the mapping.
+-- The SERIAL sequences used by IDENTITY are left alone, so IDENTITY inserts do not skip 50 ids each.
+-- The pooled-lo sequences start above the ids already in the table. Rows inserted later with the SERIAL default
+-- are not seen by them, so do not mix both kinds of inserts into one table without moving the sequences.
+CREATE SEQUENCE IF NOT EXISTS company_seq INCREMENT BY 50 OWNED BY company.id;
+CREATE SEQUENCE IF NOT EXISTS users_seq INCREMENT BY 50 OWNED BY users.id;
+CREATE SEQUENCE IF NOT EXISTS payment_seq INCREMENT BY 50 OWNED BY payment.id;
+CREATE SEQUENCE IF NOT EXISTS chat_seq INCREMENT BY 50 OWNED BY chat.id;
+CREATE SEQUENCE IF NOT EXISTS users_chat_seq INCREMENT BY 50 OWNED BY users_chat.id;
+CREATE SEQUENCE IF NOT EXISTS audit_seq INCREMENT BY 50 OWNED BY audit.id;
+CREATE SEQUENCE IF NOT EXISTS revision_seq INCREMENT BY 50 OWNED BY revision.id;
+
+SELECT setval('company_seq', GREATEST((SELECT coalesce(max(id), 0) + 1 FROM company), nextval('company_seq')), false);
+SELECT setval('users_seq', GREATEST((SELECT coalesce(max(id), 0) + 1 FROM users), nextval('users_seq')), false);
+SELECT setval('payment_seq', GREATEST((SELECT coalesce(max(id), 0) + 1 FROM payment), nextval('payment_seq')), false);
+SELECT setval('chat_seq', GREATEST((SELECT coalesce(max(id), 0) + 1 FROM chat), nextval('chat_seq')), false);
+SELECT setval('users_chat_seq', GREATEST((SELECT coalesce(max(id), 0) + 1 FROM users_chat), nextval('users_chat_seq')), false);
+SELECT setval('audit_seq', GREATEST((SELECT coalesce(max(id), 0) + 1 FROM audit), nextval('audit_seq')), false);
+SELECT setval('revision_seq', GREATEST((SELECT coalesce(max(id), 0) + 1 FROM revision), nextval('revision_seq')), false);
+
+-- An earlier version of this script raised the step of the SERIAL sequences themselves, put it back to 1.
+ALTER SEQUENCE IF EXISTS company_id_seq INCREMENT BY 1;
+ALTER SEQUENCE IF EXISTS users_id_seq INCREMENT BY 1;
+ALTER SEQUENCE IF EXISTS payment_id_seq INCREMENT BY 1;
+ALTER SEQUENCE IF EXISTS chat_id_seq INCREMENT BY 1;
+ALTER SEQUENCE IF EXISTS users_chat_id_seq INCREMENT BY 1;
+ALTER SEQUENCE IF EXISTS audit_id_seq INCREMENT BY 1;
+ALTER SEQUENCE IF EXISTS revision_id_seq INCREMENT BY 1;
@@ -0,0 +1,51 @@
+-- Validity audit strategy (com.dmdev.history.ValidityAudit) for a database whose *_aud tables were written
+-- by the default strategy. hbm2ddl.auto=validate expects the revend columns, and as-of queries expect revend
+-- to be filled: a row stays current until the next revision of the same id. Safe to run more than once.
+
+ALTER TABLE users_aud ADD COLUMN IF NOT EXISTS revend INT8 REFERENCES revision;
+ALTER TABLE users_aud ADD COLUMN IF NOT EXISTS revend_tstmp TIMESTAMP;
+ALTER TABLE company_aud ADD COLUMN IF NOT EXISTS revend INT8 REFERENCES revision;
+ALTER TABLE company_aud ADD COLUMN IF NOT EXISTS revend_tstmp TIMESTAMP;
+ALTER TABLE payment_aud ADD COLUMN IF NOT EXISTS revend INT8 REFERENCES revision;
+ALTER TABLE payment_aud ADD COLUMN IF NOT EXISTS revend_tstmp TIMESTAMP;
+ALTER TABLE company_locale_aud ADD COLUMN IF NOT EXISTS revend INT8 REFERENCES revision;
+ALTER TABLE company_locale_aud ADD COLUMN IF NOT EXISTS revend_tstmp TIMESTAMP;
+
+UPDATE users_aud a
+SET revend = n.next_rev
+FROM (SELECT id, rev, lead(rev) OVER (PARTITION BY id ORDER BY rev) AS next_rev FROM users_aud) n
+WHERE a.id = n.id AND a.rev = n.rev AND a.revend IS NULL AND n.next_rev IS NOT NULL;
+
+UPDATE company_aud a
+SET revend = n.next_rev
+FROM (SELECT id, rev, lead(rev) OVER (PARTITION BY id ORDER BY rev) AS next_rev FROM company_aud) n
+WHERE a.id = n.id AND a.rev = n.rev AND a.revend IS NULL AND n.next_rev IS NOT NULL;
+
+UPDATE payment_aud a
+SET revend = n.next_rev
+FROM (SELECT id, rev, lead(rev) OVER (PARTITION BY id ORDER BY rev) AS next_rev FROM payment_aud) n
+WHERE a.id = n.id AND a.rev = n.rev AND a.revend IS NULL AND n.next_rev IS NOT NULL;
+
+-- element collection rows are identified by all their columns
+UPDATE company_locale_aud a
+SET revend = n.next_rev
+FROM (SELECT company_id, lang, description, rev,
+             lead(rev) OVER (PARTITION BY company_id, lang, description ORDER BY rev) AS next_rev
+      FROM company_locale_aud) n
+WHERE a.company_id = n.company_id AND a.lang = n.lang AND a.description = n.description AND a.rev = n.rev
+  AND a.revend IS NULL AND n.next_rev IS NOT NULL;
+
+-- revision.timestamp is epoch millis, Envers writes revend_tstmp in the JVM time zone
+UPDATE users_aud a SET revend_tstmp = to_timestamp(r.timestamp / 1000.0)::TIMESTAMP
+FROM revision r WHERE r.id = a.revend AND a.revend_tstmp IS NULL;
+UPDATE company_aud a SET revend_tstmp = to_timestamp(r.timestamp / 1000.0)::TIMESTAMP
+FROM revision r WHERE r.id = a.revend AND a.revend_tstmp IS NULL;
+UPDATE payment_aud a SET revend_tstmp = to_timestamp(r.timestamp / 1000.0)::TIMESTAMP
+FROM revision r WHERE r.id = a.revend AND a.revend_tstmp IS NULL;
+UPDATE company_locale_aud a SET revend_tstmp = to_timestamp(r.timestamp / 1000.0)::TIMESTAMP
+FROM revision r WHERE r.id = a.revend AND a.revend_tstmp IS NULL;
+
+-- the same indexes ValidityAudit adds for hbm2ddl create
+CREATE INDEX IF NOT EXISTS users_aud_id_revend_idx ON users_aud (id, revend);
+CREATE INDEX IF NOT EXISTS company_aud_id_revend_idx ON company_aud (id, revend);
+CREATE INDEX IF NOT EXISTS payment_aud_id_revend_idx ON payment_aud (id, revend);
@@ -0,0 +1,127 @@
+package com.dmdev.aggregate;
+
+import com.dmdev.dao.UserDao;
+import com.dmdev.entity.Company;
+import com.dmdev.entity.Payment;
+import com.dmdev.entity.User;
+import com.dmdev.util.HibernateTestUtil;
+import com.dmdev.util.TestDataImporter;
+import com.querydsl.core.Tuple;
+import lombok.Cleanup;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.TestInstance.Lifecycle.PER_CLASS;
+
+@TestInstance(PER_CLASS)
+class PaymentAggregatesTest {
+
+    private SessionFactory sessionFactory;
+    private final UserDao userDao = UserDao.getInstance();
+
+    @BeforeAll
+    public void initDb() throws InterruptedException {
+        Properties properties = new Properties();
+        properties.setProperty(PaymentAggregates.ENABLED_PROPERTY, "true");
+        sessionFactory = HibernateTestUtil.buildSessionFactory(properties);
+        TestDataImporter.importData(sessionFactory);
+        assertThat(PaymentAggregates.of(sessionFactory).awaitLoaded(10, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @AfterAll
+    public void finish() {
+        sessionFactory.close();
+    }
+
+    @Test
+    void followsCommittedPayments() {
+        savePayment("DianeGreene", 1_000, true);
+        savePayment("DianeGreene", 5_000, false);
+
+        assertThat(PaymentAggregates.of(sessionFactory).isLoaded()).isTrue();
+        assertMatchesDatabase();
+    }
+
+    @Test
+    void reconcileFixesPaymentsWrittenBypassingHibernate() {
+        @Cleanup Session session = sessionFactory.openSession();
+        session.beginTransaction();
+        session.createNativeQuery("insert into payment (amount, receiver_id) values (:amount, :receiverId)")
+                .setParameter("amount", 10_000)
+                .setParameter("receiverId", findUser(session, "TimCook").getId())
+                .executeUpdate();
+        session.getTransaction().commit();
+
+        assertThat(PaymentAggregates.of(sessionFactory).reconcile()).isEqualTo(1);
+        assertThat(PaymentAggregates.of(sessionFactory).reconcile()).isZero();
+        assertMatchesDatabase();
+    }
+
+    @Test
+    void userChangingCompanyMovesPayments() {
+        @Cleanup Session session = sessionFactory.openSession();
+        session.beginTransaction();
+        User steveJobs = findUser(session, "SteveJobs");
+        steveJobs.setCompany(session.createQuery("select c from Company c where c.name = 'Microsoft'", Company.class)
+                .getSingleResult());
+        session.getTransaction().commit();
+
+        assertMatchesDatabase();
+    }
+
+    private void assertMatchesDatabase() {
+        assertThat(companyAverages(true)).containsExactlyElementsOf(companyAverages(false));
+        assertThat(usersAboveAverage(true)).containsExactlyElementsOf(usersAboveAverage(false));
+    }
+
+    private List<String> companyAverages(boolean readAggregates) {
+        @Cleanup Session session = sessionFactory.openSession();
+        session.setProperty(PaymentAggregates.READ_PROPERTY, readAggregates);
+        List<Tuple> rows = userDao.findCompanyNamesWithAvgUserPaymentsOrderedByCompanyName(session);
+        return rows.stream().map(it -> it.get(0, String.class) + "=" + rounded(it.get(1, Double.class))).toList();
+    }
+
+    private List<String> usersAboveAverage(boolean readAggregates) {
+        @Cleanup Session session = sessionFactory.openSession();
+        session.setProperty(PaymentAggregates.READ_PROPERTY, readAggregates);
+        List<Tuple> rows = userDao.isItPossible(session);
+        return rows.stream().map(it -> it.get(0, User.class).getUsername() + "=" + rounded(it.get(1, Double.class))).toList();
+    }
+
+    /**
+     * Среднее из базы (numeric) и из памяти (double) могут разойтись в последнем знаке
+     */
+    private static long rounded(Double average) {
+        return Math.round(average * 1_000_000);
+    }
+
+    private void savePayment(String username, int amount, boolean commit) {
+        @Cleanup Session session = sessionFactory.openSession();
+        session.beginTransaction();
+        session.save(Payment.builder()
+                .receiver(findUser(session, username))
+                .amount(amount)
+                .build());
+        session.flush();
+        if (commit) {
+            session.getTransaction().commit();
+        } else {
+            session.getTransaction().rollback();
+        }
+    }
+
+    private static User findUser(Session session, String username) {
+        return session.createQuery("select u from User u where u.username = :username", User.class)
+                .setParameter("username", username)
+                .getSingleResult();
+    }
+}
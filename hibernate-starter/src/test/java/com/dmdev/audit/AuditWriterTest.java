@@ -0,0 +1,284 @@
+package com.dmdev.audit;
+
+import com.dmdev.entity.Audit;
+import com.dmdev.entity.Chat;
+import com.dmdev.entity.Company;
+import com.dmdev.util.HibernateTestUtil;
+import lombok.Cleanup;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.TestInstance.Lifecycle.PER_CLASS;
+
+@TestInstance(PER_CLASS)
+class AuditWriterTest {
+
+    private final SessionFactory sessionFactory = HibernateTestUtil.buildSessionFactory(auditEnabled());
+
+    @AfterAll
+    public void finish() {
+        sessionFactory.close();
+    }
+
+    @Test
+    void auditsOnlyCommittedChanges() {
+        Integer id = saveCompany("Audited", true);
+        saveCompany("RolledBack", false);
+
+        assertThat(awaitAudit(Company.class, id, Audit.Operation.INSERT).getEntityContent()).isEqualToIgnoringWhitespace("{\"name\":\"Audited\"}");
+        assertThat(AuditWriter.of(sessionFactory).stats().written()).isPositive();
+    }
+
+    @Test
+    void auditsChangedPropertiesOnly() {
+        @Cleanup Session session = sessionFactory.openSession();
+        session.beginTransaction();
+        Chat chat = Chat.builder()
+                .name("Before")
+                .build();
+        session.save(chat);
+        session.getTransaction().commit();
+
+        session.beginTransaction();
+        chat.setName("After");
+        session.getTransaction().commit();
+
+        assertThat(awaitAudit(Chat.class, chat.getId(), Audit.Operation.UPDATE).getEntityContent())
+                .isEqualToIgnoringWhitespace("{\"name\":[\"Before\",\"After\"]}");
+    }
+
+    @Test
+    void migrationConvertsTextContentToJsonb() throws Exception {
+        String migration = new String(getClass().getClassLoader().getResourceAsStream(Audit.MIGRATION).readAllBytes(),
+                StandardCharsets.UTF_8);
+        @Cleanup Session session = sessionFactory.openSession();
+        session.beginTransaction();
+        session.doWork(connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("alter table audit alter column entity_content type varchar(255)");
+                statement.execute("insert into audit (entity_name, entity_content, operation) "
+                                  + "values ('LegacyEntity', 'Company(id=1, name=Legacy)', 'INSERT')");
+                for (String sql : migration.split(";")) {
+                    if (!sql.replaceAll("--.*", "").isBlank()) {
+                        statement.execute(sql);
+                    }
+                }
+            }
+        });
+        session.getTransaction().commit();
+
+        assertThat(session.createNativeQuery("select data_type from information_schema.columns "
+                                             + "where table_name = 'audit' and column_name = 'entity_content'")
+                .getSingleResult()).isEqualTo("jsonb");
+        assertThat(session.createQuery("select a from Audit a where a.entityName = 'LegacyEntity'", Audit.class)
+                .getSingleResult().getEntityContent()).isEqualTo("\"Company(id=1, name=Legacy)\"");
+    }
+
+    @Test
+    void compressesLargeSnapshots() {
+        EntityPersister persister = sessionFactory.unwrap(SessionFactoryImplementor.class)
+                .getMetamodel()
+                .entityPersister(Company.class);
+        AuditSnapshotEncoder encoder = new AuditSnapshotEncoder(64);
+        String name = "x".repeat(1_000);
+
+        Company company = Company.builder()
+                .name(name)
+                .build();
+        String content = encoder.encodeState(persister, persister.getPropertyValues(company));
+
+        assertThat(content).startsWith("{\"gzip\":").hasSizeLessThan(name.length());
+        assertThat(encoder.decode(content)).isEqualTo("{\"name\":\"" + name + "\"}");
+    }
+
+    @Test
+    void comparesSnapshotSizeInUtf8Bytes() {
+        EntityPersister persister = sessionFactory.unwrap(SessionFactoryImplementor.class)
+                .getMetamodel()
+                .entityPersister(Company.class);
+        AuditSnapshotEncoder encoder = new AuditSnapshotEncoder(64);
+        // {"name":"Я...Я"} - 51 символ, но 91 байт в UTF-8
+        String name = "Я".repeat(40);
+
+        String content = encoder.encodeState(persister, persister.getPropertyValues(Company.builder().name(name).build()));
+
+        assertThat(content).startsWith("{\"gzip\":");
+        assertThat(encoder.decode(content)).isEqualTo("{\"name\":\"" + name + "\"}");
+    }
+
+    @Test
+    void spillsWhenQueueIsFull(@TempDir Path spillDirectory) {
+        AuditWriter auditWriter = new AuditWriter(sessionFactory, AuditWriter.Settings.builder()
+                .queueCapacity(1)
+                .backpressure(BackpressurePolicy.SPILL)
+                .spillDirectory(spillDirectory.toString())
+                .build());
+
+        for (int i = 0; i < 200; i++) {
+            auditWriter.submit(audit("spill"));
+        }
+        auditWriter.close();
+
+        assertThat(auditWriter.stats().written()).isEqualTo(200);
+        assertThat(auditWriter.stats().dropped()).isZero();
+        assertThat(countAudits("spill")).isEqualTo(200);
+    }
+
+    @Test
+    void writesAuditsOneByOneWhenBatchFails(@TempDir Path spillDirectory) {
+        AuditWriter auditWriter = new AuditWriter(sessionFactory, AuditWriter.Settings.builder()
+                .spillDirectory(spillDirectory.toString())
+                .build());
+
+        for (int i = 0; i < 20; i++) {
+            auditWriter.submit(i == 10 ? unwritableAudit("one-by-one") : audit("one-by-one"));
+        }
+        auditWriter.close();
+
+        assertThat(auditWriter.stats().deadLettered()).isEqualTo(1);
+        assertThat(countAudits("one-by-one")).isEqualTo(19);
+        assertThat(spillDirectory.toFile().list()).anyMatch(name -> name.endsWith(".dead"));
+    }
+
+    @Test
+    void replaysSpilledAuditsOnceWhenOneFails(@TempDir Path spillDirectory) {
+        AuditWriter auditWriter = new AuditWriter(sessionFactory, AuditWriter.Settings.builder()
+                .queueCapacity(1)
+                .backpressure(BackpressurePolicy.SPILL)
+                .spillDirectory(spillDirectory.toString())
+                .build());
+
+        for (int i = 0; i < 200; i++) {
+            auditWriter.submit(i == 100 ? unwritableAudit("replay") : audit("replay"));
+        }
+        auditWriter.close();
+
+        assertThat(auditWriter.stats().written()).isEqualTo(199);
+        assertThat(auditWriter.stats().deadLettered()).isEqualTo(1);
+        assertThat(countAudits("replay")).isEqualTo(199);
+    }
+
+    @Test
+    void replaysAuditsSpilledByCrashedProcess(@TempDir Path spillDirectory) throws IOException {
+        // блокировку упавшего процесса снимает ОС, файлы остаются
+        AuditSpillFile crashed = AuditSpillFile.lock(spillDirectory);
+        for (int i = 0; i < 3; i++) {
+            crashed.append(audit("crashed"));
+        }
+        crashed.close();
+
+        AuditWriter auditWriter = new AuditWriter(sessionFactory, AuditWriter.Settings.builder()
+                .spillDirectory(spillDirectory.toString())
+                .build());
+        AuditWriter secondWriter = new AuditWriter(sessionFactory, AuditWriter.Settings.builder()
+                .spillDirectory(spillDirectory.toString())
+                .build());
+        secondWriter.close();
+        auditWriter.close();
+
+        assertThat(countAudits("crashed")).isEqualTo(3);
+        assertThat(spillDirectory.toFile().list()).containsExactlyInAnyOrder("audit.lock", "audit-1.lock");
+    }
+
+    @Test
+    void dropsWhenQueueIsFull() {
+        AuditWriter auditWriter = new AuditWriter(sessionFactory, AuditWriter.Settings.builder()
+                .queueCapacity(1)
+                .backpressure(BackpressurePolicy.DROP)
+                .build());
+
+        for (int i = 0; i < 200; i++) {
+            auditWriter.submit(audit("drop"));
+        }
+        auditWriter.close();
+
+        AuditWriter.Stats stats = auditWriter.stats();
+        assertThat(stats.written() + stats.dropped()).isEqualTo(200);
+        assertThat(countAudits("drop")).isEqualTo(stats.written());
+    }
+
+    private static Properties auditEnabled() {
+        Properties properties = new Properties();
+        properties.setProperty(AuditIntegrator.ENABLED, "true");
+        return properties;
+    }
+
+    private static Audit audit(String entityName) {
+        return Audit.builder()
+                .entityId(1L)
+                .entityName(entityName)
+                .operation(Audit.Operation.INSERT)
+                .build();
+    }
+
+    /**
+     * entityContent пишется в колонку jsonb, поэтому не-JSON не записывается ни в какой порции
+     */
+    private static Audit unwritableAudit(String entityName) {
+        return Audit.builder()
+                .entityId(1L)
+                .entityName(entityName)
+                .entityContent("not a json")
+                .operation(Audit.Operation.INSERT)
+                .build();
+    }
+
+    private Integer saveCompany(String name, boolean commit) {
+        @Cleanup Session session = sessionFactory.openSession();
+        session.beginTransaction();
+        Company company = Company.builder()
+                .name(name)
+                .build();
+        session.save(company);
+        session.flush();
+        if (commit) {
+            session.getTransaction().commit();
+        } else {
+            session.getTransaction().rollback();
+        }
+        return company.getId();
+    }
+
+    private Audit awaitAudit(Class<?> entityClass, Serializable entityId, Audit.Operation operation) {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (true) {
+            @Cleanup Session session = sessionFactory.openSession();
+            List<Audit> audits = session.createQuery(
+                            "select a from Audit a where a.entityName = :entityName and a.operation = :operation", Audit.class)
+                    .setParameter("entityName", entityClass.getName())
+                    .setParameter("operation", operation)
+                    .list();
+            Optional<Audit> audit = audits.stream()
+                    .filter(it -> entityId.equals(it.getEntityId()))
+                    .findFirst();
+            if (audit.isPresent()) {
+                return audit.get();
+            }
+            assertThat(System.currentTimeMillis()).as("audit of %s %s", entityClass.getSimpleName(), entityId).isLessThan(deadline);
+            Thread.onSpinWait();
+        }
+    }
+
+    private long countAudits(String entityName) {
+        @Cleanup Session session = sessionFactory.openSession();
+        return session.createQuery("select count(a) from Audit a where a.entityName = :entityName", Long.class)
+                .setParameter("entityName", entityName)
+                .getSingleResult();
+    }
+}
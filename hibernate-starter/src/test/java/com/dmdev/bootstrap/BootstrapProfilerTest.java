@@ -0,0 +1,111 @@
+package com.dmdev.bootstrap;
+
+import com.dmdev.bootstrap.BootstrapProfiler.Phase;
+import com.dmdev.metrics.HibernateMetrics;
+import com.dmdev.util.HibernateTestUtil;
+import lombok.Cleanup;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.tool.schema.spi.SchemaManagementException;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.TestInstance.Lifecycle.PER_CLASS;
+
+@TestInstance(PER_CLASS)
+class BootstrapProfilerTest {
+
+    private SessionFactory sessionFactory;
+
+    @BeforeAll
+    public void initDb() {
+        sessionFactory = HibernateTestUtil.buildSessionFactory();
+    }
+
+    @AfterAll
+    public void finish() {
+        sessionFactory.close();
+    }
+
+    @Test
+    void recordsBootstrapPhases() {
+        BootstrapProfiler profiler = BootstrapProfiler.of(sessionFactory);
+
+        Map<Phase, Duration> phases = profiler.phases();
+        assertThat(phases).containsKeys(Phase.SERVICE_REGISTRY, Phase.METADATA, Phase.SESSION_FACTORY, Phase.SCHEMA);
+        assertThat(phases.values().stream().reduce(Duration.ZERO, Duration::plus)).isEqualTo(profiler.total());
+        assertThat(profiler.schemaValidation()).isDone();
+
+        Map<String, Double> values = HibernateMetrics.of(sessionFactory).values();
+        assertThat(values.get("hibernate_bootstrap_phase_ms{phase=\"metadata\"}")).isPositive();
+        assertThat(values.get("hibernate_bootstrap_ms")).isPositive();
+    }
+
+    @Test
+    void validatesKnownSchemaInBackground(@TempDir Path snapshotDir) throws IOException {
+        @Cleanup SessionFactory schemaFactory = HibernateTestUtil.buildSessionFactory();
+        Properties properties = validateWithSnapshots(snapshotDir);
+
+        try (SessionFactory validated = HibernateTestUtil.buildSessionFactory(properties)) {
+            assertThat(BootstrapProfiler.of(validated).schemaValidation()).isCompleted();
+        }
+        assertThat(snapshots(snapshotDir)).hasSize(1);
+
+        try (SessionFactory known = HibernateTestUtil.buildSessionFactory(properties)) {
+            BootstrapProfiler.of(known).schemaValidation().join();
+        }
+        assertThat(snapshots(snapshotDir)).hasSize(1);
+    }
+
+    @Test
+    void reportsBackgroundValidationFailure(@TempDir Path snapshotDir) throws IOException {
+        @Cleanup SessionFactory schemaFactory = HibernateTestUtil.buildSessionFactory();
+        Properties properties = validateWithSnapshots(snapshotDir);
+        HibernateTestUtil.buildSessionFactory(properties).close();
+        try (Session session = schemaFactory.openSession()) {
+            session.beginTransaction();
+            session.doWork(connection -> {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("alter table chat drop column name");
+                }
+            });
+            session.getTransaction().commit();
+        }
+
+        try (SessionFactory broken = HibernateTestUtil.buildSessionFactory(properties)) {
+            assertThatThrownBy(() -> BootstrapProfiler.of(broken).schemaValidation().join())
+                    .isInstanceOf(CompletionException.class)
+                    .hasCauseInstanceOf(SchemaManagementException.class);
+        }
+        assertThat(snapshots(snapshotDir)).isEmpty();
+    }
+
+    private static Properties validateWithSnapshots(Path snapshotDir) {
+        Properties properties = new Properties();
+        properties.setProperty("hibernate.hbm2ddl.auto", "validate");
+        properties.setProperty(ProfilingSchemaManagementTool.SNAPSHOT_DIR_PROPERTY, snapshotDir.toString());
+        return properties;
+    }
+
+    private static List<Path> snapshots(Path snapshotDir) throws IOException {
+        try (Stream<Path> files = Files.list(snapshotDir)) {
+            return files.toList();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.dmdev.cache;
+
+import com.dmdev.entity.Role;
+import com.dmdev.entity.User;
+import com.dmdev.util.HibernateTestUtil;
+import lombok.Cleanup;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cache.CacheException;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cache.jcache.internal.JCacheRegionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.junit.jupiter.api.Test;
+
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CacheRegionsTest {
+
+    @Test
+    void statsPerRegion() {
+        @Cleanup SessionFactory sessionFactory = HibernateTestUtil.buildSessionFactory(secondLevelCache());
+        Long userId = saveUser(sessionFactory);
+
+        for (int i = 0; i < 2; i++) {
+            @Cleanup Session session = sessionFactory.openSession();
+            session.find(User.class, userId);
+        }
+
+        assertThat(CacheRegions.stats(sessionFactory))
+                .filteredOn(stats -> CacheRegions.USERS.equals(stats.region()))
+                .singleElement()
+                .satisfies(stats -> {
+                    assertThat(stats.hits()).isPositive();
+                    assertThat(stats.puts()).isPositive();
+                });
+        assertThat(CacheRegions.stats(sessionFactory))
+                .extracting(CacheRegions.RegionStats::region)
+                .contains(CacheRegions.COMPANIES, CacheRegions.PAYMENTS, CacheRegions.USER_CHATS, CacheRegions.USER_CHATS_OF_USER);
+    }
+
+    @Test
+    void failsOnRegionWithoutPolicy() {
+        Properties properties = secondLevelCache();
+        properties.setProperty(ConfigSettings.CONFIG_URI, "ehcache-users-only.xml");
+        properties.setProperty(AvailableSettings.USE_QUERY_CACHE, "false");
+
+        assertThatThrownBy(() -> HibernateTestUtil.buildSessionFactory(properties))
+                .isInstanceOf(CacheException.class)
+                .hasMessageContaining(CacheRegions.COMPANIES)
+                .hasMessageContaining(CacheRegions.PAYMENTS);
+    }
+
+    private static Properties secondLevelCache() {
+        Properties properties = new Properties();
+        properties.setProperty(AvailableSettings.USE_SECOND_LEVEL_CACHE, "true");
+        properties.setProperty(AvailableSettings.USE_QUERY_CACHE, "true");
+        properties.setProperty(AvailableSettings.CACHE_REGION_FACTORY, JCacheRegionFactory.class.getName());
+        return properties;
+    }
+
+    private static Long saveUser(SessionFactory sessionFactory) {
+        @Cleanup Session session = sessionFactory.openSession();
+        User user = User.builder()
+                .username("cached")
+                .role(Role.USER)
+                .build();
+        session.beginTransaction();
+        session.save(user);
+        session.getTransaction().commit();
+        return user.getId();
+    }
+}
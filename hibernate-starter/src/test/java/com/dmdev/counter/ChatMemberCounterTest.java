@@ -0,0 +1,115 @@
+package com.dmdev.counter;
+
+import com.dmdev.entity.Chat;
+import com.dmdev.entity.User;
+import com.dmdev.entity.UserChat;
+import com.dmdev.util.HibernateTestUtil;
+import com.dmdev.util.TestDataImporter;
+import lombok.Cleanup;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.TestInstance.Lifecycle.PER_CLASS;
+
+@TestInstance(PER_CLASS)
+class ChatMemberCounterTest {
+
+    private final SessionFactory sessionFactory = HibernateTestUtil.buildSessionFactory();
+
+    @BeforeAll
+    public void initDb() {
+        TestDataImporter.importData(sessionFactory);
+    }
+
+    @AfterAll
+    public void finish() {
+        sessionFactory.close();
+    }
+
+    @Test
+    void concurrentJoins() throws Exception {
+        Long chatId = saveChat("concurrent");
+        List<Long> userIds = userIds();
+        int threads = 4;
+        int joinsPerThread = 25;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            futures.add(executor.submit(() -> {
+                for (int j = 0; j < joinsPerThread; j++) {
+                    join(userIds.get(j % userIds.size()), chatId, true);
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        ChatMemberCounter counter = ChatMemberCounter.of(sessionFactory);
+        assertThat(counter.count(chatId)).isEqualTo(threads * joinsPerThread);
+
+        counter.flush();
+        assertThat(counter.count(chatId)).isEqualTo(threads * joinsPerThread);
+        assertThat(counter.pendingChats()).isZero();
+        @Cleanup Session session = sessionFactory.openSession();
+        assertThat(session.get(Chat.class, chatId).getCount()).isEqualTo(threads * joinsPerThread);
+    }
+
+    @Test
+    void rolledBackJoinIsNotCounted() {
+        Long chatId = saveChat("rollback");
+        Long userId = userIds().get(0);
+
+        join(userId, chatId, false);
+        join(userId, chatId, true);
+
+        assertThat(ChatMemberCounter.of(sessionFactory).count(chatId)).isEqualTo(1);
+    }
+
+    private void join(Long userId, Long chatId, boolean commit) {
+        @Cleanup Session session = sessionFactory.openSession();
+        session.beginTransaction();
+        UserChat userChat = UserChat.builder()
+                .user(session.load(User.class, userId))
+                .chat(session.load(Chat.class, chatId))
+                .build();
+        userChat.setCreatedAt(Instant.now());
+        session.save(userChat);
+        session.flush();
+        if (commit) {
+            session.getTransaction().commit();
+        } else {
+            session.getTransaction().rollback();
+        }
+    }
+
+    private Long saveChat(String name) {
+        @Cleanup Session session = sessionFactory.openSession();
+        session.beginTransaction();
+        Chat chat = Chat.builder()
+                .name(name)
+                .build();
+        session.save(chat);
+        session.getTransaction().commit();
+        return chat.getId();
+    }
+
+    private List<Long> userIds() {
+        @Cleanup Session session = sessionFactory.openSession();
+        return session.createQuery("select u.id from User u", Long.class).list();
+    }
+}
@@ -2,26 +2,43 @@ package com.dmdev.dao;
 
 import com.dmdev.dto.CompanyDto;
 import com.dmdev.dto.PaymentFilter;
+import com.dmdev.dto.Slice;
+import com.dmdev.dto.UserAveragePaymentDto;
+import com.dmdev.dto.UserReadDto;
 import com.dmdev.entity.Payment;
 import com.dmdev.entity.User;
+import com.dmdev.mapper.CompanyReadMapper;
+import com.dmdev.mapper.UserReadMapper;
+import com.dmdev.statement.StatementBudget;
+import com.dmdev.statement.StatementBudgetExtension;
+import com.dmdev.statement.StatementLog;
 import com.dmdev.util.HibernateTestUtil;
 import com.dmdev.util.TestDataImporter;
 import com.querydsl.core.Tuple;
 import lombok.Cleanup;
+import org.hibernate.Hibernate;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.extension.ExtendWith;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 
+import static java.util.Comparator.comparing;
+import static java.util.Comparator.naturalOrder;
+import static java.util.Comparator.nullsLast;
 import static java.util.stream.Collectors.toList;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.junit.jupiter.api.TestInstance.Lifecycle.PER_CLASS;
 
 @TestInstance(PER_CLASS)
+@ExtendWith(StatementBudgetExtension.class)
 class UserDaoTest {
 
     private final SessionFactory sessionFactory = HibernateTestUtil.buildSessionFactory();
@@ -38,6 +55,7 @@ class UserDaoTest {
     }
 
     @Test
+    @StatementBudget(1)
     void findAll() {
         @Cleanup Session session = sessionFactory.openSession();
         session.beginTransaction();
@@ -52,6 +70,7 @@ class UserDaoTest {
     }
 
     @Test
+    @StatementBudget(1)
     void findAllByFirstName() {
         @Cleanup Session session = sessionFactory.openSession();
         session.beginTransaction();
@@ -80,6 +99,48 @@ class UserDaoTest {
     }
 
     @Test
+    void findUsersOrderedByBirthday() {
+        @Cleanup Session session = sessionFactory.openSession();
+        session.beginTransaction();
+
+        Slice<User> first = userDao.findUsersOrderedByBirthday(session, null, 2);
+        assertThat(first.content()).extracting(User::fullName).containsExactly("Diane Greene", "Steve Jobs");
+        assertThat(first.hasNext()).isTrue();
+
+        Slice<User> second = userDao.findUsersOrderedByBirthday(session, first.nextToken(), 2);
+        assertThat(second.content()).extracting(User::fullName).containsExactly("Bill Gates", "Tim Cook");
+
+        Slice<User> last = userDao.findUsersOrderedByBirthday(session, second.nextToken(), 2);
+        assertThat(last.content()).extracting(User::fullName).containsExactly("Sergey Brin");
+        assertThat(last.hasNext()).isFalse();
+
+        session.getTransaction().commit();
+    }
+
+    @Test
+    void findUserReadDtoById(StatementLog statementLog) {
+        @Cleanup Session session = sessionFactory.openSession();
+        session.beginTransaction();
+
+        User bill = userDao.findAllByFirstName(session, "Bill").get(0);
+        Hibernate.initialize(bill.getCompany().getLocales());
+        UserReadDto expected = new UserReadMapper(new CompanyReadMapper()).mapFrom(bill);
+        session.clear();
+        int setupStatements = statementLog.count();
+
+        Optional<UserReadDto> result = userDao.findUserReadDtoById(session, bill.getId());
+
+        // проекция сотрудника с компанией и локали компании
+        assertThat(statementLog.count() - setupStatements).isEqualTo(2);
+        assertThat(result).contains(expected);
+        assertThat(session.getStatistics().getEntityCount()).isZero();
+        assertThat(userDao.findUserReadDtoById(session, -1L)).isEmpty();
+
+        session.getTransaction().commit();
+    }
+
+    @Test
+    @StatementBudget(1)
     void findAllByCompanyName() {
         @Cleanup Session session = sessionFactory.openSession();
         session.beginTransaction();
@@ -94,6 +155,7 @@ class UserDaoTest {
     }
 
     @Test
+    @StatementBudget(1)
     void findAllPaymentsByCompanyName() {
         @Cleanup Session session = sessionFactory.openSession();
         session.beginTransaction();
@@ -107,6 +169,38 @@ class UserDaoTest {
         session.getTransaction().commit();
     }
 
+    @Test
+    void findPaymentsByCompanyName() {
+        @Cleanup Session session = sessionFactory.openSession();
+        session.beginTransaction();
+
+        List<Long> expected = userDao.findAllPaymentsByCompanyName(session, "Apple").stream()
+                .sorted(comparing((Payment it) -> it.getReceiver().getPersonalInfo().getFirstname(), nullsLast(naturalOrder()))
+                        .thenComparing(it -> it.getReceiver().getId())
+                        .thenComparing(Payment::getAmount)
+                        .thenComparing(Payment::getId))
+                .map(Payment::getId)
+                .collect(toList());
+
+        for (int size = 1; size <= 3; size++) {
+            List<Long> ids = new ArrayList<>();
+            String token = null;
+            do {
+                Slice<Payment> slice = userDao.findPaymentsByCompanyName(session, "Apple", token, size);
+                assertThat(slice.content()).hasSizeLessThanOrEqualTo(size);
+                slice.content().stream().map(Payment::getId).forEach(ids::add);
+                token = slice.nextToken();
+            } while (token != null);
+            assertThat(ids).containsExactlyElementsOf(expected);
+        }
+
+        assertThatThrownBy(() -> userDao.findPaymentsByCompanyName(session, "Apple", KeysetToken.encode("Bill", "x", 1, 1), 2))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageStartingWith("Malformed continuation token");
+
+        session.getTransaction().commit();
+    }
+
     @Test
     void findAveragePaymentAmountByFirstAndLastNames() {
         @Cleanup Session session = sessionFactory.openSession();
@@ -141,6 +235,7 @@ class UserDaoTest {
     }
 
     @Test
+    @StatementBudget(1)
     void isItPossible() {
         @Cleanup Session session = sessionFactory.openSession();
         session.beginTransaction();
@@ -156,4 +251,19 @@ class UserDaoTest {
 
         session.getTransaction().commit();
     }
+
+    @Test
+    @StatementBudget(1)
+    void findUsersWithAboveAveragePayment() {
+        @Cleanup Session session = sessionFactory.openSession();
+        session.beginTransaction();
+
+        List<UserAveragePaymentDto> results = userDao.findUsersWithAboveAveragePayment(session);
+        assertThat(results).extracting(UserAveragePaymentDto::username)
+                .containsExactly("SergeyBrin", "SteveJobs");
+        assertThat(results).extracting(UserAveragePaymentDto::averageAmount)
+                .containsExactly(500.0, 450.0);
+
+        session.getTransaction().commit();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,160 @@
+package com.dmdev.dao;
+
+import com.dmdev.dto.Slice;
+import com.dmdev.entity.User;
+import com.dmdev.util.HibernateTestUtil;
+import com.dmdev.util.TestDataImporter;
+import lombok.Cleanup;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Stream;
+
+import static com.dmdev.entity.QUser.user;
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.TestInstance.Lifecycle.PER_CLASS;
+
+@TestInstance(PER_CLASS)
+class UserRepositoryTest {
+
+    private SessionFactory sessionFactory;
+
+    @BeforeAll
+    public void initDb() {
+        Properties properties = new Properties();
+        properties.setProperty("hibernate.generate_statistics", "true");
+        sessionFactory = HibernateTestUtil.buildSessionFactory(properties);
+        TestDataImporter.importData(sessionFactory);
+    }
+
+    @AfterAll
+    public void finish() {
+        sessionFactory.close();
+    }
+
+    @Test
+    void streamAll() {
+        @Cleanup Session session = sessionFactory.openSession();
+        session.beginTransaction();
+        UserRepository userRepository = new UserRepository(session);
+
+        List<String> fullNames;
+        try (Stream<User> users = userRepository.streamAll(2)) {
+            fullNames = users.map(User::fullName).collect(toList());
+        }
+
+        assertThat(fullNames).containsExactlyInAnyOrder("Bill Gates", "Steve Jobs", "Sergey Brin", "Tim Cook", "Diane Greene");
+        assertThat(session.getStatistics().getEntityCount()).isZero();
+
+        session.getTransaction().commit();
+    }
+
+    @Test
+    void streamAllKeepsCallerEntitiesManaged() {
+        @Cleanup Session session = sessionFactory.openSession();
+        session.beginTransaction();
+        UserRepository userRepository = new UserRepository(session);
+        User timCook = session.createQuery("select u from User u where u.username = 'TimCook'", User.class)
+                .getSingleResult();
+        long managed = session.getStatistics().getEntityCount();
+
+        // Tim Cook и ссылка на Apple (общая со Steve Jobs) были в сессии до чтения своих строк
+        try (Stream<User> users = userRepository.streamAll(2)) {
+            assertThat(users.map(User::fullName).collect(toList())).hasSize(5);
+        }
+
+        assertThat(session.getStatistics().getEntityCount()).isEqualTo(managed);
+        assertThat(session.contains(timCook)).isTrue();
+        assertThat(timCook.getCompany().getName()).isEqualTo("Apple");
+
+        session.getTransaction().commit();
+    }
+
+    @Test
+    void streamAllByPredicate() {
+        @Cleanup Session session = sessionFactory.openSession();
+        session.beginTransaction();
+        UserRepository userRepository = new UserRepository(session);
+
+        List<String> fullNames;
+        try (Stream<User> users = userRepository.streamAll(user.personalInfo.firstname.eq("Bill"), 2)) {
+            fullNames = users.map(User::fullName).collect(toList());
+        }
+
+        assertThat(fullNames).containsExactly("Bill Gates");
+
+        session.getTransaction().commit();
+    }
+
+    @Test
+    void findSlice() {
+        @Cleanup Session session = sessionFactory.openSession();
+        session.beginTransaction();
+        UserRepository userRepository = new UserRepository(session);
+
+        List<Long> ids = new ArrayList<>();
+        String token = null;
+        do {
+            Slice<User> slice = userRepository.findSlice(token, 2);
+            slice.content().stream().map(User::getId).forEach(ids::add);
+            token = slice.nextToken();
+        } while (token != null);
+
+        assertThat(ids).hasSize(5).isSorted().doesNotHaveDuplicates();
+
+        session.getTransaction().commit();
+    }
+
+    @Test
+    void findAllById() {
+        @Cleanup Session session = sessionFactory.openSession();
+        session.beginTransaction();
+        UserRepository userRepository = new UserRepository(session);
+
+        List<Long> ids = userRepository.findAll().stream().map(User::getId).sorted().collect(toList());
+        session.clear();
+        User cached = session.get(User.class, ids.get(0));
+
+        List<Long> requested = List.of(ids.get(3), -1L, ids.get(0), ids.get(2));
+        List<User> results = userRepository.findAllById(requested);
+
+        assertThat(results).extracting(User::getId).containsExactly(ids.get(3), ids.get(0), ids.get(2));
+        assertThat(results.get(1)).isSameAs(cached);
+
+        session.getTransaction().commit();
+    }
+
+    @Test
+    void findAllByIdReadsSecondLevelCache() {
+        List<Long> ids;
+        try (Session session = sessionFactory.openSession()) {
+            ids = session.createQuery("select u.id from User u order by u.id", Long.class).list();
+        }
+        sessionFactory.getCache().evictEntityData(User.class);
+        try (Session session = sessionFactory.openSession()) {
+            session.get(User.class, ids.get(1));
+        }
+        assertThat(sessionFactory.getCache().contains(User.class, ids.get(1))).isTrue();
+
+        Statistics statistics = sessionFactory.getStatistics();
+        statistics.clear();
+        @Cleanup Session session = sessionFactory.openSession();
+        session.beginTransaction();
+        List<User> results = new UserRepository(session).findAllById(List.of(ids.get(0), ids.get(1)));
+
+        assertThat(results).extracting(User::getId).containsExactly(ids.get(0), ids.get(1));
+        assertThat(statistics.getSecondLevelCacheHitCount()).isEqualTo(1);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+
+        session.getTransaction().commit();
+    }
+}
@@ -0,0 +1,190 @@
+package com.dmdev.history;
+
+import com.dmdev.dto.EntityChange;
+import com.dmdev.dto.Slice;
+import com.dmdev.entity.Role;
+import com.dmdev.entity.User;
+import com.dmdev.util.HibernateTestUtil;
+import lombok.Cleanup;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.envers.AuditReaderFactory;
+import org.hibernate.envers.RevisionType;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import javax.persistence.Tuple;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.TestInstance.Lifecycle.PER_CLASS;
+
+@TestInstance(PER_CLASS)
+class HistoryServiceTest {
+
+    private final SessionFactory sessionFactory = HibernateTestUtil.buildSessionFactory();
+    private final SnapshotCache snapshotCache = new SnapshotCache();
+
+    @AfterAll
+    public void finish() {
+        sessionFactory.close();
+    }
+
+    @Test
+    void findAsOfRevisionAndInstant() throws InterruptedException {
+        Long userId = saveUserWithHistory("asOf");
+        @Cleanup Session session = sessionFactory.openSession();
+        List<Number> revisions = AuditReaderFactory.get(session).getRevisions(User.class, userId);
+        HistoryService historyService = new HistoryService(session, snapshotCache);
+
+        Optional<User> created = historyService.findAsOf(User.class, userId, revisions.get(0));
+        assertThat(created).map(User::getRole).contains(Role.USER);
+        User cached = historyService.findAsOf(User.class, userId, revisions.get(0)).orElseThrow();
+        assertThat(cached).isNotSameAs(created.get());
+        cached.setRole(Role.ADMIN);
+        assertThat(historyService.findAsOf(User.class, userId, revisions.get(0))).map(User::getRole).contains(Role.USER);
+
+        Instant afterUpdate = Instant.ofEpochMilli(AuditReaderFactory.get(session).getRevisionDate(revisions.get(1)).getTime());
+        assertThat(historyService.findAsOf(User.class, userId, afterUpdate)).map(User::getRole).contains(Role.ADMIN);
+        assertThat(historyService.findAsOf(User.class, userId, revisions.get(2))).isEmpty();
+        assertThat(historyService.findAsOf(User.class, userId, Instant.EPOCH)).isEmpty();
+    }
+
+    @Test
+    void cachedSnapshotOutlivesItsSession() throws InterruptedException {
+        Long userId = saveUserWithHistory("detached");
+        Number revision;
+        try (Session session = sessionFactory.openSession()) {
+            revision = AuditReaderFactory.get(session).getRevisions(User.class, userId).get(0);
+            new HistoryService(session, snapshotCache).findAsOf(User.class, userId, revision);
+        }
+
+        @Cleanup Session session = sessionFactory.openSession();
+        User user = new HistoryService(session, snapshotCache).findAsOf(User.class, userId, revision).orElseThrow();
+        assertThat(user.getUsername()).isEqualTo("detached");
+        assertThat(user.getCompany()).isNull();
+    }
+
+    @Test
+    void findChangesByKeyset() throws InterruptedException {
+        Long userId = saveUserWithHistory("changes");
+        @Cleanup Session session = sessionFactory.openSession();
+        HistoryService historyService = new HistoryService(session, snapshotCache);
+
+        Slice<EntityChange<User>> first = historyService.findChanges(User.class, userId, null, 2);
+        assertThat(first.content()).extracting(EntityChange::type).containsExactly(RevisionType.DEL, RevisionType.MOD);
+        assertThat(first.content().get(1).entity().getRole()).isEqualTo(Role.ADMIN);
+        assertThat(first.hasNext()).isTrue();
+
+        Slice<EntityChange<User>> second = historyService.findChanges(User.class, userId, first.nextToken(), 2);
+        assertThat(second.content()).extracting(EntityChange::type).containsExactly(RevisionType.ADD);
+        assertThat(second.content().get(0).username()).isEqualTo("dmdev");
+        assertThat(second.hasNext()).isFalse();
+    }
+
+    @Test
+    void auditsInfoNotLoadedBeforeUpdate() {
+        Long userId;
+        try (Session session = sessionFactory.openSession()) {
+            User user = User.builder()
+                    .username("lazyInfo")
+                    .info("{\"about\": \"lazy\"}")
+                    .role(Role.USER)
+                    .build();
+            session.beginTransaction();
+            session.save(user);
+            session.getTransaction().commit();
+            userId = user.getId();
+        }
+
+        try (Session session = sessionFactory.openSession()) {
+            session.beginTransaction();
+            session.get(User.class, userId).setRole(Role.ADMIN);
+            session.getTransaction().commit();
+        }
+
+        @Cleanup Session session = sessionFactory.openSession();
+        List<Number> revisions = AuditReaderFactory.get(session).getRevisions(User.class, userId);
+        User updated = AuditReaderFactory.get(session).find(User.class, userId, revisions.get(1));
+        assertThat(updated.getRole()).isEqualTo(Role.ADMIN);
+        assertThat(updated.getInfo()).isEqualToIgnoringWhitespace("{\"about\": \"lazy\"}");
+    }
+
+    @Test
+    void migrationRestoresValidityColumns() throws Exception {
+        Long userId = saveUserWithHistory("migration");
+        List<List<Object>> expected = validity(userId);
+        assertThat(expected).hasSize(3);
+
+        @Cleanup Session session = sessionFactory.openSession();
+        session.beginTransaction();
+        session.doWork(connection -> {
+            try (Statement statement = connection.createStatement()) {
+                for (String table : List.of("users_aud", "company_aud", "payment_aud", "company_locale_aud")) {
+                    statement.execute("alter table " + table + " drop column revend cascade, drop column revend_tstmp");
+                }
+            }
+        });
+        String migration = new String(getClass().getClassLoader().getResourceAsStream(ValidityAudit.MIGRATION).readAllBytes(),
+                StandardCharsets.UTF_8);
+        session.doWork(connection -> {
+            try (Statement statement = connection.createStatement()) {
+                for (String sql : migration.split(";")) {
+                    if (!sql.replaceAll("--.*", "").isBlank()) {
+                        statement.execute(sql);
+                    }
+                }
+            }
+        });
+        session.getTransaction().commit();
+
+        assertThat(validity(userId)).isEqualTo(expected);
+    }
+
+    /**
+     * rev, revend и revend_tstmp истории пользователя
+     */
+    private List<List<Object>> validity(Long userId) {
+        @Cleanup Session session = sessionFactory.openSession();
+        List<Tuple> rows = session.createNativeQuery(
+                        "select rev, revend, revend_tstmp from users_aud where id = :id order by rev", Tuple.class)
+                .setParameter("id", userId)
+                .list();
+        return rows.stream()
+                .map(row -> Arrays.asList(row.toArray()))
+                .toList();
+    }
+
+    /**
+     * Создание, обновление и удаление пользователя в трёх ревизиях
+     */
+    private Long saveUserWithHistory(String username) throws InterruptedException {
+        @Cleanup Session session = sessionFactory.openSession();
+        User user = User.builder()
+                .username(username)
+                .role(Role.USER)
+                .build();
+        session.beginTransaction();
+        session.save(user);
+        session.getTransaction().commit();
+
+        // ревизии с разными отметками времени
+        Thread.sleep(5);
+        session.beginTransaction();
+        user.setRole(Role.ADMIN);
+        session.getTransaction().commit();
+
+        Thread.sleep(5);
+        session.beginTransaction();
+        session.delete(user);
+        session.getTransaction().commit();
+        return user.getId();
+    }
+}
@@ -0,0 +1,220 @@
+package com.dmdev.interceptor;
+
+import com.dmdev.entity.Company;
+import com.dmdev.session.TaskSessionContext;
+import com.dmdev.util.HibernateTestUtil;
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.TransactionException;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import javax.transaction.Transactional;
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.TestInstance.Lifecycle.PER_CLASS;
+
+@TestInstance(PER_CLASS)
+class TransactionInterceptorTest {
+
+    private SessionFactory sessionFactory;
+    private CompanyService companyService;
+
+    @BeforeAll
+    public void initDb() {
+        sessionFactory = HibernateTestUtil.buildSessionFactory();
+        companyService = new TransactionalProxyFactory(sessionFactory).create(CompanyService.class, sessionFactory);
+    }
+
+    @AfterAll
+    public void finish() {
+        sessionFactory.close();
+    }
+
+    @Test
+    void requiredCommitsOrRollsBackByRules() {
+        companyService.save("Committed");
+        assertThatThrownBy(() -> companyService.saveAndFail("RolledBack", new IllegalStateException()))
+                .isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> companyService.saveAndFail("CommittedOnChecked", new IOException()))
+                .isInstanceOf(IOException.class);
+        assertThatThrownBy(() -> companyService.saveAndFailRollingBackOnChecked("RolledBackOnChecked", new IOException()))
+                .isInstanceOf(IOException.class);
+
+        assertThat(exists("Committed")).isTrue();
+        assertThat(exists("RolledBack")).isFalse();
+        assertThat(exists("CommittedOnChecked")).isTrue();
+        assertThat(exists("RolledBackOnChecked")).isFalse();
+    }
+
+    @Test
+    void requiresNewSurvivesOuterRollback() throws Exception {
+        TaskSessionContext.call(sessionFactory, () -> {
+            assertThatThrownBy(() -> companyService.saveWithNestedAndFail("Outer", "Nested"))
+                    .isInstanceOf(IllegalStateException.class);
+            return null;
+        });
+
+        assertThat(exists("Outer")).isFalse();
+        assertThat(exists("Nested")).isTrue();
+    }
+
+    @Test
+    void supportsAndMandatoryDoNotStartTransaction() throws Exception {
+        TaskSessionContext.call(sessionFactory, () -> {
+            assertThat(companyService.isTransactionActive()).isFalse();
+            assertThatThrownBy(companyService::mandatory).isInstanceOf(TransactionException.class);
+            return null;
+        });
+    }
+
+    @Test
+    void readOnlyCallDoesNotLeakIntoTaskSession() throws Exception {
+        TaskSessionContext.call(sessionFactory, () -> {
+            assertThat(companyService.count("AfterReadOnly")).isZero();
+            companyService.save("AfterReadOnly");
+
+            Session session = sessionFactory.getCurrentSession();
+            assertThat(session.isDefaultReadOnly()).isFalse();
+            assertThat(session.getHibernateFlushMode()).isEqualTo(FlushMode.AUTO);
+            return null;
+        });
+
+        assertThat(exists("AfterReadOnly")).isTrue();
+    }
+
+    @Test
+    void readOnlyTransactionNeitherFlushesNorWrites() {
+        companyService.save("ReadOnly");
+
+        // setDefaultReadOnly: загруженные сущности не проверяются на изменения
+        assertThat(companyService.renameLoaded("ReadOnly", "RenamedReadOnly", false)).isTrue();
+        // FlushMode.MANUAL: изменения сущности, снятой с read-only, не уходят в базу при коммите
+        assertThat(companyService.renameLoaded("ReadOnly", "RenamedWritable", true)).isFalse();
+        // SET TRANSACTION READ ONLY: база отклоняет запись мимо сессии
+        assertThat(companyService.transactionReadOnly()).isEqualTo("on");
+        assertThatThrownBy(() -> companyService.insertBypassingSession("Rejected"))
+                .hasStackTraceContaining("read-only transaction");
+
+        assertThat(exists("ReadOnly")).isTrue();
+        assertThat(exists("RenamedReadOnly")).isFalse();
+        assertThat(exists("RenamedWritable")).isFalse();
+        assertThat(exists("Rejected")).isFalse();
+    }
+
+    @Test
+    void resolvesAttributesOncePerMethod() throws NoSuchMethodException {
+        TransactionAttributeRegistry registry = new TransactionAttributeRegistry();
+
+        TransactionAttribute attribute = registry.get(CompanyService.class.getMethod("saveInNewTransaction", String.class)).orElseThrow();
+
+        assertThat(attribute.propagation()).isEqualTo(Transactional.TxType.REQUIRES_NEW);
+        assertThat(attribute.timeoutSeconds()).isEqualTo(5);
+        assertThat(registry.get(CompanyService.class.getMethod("saveInNewTransaction", String.class))).containsSame(attribute);
+        assertThat(registry.get(CompanyService.class.getMethod("toString"))).isEmpty();
+    }
+
+    private boolean exists(String name) {
+        try (Session session = sessionFactory.openSession()) {
+            return session.createQuery("select count(c) from Company c where c.name = :name", Long.class)
+                           .setParameter("name", name)
+                           .getSingleResult() > 0;
+        }
+    }
+
+    public static class CompanyService {
+
+        private final SessionFactory sessionFactory;
+
+        public CompanyService(SessionFactory sessionFactory) {
+            this.sessionFactory = sessionFactory;
+        }
+
+        @Transactional
+        public void save(String name) {
+            sessionFactory.getCurrentSession().persist(Company.builder().name(name).build());
+        }
+
+        @Transactional
+        public void saveAndFail(String name, Exception exception) throws Exception {
+            save(name);
+            throw exception;
+        }
+
+        @Transactional(rollbackOn = IOException.class)
+        public void saveAndFailRollingBackOnChecked(String name, Exception exception) throws Exception {
+            save(name);
+            throw exception;
+        }
+
+        @Transactional(Transactional.TxType.REQUIRES_NEW)
+        @TransactionTimeout(5)
+        public void saveInNewTransaction(String name) {
+            save(name);
+        }
+
+        @Transactional
+        public void saveWithNestedAndFail(String name, String nestedName) {
+            save(name);
+            saveInNewTransaction(nestedName);
+            throw new IllegalStateException();
+        }
+
+        @Transactional
+        @ReadOnly
+        public long count(String name) {
+            return sessionFactory.getCurrentSession()
+                    .createQuery("select count(c) from Company c where c.name = :name", Long.class)
+                    .setParameter("name", name)
+                    .getSingleResult();
+        }
+
+        /**
+         * @return осталась ли переименованная сущность read-only
+         */
+        @Transactional
+        @ReadOnly
+        public boolean renameLoaded(String name, String newName, boolean writable) {
+            Session session = sessionFactory.getCurrentSession();
+            Company company = session.createQuery("select c from Company c where c.name = :name", Company.class)
+                    .setParameter("name", name)
+                    .getSingleResult();
+            if (writable) {
+                session.setReadOnly(company, false);
+            }
+            company.setName(newName);
+            return session.isReadOnly(company);
+        }
+
+        @Transactional
+        @ReadOnly
+        public Object transactionReadOnly() {
+            return sessionFactory.getCurrentSession()
+                    .createNativeQuery("show transaction_read_only")
+                    .getSingleResult();
+        }
+
+        @Transactional
+        @ReadOnly
+        public void insertBypassingSession(String name) {
+            sessionFactory.getCurrentSession()
+                    .createNativeQuery("insert into company (name) values (:name)")
+                    .setParameter("name", name)
+                    .executeUpdate();
+        }
+
+        @Transactional(Transactional.TxType.SUPPORTS)
+        public boolean isTransactionActive() {
+            return sessionFactory.getCurrentSession().getTransaction().isActive();
+        }
+
+        @Transactional(Transactional.TxType.MANDATORY)
+        public void mandatory() {
+        }
+    }
+}
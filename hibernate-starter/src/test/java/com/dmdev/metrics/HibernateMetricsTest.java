@@ -0,0 +1,100 @@
+package com.dmdev.metrics;
+
+import com.dmdev.dao.UserDao;
+import com.dmdev.util.HibernateTestUtil;
+import com.dmdev.util.TestDataImporter;
+import lombok.Cleanup;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import javax.management.MBeanServer;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.TestInstance.Lifecycle.PER_CLASS;
+
+@TestInstance(PER_CLASS)
+class HibernateMetricsTest {
+
+    private SessionFactory sessionFactory;
+
+    @BeforeAll
+    public void initDb() {
+        Properties properties = new Properties();
+        properties.setProperty("hibernate.generate_statistics", "true");
+        properties.setProperty(HibernateMetrics.HTTP_PORT_PROPERTY, "0");
+        sessionFactory = HibernateTestUtil.buildSessionFactory(properties);
+        TestDataImporter.importData(sessionFactory);
+    }
+
+    @AfterAll
+    public void finish() {
+        sessionFactory.close();
+    }
+
+    @Test
+    void queriesAndTransactionsAreMeasured() {
+        HibernateMetrics metrics = HibernateMetrics.of(sessionFactory);
+        long committed = count(metrics, "hibernate_transaction_duration_ms_count{outcome=\"commit\"}");
+        long rolledBack = count(metrics, "hibernate_transaction_duration_ms_count{outcome=\"rollback\"}");
+
+        findAll(true);
+        findAll(true);
+        findAll(false);
+
+        Map<String, Double> values = metrics.values();
+        String findAllQuery = values.keySet().stream()
+                .filter(name -> name.startsWith("hibernate_query_execution_ms_count{") && name.contains("from User user"))
+                .findFirst()
+                .orElseThrow();
+        assertThat(values.get(findAllQuery)).isGreaterThanOrEqualTo(3);
+        assertThat(count(metrics, "hibernate_transaction_duration_ms_count{outcome=\"commit\"}")).isEqualTo(committed + 2);
+        assertThat(count(metrics, "hibernate_transaction_duration_ms_count{outcome=\"rollback\"}")).isEqualTo(rolledBack + 1);
+        assertThat(values).containsKeys("hibernate_flushes_total", "hibernate_connections_total",
+                "hibernate_entity_loads_total{entity=\"com.dmdev.entity.User\"}",
+                "hibernate_query_cache_hit_ratio");
+    }
+
+    @Test
+    void exposedOverJmxAndHttp() throws Exception {
+        findAll(true);
+        HibernateMetrics metrics = HibernateMetrics.of(sessionFactory);
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        assertThat((Double) server.getAttribute(metrics.getObjectName(), "hibernate_transactions_total")).isPositive();
+
+        InetSocketAddress address = metrics.httpAddress();
+        assertThat(address.getAddress().isLoopbackAddress()).isTrue();
+        String text;
+        try (InputStream input = new URL("http://" + address.getHostString() + ":" + address.getPort() + "/metrics").openStream()) {
+            text = new String(input.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        assertThat(text).contains("# TYPE hibernate_query_execution_ms histogram")
+                .contains("hibernate_transaction_duration_ms_bucket{outcome=\"commit\",le=\"+Inf\"}");
+    }
+
+    private long count(HibernateMetrics metrics, String name) {
+        return metrics.values().getOrDefault(name, 0.0).longValue();
+    }
+
+    private void findAll(boolean commit) {
+        @Cleanup Session session = sessionFactory.openSession();
+        session.beginTransaction();
+        UserDao.getInstance().findAll(session);
+        if (commit) {
+            session.getTransaction().commit();
+        } else {
+            session.getTransaction().rollback();
+        }
+    }
+}
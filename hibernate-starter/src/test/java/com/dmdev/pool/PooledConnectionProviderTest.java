@@ -0,0 +1,88 @@
+package com.dmdev.pool;
+
+import com.dmdev.metrics.HibernateMetrics;
+import com.dmdev.util.HibernateTestUtil;
+import lombok.Cleanup;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import java.util.Map;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.TestInstance.Lifecycle.PER_CLASS;
+
+@TestInstance(PER_CLASS)
+class PooledConnectionProviderTest {
+
+    private static final long LEAK_DETECTION_MILLIS = 200;
+
+    private SessionFactory sessionFactory;
+
+    @BeforeAll
+    public void initDb() {
+        Properties properties = new Properties();
+        properties.setProperty(PooledConnectionProvider.MAX_SIZE_PROPERTY, "1");
+        properties.setProperty(PooledConnectionProvider.MIN_IDLE_PROPERTY, "1");
+        properties.setProperty(PooledConnectionProvider.ACQUISITION_TIMEOUT_PROPERTY, "250");
+        properties.setProperty(PooledConnectionProvider.LEAK_DETECTION_PROPERTY, String.valueOf(LEAK_DETECTION_MILLIS));
+        sessionFactory = HibernateTestUtil.buildSessionFactory(properties);
+    }
+
+    @AfterAll
+    public void finish() {
+        sessionFactory.close();
+    }
+
+    @Test
+    void publishesPoolState() {
+        @Cleanup Session session = sessionFactory.openSession();
+        session.beginTransaction();
+        session.createQuery("select count(u) from User u", Long.class).getSingleResult();
+
+        Map<String, Double> values = HibernateMetrics.of(sessionFactory).values();
+        assertThat(values.get("hibernate_pool_connections{state=\"active\"}")).isEqualTo(1);
+        assertThat(values.get("hibernate_pool_connections{state=\"idle\"}")).isZero();
+        assertThat(values.get("hibernate_pool_connections_max")).isEqualTo(1);
+        assertThat(values.get("hibernate_pool_acquisition_ms_count")).isPositive();
+
+        session.getTransaction().commit();
+    }
+
+    @Test
+    void failsFastWhenPoolIsExhausted() {
+        HibernateMetrics metrics = HibernateMetrics.of(sessionFactory);
+        double timeouts = metrics.values().get("hibernate_pool_acquisition_timeouts_total");
+
+        @Cleanup Session holder = sessionFactory.openSession();
+        holder.beginTransaction();
+        @Cleanup Session waiter = sessionFactory.openSession();
+
+        long start = System.nanoTime();
+        assertThatThrownBy(waiter::beginTransaction).hasMessageContaining("Unable to acquire JDBC Connection");
+        assertThat(System.nanoTime() - start).isLessThan(5_000_000_000L);
+        assertThat(metrics.values().get("hibernate_pool_acquisition_timeouts_total")).isEqualTo(timeouts + 1);
+
+        holder.getTransaction().commit();
+    }
+
+    @Test
+    void countsConnectionsHeldTooLong() throws InterruptedException {
+        HibernateMetrics metrics = HibernateMetrics.of(sessionFactory);
+        double longHeld = metrics.values().get("hibernate_pool_long_held_connections_total");
+
+        Session session = sessionFactory.openSession();
+        session.beginTransaction();
+        Thread.sleep(LEAK_DETECTION_MILLIS * 2);
+        assertThat(metrics.values().get("hibernate_pool_longest_held_ms")).isGreaterThan(LEAK_DETECTION_MILLIS);
+        session.getTransaction().commit();
+        session.close();
+
+        assertThat(metrics.values().get("hibernate_pool_long_held_connections_total")).isEqualTo(longHeld + 1);
+    }
+}
@@ -0,0 +1,114 @@
+package com.dmdev.report;
+
+import com.dmdev.aggregate.PaymentAggregates;
+import com.dmdev.dao.UserDao;
+import com.dmdev.dto.PaymentFilter;
+import com.dmdev.entity.Payment;
+import com.dmdev.entity.User;
+import com.dmdev.util.HibernateTestUtil;
+import com.dmdev.util.TestDataImporter;
+import com.querydsl.core.Tuple;
+import lombok.Cleanup;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.stream.Collectors.toMap;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.TestInstance.Lifecycle.PER_CLASS;
+
+@TestInstance(PER_CLASS)
+class PaymentReportCacheTest {
+
+    private SessionFactory sessionFactory;
+    private final UserDao userDao = UserDao.getInstance();
+
+    @BeforeAll
+    public void initDb() throws InterruptedException {
+        // отчёт по компаниям строится по PaymentAggregates
+        Properties properties = new Properties();
+        properties.setProperty(PaymentAggregates.ENABLED_PROPERTY, "true");
+        sessionFactory = HibernateTestUtil.buildSessionFactory(properties);
+        TestDataImporter.importData(sessionFactory);
+        assertThat(PaymentAggregates.of(sessionFactory).awaitLoaded(10, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @AfterAll
+    public void finish() {
+        sessionFactory.close();
+    }
+
+    @Test
+    void paymentRefreshesOnlyItsCompany() {
+        assertThat(averagesByCompany(true)).containsEntry("Apple", 410.0).containsEntry("Google", 400.0);
+
+        // запись в обход Hibernate кэш не сбрасывает
+        insertPaymentBypassingHibernate("TimCook", 2050);
+        savePayment("SergeyBrin", 1000);
+
+        Map<String, Double> averages = averagesByCompany(true);
+        assertThat(averages).containsEntry("Apple", 410.0).containsEntry("Google", 3400.0 / 7);
+        assertThat(averagesByCompany(false)).containsEntry("Apple", 4100.0 / 6);
+    }
+
+    @Test
+    void paymentRefreshesAveragesOfItsReceiver() {
+        PaymentFilter billGates = PaymentFilter.builder()
+                .firstName("Bill")
+                .lastName("Gates")
+                .build();
+        assertThat(averagePaymentAmount(billGates)).isEqualTo(300.0);
+
+        insertPaymentBypassingHibernate("BillGates", 900);
+        assertThat(averagePaymentAmount(billGates)).isEqualTo(300.0);
+
+        savePayment("BillGates", 700);
+        assertThat(averagePaymentAmount(billGates)).isEqualTo(500.0);
+    }
+
+    private Map<String, Double> averagesByCompany(boolean readAggregates) {
+        @Cleanup Session session = sessionFactory.openSession();
+        session.setProperty(PaymentAggregates.READ_PROPERTY, readAggregates);
+        List<Tuple> rows = userDao.findCompanyNamesWithAvgUserPaymentsOrderedByCompanyName(session);
+        return rows.stream().collect(toMap(it -> it.get(0, String.class), it -> it.get(1, Double.class)));
+    }
+
+    private Double averagePaymentAmount(PaymentFilter filter) {
+        @Cleanup Session session = sessionFactory.openSession();
+        return userDao.findAveragePaymentAmountByFirstAndLastNames(session, filter);
+    }
+
+    private void savePayment(String username, int amount) {
+        @Cleanup Session session = sessionFactory.openSession();
+        session.beginTransaction();
+        session.save(Payment.builder()
+                .receiver(findUser(session, username))
+                .amount(amount)
+                .build());
+        session.getTransaction().commit();
+    }
+
+    private void insertPaymentBypassingHibernate(String username, int amount) {
+        @Cleanup Session session = sessionFactory.openSession();
+        session.beginTransaction();
+        session.createNativeQuery("insert into payment (amount, receiver_id) values (:amount, :receiverId)")
+                .setParameter("amount", amount)
+                .setParameter("receiverId", findUser(session, username).getId())
+                .executeUpdate();
+        session.getTransaction().commit();
+    }
+
+    private static User findUser(Session session, String username) {
+        return session.createQuery("select u from User u where u.username = :username", User.class)
+                .setParameter("username", username)
+                .getSingleResult();
+    }
+}
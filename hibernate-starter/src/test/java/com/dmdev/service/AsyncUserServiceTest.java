@@ -0,0 +1,104 @@
+package com.dmdev.service;
+
+import com.dmdev.dto.UserCreateDto;
+import com.dmdev.dto.UserReadDto;
+import com.dmdev.entity.PersonalInfo;
+import com.dmdev.entity.Role;
+import com.dmdev.util.HibernateTestUtil;
+import com.dmdev.util.TestDataImporter;
+import lombok.Cleanup;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import javax.validation.ConstraintViolationException;
+import java.time.LocalDate;
+import java.time.Month;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.TestInstance.Lifecycle.PER_CLASS;
+
+@TestInstance(PER_CLASS)
+class AsyncUserServiceTest {
+
+    private SessionFactory sessionFactory;
+    private AsyncUserService asyncUserService;
+
+    @BeforeAll
+    public void initDb() {
+        Properties properties = new Properties();
+        properties.setProperty("hibernate.generate_statistics", "true");
+        sessionFactory = HibernateTestUtil.buildSessionFactory(properties);
+        TestDataImporter.importData(sessionFactory);
+        asyncUserService = AsyncUserService.create(sessionFactory);
+    }
+
+    @AfterAll
+    public void finish() {
+        asyncUserService.close();
+        sessionFactory.close();
+    }
+
+    @Test
+    void fansOutLookupsWithSessionPerTask() {
+        List<Long> ids;
+        try (Session session = sessionFactory.openSession()) {
+            ids = session.createQuery("select u.id from User u", Long.class).list();
+        }
+
+        List<CompletableFuture<Optional<UserReadDto>>> lookups = ids.stream()
+                .map(asyncUserService::findById)
+                .collect(toList());
+        CompletableFuture.allOf(lookups.toArray(CompletableFuture[]::new)).join();
+
+        assertThat(lookups).extracting(lookup -> lookup.join().orElseThrow().username())
+                .containsExactlyInAnyOrder("BillGates", "SteveJobs", "SergeyBrin", "TimCook", "DianeGreene");
+        assertThat(sessionFactory.getStatistics().getSessionCloseCount())
+                .isEqualTo(sessionFactory.getStatistics().getSessionOpenCount());
+    }
+
+    @Test
+    void chainsCreateFindAndDelete() {
+        UserCreateDto userDto = new UserCreateDto(PersonalInfo.builder()
+                .firstname("Liza")
+                .lastname("Stepanova")
+                .birthDate(LocalDate.of(1990, Month.MAY, 15))
+                .build(),
+                "liza@gmail.com",
+                null,
+                Role.USER,
+                findCompanyId("Apple"));
+
+        Optional<UserReadDto> created = asyncUserService.create(userDto)
+                .thenCompose(asyncUserService::findById)
+                .join();
+        assertThat(created).hasValueSatisfying(user -> assertThat(user.company().name()).isEqualTo("Apple"));
+
+        Long id = created.orElseThrow().id();
+        assertThat(asyncUserService.delete(id).thenCompose(deleted -> asyncUserService.findById(id)).join()).isEmpty();
+    }
+
+    @Test
+    void failedCallCompletesExceptionally() {
+        UserCreateDto invalid = new UserCreateDto(PersonalInfo.builder().build(), null, null, null, null);
+
+        assertThatThrownBy(() -> asyncUserService.create(invalid).join())
+                .hasCauseInstanceOf(ConstraintViolationException.class);
+    }
+
+    private Integer findCompanyId(String name) {
+        @Cleanup Session session = sessionFactory.openSession();
+        return session.createQuery("select c.id from Company c where c.name = :name", Integer.class)
+                .setParameter("name", name)
+                .getSingleResult();
+    }
+}
@@ -0,0 +1,231 @@
+package com.dmdev.service;
+
+import com.dmdev.dao.CompanyRepository;
+import com.dmdev.dao.UserRepository;
+import com.dmdev.dto.BulkCreateResult;
+import com.dmdev.dto.UserCreateDto;
+import com.dmdev.dto.UserReadDto;
+import com.dmdev.entity.Company;
+import com.dmdev.entity.Role;
+import com.dmdev.entity.User;
+import com.dmdev.mapper.CompanyReadMapper;
+import com.dmdev.mapper.Mapper;
+import com.dmdev.mapper.UserCreateMapper;
+import com.dmdev.mapper.UserReadMapper;
+import com.dmdev.statement.StatementLog;
+import com.dmdev.util.HibernateTestUtil;
+import com.dmdev.util.TestDataImporter;
+import lombok.Cleanup;
+import org.hibernate.CacheMode;
+import org.hibernate.Hibernate;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.spi.PersistentAttributeInterceptable;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.junit.jupiter.api.TestInstance.Lifecycle.PER_CLASS;
+
+@TestInstance(PER_CLASS)
+class UserServiceTest {
+
+    private final SessionFactory sessionFactory = HibernateTestUtil.buildSessionFactory();
+    private final UserReadMapper userReadMapper = new UserReadMapper(new CompanyReadMapper());
+
+    @BeforeAll
+    public void initDb() {
+        TestDataImporter.importData(sessionFactory);
+    }
+
+    @AfterAll
+    public void finish() {
+        sessionFactory.close();
+    }
+
+    /**
+     * Граф Hibernate 5 не догружает ленивые базовые атрибуты: после enhancement'а info читается вторым запросом
+     */
+    @Test
+    void findByIdFetchesMappedPathsInOneSelect() {
+        @Cleanup Session session = openSession();
+        session.beginTransaction();
+        Long id = findIdByFirstName(session, "Bill");
+        session.clear();
+
+        try (StatementLog statementLog = StatementLog.start()) {
+            Optional<UserReadDto> result = userService(session).findById(id);
+
+            assertThat(result).hasValueSatisfying(user -> {
+                assertThat(user.company().name()).isEqualTo("Microsoft");
+                assertThat(user.company().locales()).isEmpty();
+            });
+            assertThat(statementLog.count()).isEqualTo(isEnhanced(User.class) ? 2 : 1);
+        }
+
+        session.getTransaction().commit();
+    }
+
+    @Test
+    void findAllByIdFetchesOnlyWhatMapperDeclares() {
+        @Cleanup Session session = openSession();
+        session.beginTransaction();
+        Long id = findIdByFirstName(session, "Steve");
+        session.clear();
+
+        Mapper<User, Integer> paymentCountMapper = new Mapper<>() {
+            @Override
+            public Integer mapFrom(User object) {
+                return object.getPayments().size();
+            }
+
+            @Override
+            public Set<String> fetchPaths() {
+                return Set.of("payments");
+            }
+        };
+        try (StatementLog statementLog = StatementLog.start()) {
+            List<Integer> paymentCounts = userService(session).findAllById(List.of(id), paymentCountMapper);
+
+            assertThat(paymentCounts).containsExactly(3);
+            assertThat(statementLog.count()).isEqualTo(1);
+        }
+        User user = session.get(User.class, id);
+        assertThat(Hibernate.isInitialized(user.getCompany())).isFalse();
+        assertThat(Hibernate.isInitialized(user.getUserChats())).isFalse();
+
+        session.getTransaction().commit();
+    }
+
+    @Test
+    void mappersWithSamePathsShareFetchGraph() {
+        @Cleanup Session session = openSession();
+        session.beginTransaction();
+        Long id = findIdByFirstName(session, "Steve");
+        SessionFactoryImplementor factory = sessionFactory.unwrap(SessionFactoryImplementor.class);
+
+        userService(session).findAllById(List.of(id), new PaymentsMapper());
+        int graphs = factory.findEntityGraphsByType(User.class).size();
+        userService(session).findAllById(List.of(id), new PaymentsMapper() {
+            @Override
+            public Integer mapFrom(User object) {
+                return object.getPayments().isEmpty() ? 0 : 1;
+            }
+        });
+
+        assertThat(factory.findEntityGraphsByType(User.class)).hasSize(graphs);
+
+        session.getTransaction().commit();
+    }
+
+    @Test
+    void createAllSkipsInvalidItemsAcrossBatches() {
+        @Cleanup Session session = openSession();
+        session.beginTransaction();
+        Integer companyId = session.createQuery("select c.id from Company c where c.name = 'Google'", Integer.class)
+                .getSingleResult();
+
+        List<UserCreateDto> userDtos = new ArrayList<>();
+        for (int i = 0; i < 1_100; i++) {
+            userDtos.add(userCreateDto("bulk" + i, Role.USER, companyId));
+        }
+        userDtos.set(5, userCreateDto("bulk5", null, companyId));
+        userDtos.set(10, userCreateDto("bulk10", Role.USER, -1));
+        userDtos.set(20, userCreateDto("BillGates", Role.USER, companyId));
+        // повтор логина в той же порции и в следующей
+        userDtos.set(31, userCreateDto("bulk30", Role.USER, companyId));
+        userDtos.set(1_050, userCreateDto("bulk40", Role.USER, companyId));
+
+        BulkCreateResult result = userService(session).createAll(userDtos);
+
+        assertThat(result.failures())
+                .extracting(BulkCreateResult.Failure::index, BulkCreateResult.Failure::username)
+                .containsExactly(
+                        tuple(5, "bulk5"),
+                        tuple(10, "bulk10"),
+                        tuple(20, "BillGates"),
+                        tuple(31, "bulk30"),
+                        tuple(1_050, "bulk40"));
+        assertThat(result.failures().get(1).reason()).isEqualTo("Company not found: -1");
+        assertThat(result.failures().get(2).reason()).isEqualTo("Username already exists: BillGates");
+        assertThat(result.createdIds()).hasSize(1_095).doesNotHaveDuplicates();
+        assertThat(session.createQuery("select count(u) from User u where u.username like 'bulk%'", Long.class)
+                .getSingleResult()).isEqualTo(1_095L);
+        assertThat(managedUsernames(session)).noneMatch(username -> username.startsWith("bulk"));
+
+        session.getTransaction().rollback();
+    }
+
+    @Test
+    void createAllKeepsCallerEntitiesManaged() {
+        @Cleanup Session session = openSession();
+        session.beginTransaction();
+        User billGates = session.get(User.class, findIdByFirstName(session, "Bill"));
+        Company google = session.createQuery("select c from Company c where c.name = 'Google'", Company.class)
+                .getSingleResult();
+
+        BulkCreateResult result = userService(session).createAll(List.of(userCreateDto("managed", Role.USER, google.getId())));
+
+        assertThat(result.createdIds()).hasSize(1);
+        assertThat(session.contains(billGates)).isTrue();
+        assertThat(session.contains(google)).isTrue();
+        assertThat(managedUsernames(session)).contains("BillGates").doesNotContain("managed");
+
+        session.getTransaction().rollback();
+    }
+
+    private Session openSession() {
+        Session session = sessionFactory.openSession();
+        session.setCacheMode(CacheMode.IGNORE);
+        return session;
+    }
+
+    private UserService userService(Session session) {
+        CompanyRepository companyRepository = new CompanyRepository(session);
+        return new UserService(new UserRepository(session), userReadMapper, new UserCreateMapper(companyRepository), companyRepository);
+    }
+
+    private static UserCreateDto userCreateDto(String username, Role role, Integer companyId) {
+        return new UserCreateDto(null, username, null, role, companyId);
+    }
+
+    private static List<String> managedUsernames(Session session) {
+        return session.unwrap(SessionImplementor.class).getPersistenceContext().getEntitiesByKey().values().stream()
+                .filter(User.class::isInstance)
+                .map(it -> ((User) it).getUsername())
+                .toList();
+    }
+
+    private static boolean isEnhanced(Class<?> entityClass) {
+        return PersistentAttributeInterceptable.class.isAssignableFrom(entityClass);
+    }
+
+    private static Long findIdByFirstName(Session session, String firstname) {
+        return session.createQuery("select u.id from User u where u.personalInfo.firstname = :firstname", Long.class)
+                .setParameter("firstname", firstname)
+                .getSingleResult();
+    }
+
+    private static class PaymentsMapper implements Mapper<User, Integer> {
+
+        @Override
+        public Integer mapFrom(User object) {
+            return object.getPayments().size();
+        }
+
+        @Override
+        public Set<String> fetchPaths() {
+            return Set.of("payments");
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.dmdev.statement;
+
+import com.dmdev.dao.UserDao;
+import com.dmdev.entity.User;
+import com.dmdev.util.HibernateTestUtil;
+import com.dmdev.util.TestDataImporter;
+import lombok.Cleanup;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import java.util.List;
+import java.util.Properties;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.TestInstance.Lifecycle.PER_CLASS;
+
+@TestInstance(PER_CLASS)
+class NPlusOneDetectorTest {
+
+    private SessionFactory sessionFactory;
+    private final UserDao userDao = UserDao.getInstance();
+
+    @BeforeAll
+    public void initDb() {
+        Properties properties = new Properties();
+        properties.setProperty(NPlusOneDetector.MODE_PROPERTY, "fail");
+        sessionFactory = HibernateTestUtil.buildSessionFactory(properties);
+        TestDataImporter.importData(sessionFactory);
+    }
+
+    @AfterAll
+    public void finish() {
+        sessionFactory.close();
+    }
+
+    @Test
+    void failsOnRepeatedLazyLoading() {
+        @Cleanup Session session = sessionFactory.openSession();
+        session.beginTransaction();
+
+        List<User> users = userDao.findAll(session);
+
+        assertThatThrownBy(() -> users.forEach(user -> user.getPayments().size()))
+                .isInstanceOf(NPlusOneException.class)
+                .hasMessageContaining("3 selects of the same shape")
+                .hasMessageContaining(NPlusOneDetectorTest.class.getName());
+
+        session.getTransaction().rollback();
+    }
+
+    @Test
+    void countsStatementsOfExecutingSession() {
+        @Cleanup Session first = sessionFactory.openSession();
+        first.beginTransaction();
+        @Cleanup Session second = sessionFactory.openSession();
+        second.beginTransaction();
+
+        // по две выборки одной формы в каждой сессии - не N+1, хотя все они выполняются после открытия второй сессии
+        userDao.findAllByFirstName(first, "Bill");
+        userDao.findAllByFirstName(second, "Bill");
+        userDao.findAllByFirstName(first, "Tim");
+        userDao.findAllByFirstName(second, "Tim");
+        userDao.findAll(first);
+
+        assertThatThrownBy(() -> userDao.findAllByFirstName(first, "Steve"))
+                .hasCauseInstanceOf(NPlusOneException.class)
+                .hasMessageContaining("3 selects of the same shape")
+                .hasMessageMatching("(?s).*statements by call site: \\{"
+                                    + Pattern.quote(UserDao.class.getName() + ".findAllByFirstName") + ":\\d+=3, "
+                                    + Pattern.quote(UserDao.class.getName() + ".findAll") + ":\\d+=1\\}.*");
+
+        second.getTransaction().commit();
+        first.getTransaction().rollback();
+    }
+}
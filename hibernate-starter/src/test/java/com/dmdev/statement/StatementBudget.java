@@ -0,0 +1,24 @@
+package com.dmdev.statement;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Бюджет запросов теста, проверяется {@link StatementBudgetExtension}
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface StatementBudget {
+
+    /**
+     * Максимум запросов за тест
+     */
+    int value();
+
+    /**
+     * Сколько раз за тест допускается выполнить выборку одной формы
+     */
+    int maxRepeats() default NPlusOneDetector.DEFAULT_THRESHOLD - 1;
+}
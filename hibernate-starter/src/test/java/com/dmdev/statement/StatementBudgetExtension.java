@@ -0,0 +1,59 @@
+package com.dmdev.statement;
+
+import org.junit.jupiter.api.extension.AfterEachCallback;
+import org.junit.jupiter.api.extension.BeforeEachCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.jupiter.api.extension.ParameterContext;
+import org.junit.jupiter.api.extension.ParameterResolver;
+
+import java.util.Optional;
+
+import static java.util.stream.Collectors.joining;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Записывает запросы каждого теста в {@link StatementLog} (его можно получить параметром теста)
+ * и после теста проверяет {@link StatementBudget}
+ */
+public class StatementBudgetExtension implements BeforeEachCallback, AfterEachCallback, ParameterResolver {
+
+    private static final ExtensionContext.Namespace NAMESPACE = ExtensionContext.Namespace.create(StatementBudgetExtension.class);
+
+    @Override
+    public void beforeEach(ExtensionContext context) {
+        context.getStore(NAMESPACE).put(StatementLog.class, StatementLog.start());
+    }
+
+    @Override
+    public void afterEach(ExtensionContext context) {
+        StatementLog statementLog = context.getStore(NAMESPACE).remove(StatementLog.class, StatementLog.class);
+        statementLog.close();
+
+        Optional<StatementBudget> budget = context.getTestMethod()
+                .map(method -> method.getAnnotation(StatementBudget.class));
+        budget.ifPresent(it -> {
+            assertThat(statementLog.count())
+                    .as("statements executed:%n%s", describe(statementLog))
+                    .isLessThanOrEqualTo(it.value());
+            assertThat(statementLog.repeatedSelects(it.maxRepeats() + 1))
+                    .as("selects repeated more than %d times", it.maxRepeats())
+                    .isEmpty();
+        });
+    }
+
+    private static String describe(StatementLog statementLog) {
+        return statementLog.statements().stream()
+                .map(statement -> statement.callSite() + ": " + statement.shape())
+                .collect(joining(System.lineSeparator()));
+    }
+
+    @Override
+    public boolean supportsParameter(ParameterContext parameterContext, ExtensionContext extensionContext) {
+        return parameterContext.getParameter().getType() == StatementLog.class;
+    }
+
+    @Override
+    public Object resolveParameter(ParameterContext parameterContext, ExtensionContext extensionContext) {
+        return extensionContext.getStore(NAMESPACE).get(StatementLog.class, StatementLog.class);
+    }
+}
@@ -0,0 +1,98 @@
+package com.dmdev.util;
+
+import lombok.Cleanup;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DataGeneratorTest {
+
+    @Test
+    void sameSeedGeneratesSameData() {
+        List<String> first = generate(settings(42L));
+
+        assertThat(generate(settings(42L))).isEqualTo(first);
+        assertThat(generate(settings(7L))).isNotEqualTo(first);
+    }
+
+    @Test
+    void generatesConfiguredCountsCommittingEveryBatchesPerTransaction() {
+        DataGenerator.Settings settings = settings(42L);
+        @Cleanup SessionFactory sessionFactory = HibernateTestUtil.buildSessionFactory(statisticsEnabled());
+        sessionFactory.getStatistics().clear();
+
+        new DataGenerator(sessionFactory, settings).generate();
+        long transactions = sessionFactory.getStatistics().getTransactionCount();
+
+        @Cleanup Session session = sessionFactory.openSession();
+        assertThat(count(session, "Company")).isEqualTo(settings.getCompanyCount());
+        assertThat(count(session, "User")).isEqualTo(settings.getUserCount());
+        assertThat(count(session, "Payment")).isEqualTo(settings.getPaymentCount());
+        assertThat(count(session, "Chat")).isEqualTo(settings.getChatCount());
+        long chatMembers = count(session, "UserChat");
+        assertThat(chatMembers).isBetween(1L, (long) settings.getUserCount() * settings.getChatsPerUser() * 2);
+
+        // каждый вид сущностей - полные порции и остаток, транзакция фиксируется каждые batchesPerTransaction порций и в конце
+        long batches = batches(settings, settings.getCompanyCount())
+                       + batches(settings, settings.getUserCount())
+                       + batches(settings, settings.getPaymentCount())
+                       + batches(settings, settings.getChatCount())
+                       + batches(settings, chatMembers);
+        assertThat(transactions).isEqualTo(batches / settings.getBatchesPerTransaction() + 1);
+    }
+
+    private static DataGenerator.Settings settings(long seed) {
+        return DataGenerator.Settings.builder()
+                .companyCount(5)
+                .userCount(50)
+                .paymentCount(300)
+                .chatCount(4)
+                .batchSize(20)
+                .batchesPerTransaction(3)
+                .seed(seed)
+                .build();
+    }
+
+    private static long batches(DataGenerator.Settings settings, long count) {
+        return count / settings.getBatchSize() + 1;
+    }
+
+    /**
+     * Сотрудники, выплаты и участники чатов в порядке вставки
+     */
+    private static List<String> generate(DataGenerator.Settings settings) {
+        @Cleanup SessionFactory sessionFactory = HibernateTestUtil.buildSessionFactory();
+        new DataGenerator(sessionFactory, settings).generate();
+
+        @Cleanup Session session = sessionFactory.openSession();
+        List<String> rows = new ArrayList<>();
+        rows.addAll(rows(session, "select u.username, u.personalInfo.firstname, u.personalInfo.lastname, "
+                                  + "u.personalInfo.birthDate, c.name from User u join u.company c order by u.id"));
+        rows.addAll(rows(session, "select r.username, p.amount from Payment p join p.receiver r order by p.id"));
+        rows.addAll(rows(session, "select u.username, c.name from UserChat uc join uc.user u join uc.chat c order by uc.id"));
+        return rows;
+    }
+
+    private static List<String> rows(Session session, String hql) {
+        return session.createQuery(hql, Object[].class).list().stream()
+                .map(Arrays::toString)
+                .toList();
+    }
+
+    private static long count(Session session, String entityName) {
+        return session.createQuery("select count(e) from " + entityName + " e", Long.class).getSingleResult();
+    }
+
+    private static Properties statisticsEnabled() {
+        Properties properties = new Properties();
+        properties.setProperty("hibernate.generate_statistics", "true");
+        return properties;
+    }
+}
@@ -5,6 +5,8 @@ import org.hibernate.SessionFactory;
 import org.hibernate.cfg.Configuration;
 import org.testcontainers.containers.PostgreSQLContainer;
 
+import java.util.Properties;
+
 @UtilityClass
 public class HibernateTestUtil {
 
@@ -15,12 +17,20 @@ public class HibernateTestUtil {
     }
 
     public static SessionFactory buildSessionFactory() {
+        return buildSessionFactory(new Properties());
+    }
+
+    /**
+     * @param properties перекрывают настройки из hibernate.cfg.xml
+     */
+    public static SessionFactory buildSessionFactory(Properties properties) {
         Configuration configuration = HibernateUtil.buildConfiguration();
         configuration.setProperty("hibernate.connection.url", postgres.getJdbcUrl());
         configuration.setProperty("hibernate.connection.username", postgres.getUsername());
         configuration.setProperty("hibernate.connection.password", postgres.getPassword());
         configuration.configure();
+        configuration.addProperties(properties);
 
-        return configuration.buildSessionFactory();
+        return HibernateUtil.buildSessionFactory(configuration);
     }
 }